@@ -0,0 +1,163 @@
+package progra2.Benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import progra2.Models.ISBNUtils;
+
+/**
+ * Microbenchmark JMH de validación de ISBN.
+ * Compara la validación anterior (replace + String.matches, que compila la
+ * expresión regular en cada llamada y no verifica el dígito verificador) con
+ * ISBNUtils.parse (una pasada, sin regex, con dígito verificador y conversión
+ * a ISBN-13 canónico).
+ *
+ * Cada invocación valida los mismos ISBN generados con semilla fija (una mezcla
+ * de ISBN-13 con y sin guiones, ISBN-10 e ISBN con dígito verificador erróneo);
+ * los resultados son por ISBN validado. No requiere base de datos. Ejecutar con:
+ * <pre>
+ * ant benchmark -Dbenchmark.args="ISBNBenchmark -prof gc"
+ * </pre>
+ * (-prof gc informa además la memoria asignada por ISBN).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ISBNBenchmark {
+
+    /** Cantidad de ISBN validados por invocación. */
+    private static final int CANTIDAD = 10_000;
+
+    private String[] isbns;
+
+    @Setup
+    public void generar() {
+        isbns = generarIsbns(CANTIDAD, new Random(42));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANTIDAD)
+    public long regex() {
+        return validarConRegex(isbns);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANTIDAD)
+    public long isbnUtils() {
+        return validarConISBNUtils(isbns);
+    }
+
+    /**
+     * Validación anterior de FichaBibliograficaService: solo formato.
+     *
+     * @param isbns ISBN a validar
+     * @return cantidad de ISBN aceptados
+     */
+    private static long validarConRegex(String[] isbns) {
+        long validos = 0;
+        for (String isbn : isbns) {
+            if (isbn.replace("-", "").matches("\\d{10}|\\d{13}")) {
+                validos++;
+            }
+        }
+        return validos;
+    }
+
+    /**
+     * Validación actual: formato, dígito verificador y forma canónica.
+     *
+     * @param isbns ISBN a validar
+     * @return suma de las formas canónicas de los ISBN aceptados
+     */
+    private static long validarConISBNUtils(String[] isbns) {
+        long suma = 0;
+        for (String isbn : isbns) {
+            long canonico = ISBNUtils.parse(isbn);
+            if (canonico != ISBNUtils.INVALIDO) {
+                suma += canonico;
+            }
+        }
+        return suma;
+    }
+
+    /**
+     * Genera una mezcla de ISBN-13 con y sin guiones, ISBN-10 e ISBN con errores.
+     *
+     * @param cantidad cantidad de ISBN
+     * @param random generador (con semilla fija para resultados reproducibles)
+     * @return ISBN generados
+     */
+    private static String[] generarIsbns(int cantidad, Random random) {
+        String[] isbns = new String[cantidad];
+        for (int i = 0; i < cantidad; i++) {
+            StringBuilder sb = new StringBuilder(17);
+            switch (i % 4) {
+                case 0 -> {
+                    // ISBN-13 con guiones: 978-d-dd-dddddd-c
+                    String cuerpo = "978" + digitos(random, 9);
+                    String completo = cuerpo + verificador13(cuerpo);
+                    sb.append(completo, 0, 3).append('-').append(completo, 3, 4).append('-')
+                      .append(completo, 4, 6).append('-').append(completo, 6, 12).append('-')
+                      .append(completo.charAt(12));
+                }
+                case 1 -> {
+                    // ISBN-13 sin guiones
+                    String cuerpo = "979" + digitos(random, 9);
+                    sb.append(cuerpo).append(verificador13(cuerpo));
+                }
+                case 2 -> {
+                    // ISBN-10 (el verificador puede ser X)
+                    String cuerpo = digitos(random, 9);
+                    sb.append(cuerpo).append(verificador10(cuerpo));
+                }
+                default -> {
+                    // ISBN-13 con dígito verificador erróneo
+                    String cuerpo = "978" + digitos(random, 9);
+                    sb.append(cuerpo).append((verificador13(cuerpo) + 1) % 10);
+                }
+            }
+            isbns[i] = sb.toString();
+        }
+        return isbns;
+    }
+
+    private static String digitos(Random random, int cantidad) {
+        StringBuilder sb = new StringBuilder(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            sb.append((char) ('0' + random.nextInt(10)));
+        }
+        return sb.toString();
+    }
+
+    private static int verificador13(String doceDigitos) {
+        int suma = 0;
+        for (int i = 0; i < 12; i++) {
+            int d = doceDigitos.charAt(i) - '0';
+            suma += (i % 2 == 0) ? d : d * 3;
+        }
+        return (10 - suma % 10) % 10;
+    }
+
+    private static char verificador10(String nueveDigitos) {
+        int suma = 0;
+        for (int i = 0; i < 9; i++) {
+            suma += (nueveDigitos.charAt(i) - '0') * (10 - i);
+        }
+        int verificador = (11 - suma % 11) % 11;
+        return verificador == 10 ? 'X' : (char) ('0' + verificador);
+    }
+
+}
@@ -0,0 +1,176 @@
+package progra2.Benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import progra2.Config.DatabaseConnection;
+import progra2.DAO.LibroRowMapper;
+import progra2.DAO.PlanCarga;
+import progra2.Models.FichaBibliografica;
+import progra2.Models.Libro;
+
+/**
+ * Microbenchmark JMH del mapeo de filas de libro con su ficha.
+ * Compara el mapeo anterior de LibroDAO (cada columna se busca por etiqueta,
+ * rs.getString("isbn"), en cada fila) con LibroRowMapper (índices de columna
+ * precalculados).
+ *
+ * Las filas son un ResultSet real de MySQL Connector/J: en el setup se
+ * consultan libros con su ficha (LEFT JOIN, como el plan CON_FICHA) en un
+ * ResultSet desplazable, que el driver guarda completo en memoria. Cada
+ * operación mapea una fila y, al llegar al final, vuelve al principio con
+ * beforeFirst(), por lo que se mide la lectura y conversión de columnas del
+ * driver sin el viaje de red. Con relleno mayor que cero se agregan columnas
+ * al final de cada fila para simular resultados anchos (por ejemplo, un
+ * SELECT * sobre tablas con más columnas).
+ *
+ * Requiere la base de datos configurada (db.url, db.user, db.password) con
+ * libros cargados; los resultados son por fila mapeada. Ejecutar con:
+ * <pre>
+ * ant benchmark -Dbenchmark.args="RowMapperBenchmark -jvmArgs -Ddb.url=... -prof gc"
+ * </pre>
+ * (-prof gc informa además la memoria asignada por fila).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    /** Cantidad máxima de filas consultadas. */
+    @Param("20000")
+    private int filas;
+
+    /** Columnas de relleno al final de cada fila. */
+    @Param({"0", "20"})
+    private int relleno;
+
+    private Connection conn;
+    private PreparedStatement stmt;
+    private ResultSet rs;
+    private final LibroRowMapper mapper = LibroRowMapper.para(PlanCarga.CON_FICHA);
+
+    @Setup
+    public void abrir() throws SQLException {
+        conn = DatabaseConnection.getConnection();
+        stmt = conn.prepareStatement(consulta(relleno), ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        stmt.setInt(1, filas);
+        rs = stmt.executeQuery();
+        if (!rs.next()) {
+            throw new IllegalStateException("La tabla libro no tiene filas con ficha para el benchmark");
+        }
+        rs.beforeFirst();
+    }
+
+    @TearDown
+    public void cerrar() throws SQLException {
+        try {
+            rs.close();
+            stmt.close();
+        } finally {
+            conn.close();
+        }
+    }
+
+    @Benchmark
+    public Libro porEtiqueta() throws SQLException {
+        return mapearPorEtiqueta(siguiente());
+    }
+
+    @Benchmark
+    public Libro libroRowMapper() throws SQLException {
+        return mapper.mapRow(siguiente());
+    }
+
+    /**
+     * Avanza a la fila siguiente, volviendo a la primera al llegar al final.
+     *
+     * @return el ResultSet posicionado en una fila válida
+     * @throws SQLException si hay error al recorrer las filas
+     */
+    private ResultSet siguiente() throws SQLException {
+        if (!rs.next()) {
+            rs.beforeFirst();
+            rs.next();
+        }
+        return rs;
+    }
+
+    /**
+     * Consulta de libros con su ficha: las columnas en el orden de
+     * LibroRowMapper y con las etiquetas que usaba el mapeo por nombre.
+     *
+     * @param relleno cantidad de columnas de relleno al final de cada fila
+     * @return SQL con un parámetro para el LIMIT
+     */
+    private static String consulta(int relleno) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(LibroRowMapper.COLUMNAS)
+                .append(", f.id AS ficha_id, f.eliminado AS ficha_eliminado, f.version AS ficha_version, ")
+                .append("f.isbn, f.clasificacion_dewey, f.estanteria, f.idioma");
+        for (int i = 1; i <= relleno; i++) {
+            sql.append(", l.titulo AS relleno_").append(i);
+        }
+        return sql.append(" FROM libro l ")
+                .append("JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id ")
+                .append("WHERE l.eliminado = FALSE AND f.eliminado = FALSE ORDER BY l.id LIMIT ?")
+                .toString();
+    }
+
+    /**
+     * Mapeo anterior de LibroDAO: cada columna se busca por etiqueta en cada fila.
+     *
+     * @param rs el ResultSet posicionado en una fila válida
+     * @return libro con su ficha
+     * @throws SQLException si hay error al leer los datos
+     */
+    private static Libro mapearPorEtiqueta(ResultSet rs) throws SQLException {
+        FichaBibliografica ficha = null;
+
+        long fichaId = rs.getLong("ficha_id");
+        if (!rs.wasNull() && fichaId > 0) {
+            ficha = new FichaBibliografica(
+                rs.getString("isbn"),
+                rs.getString("clasificacion_dewey"),
+                rs.getString("estanteria"),
+                rs.getString("idioma"),
+                fichaId,
+                rs.getBoolean("ficha_eliminado")
+            );
+            ficha.setVersion(rs.getInt("ficha_version"));
+        }
+
+        Integer anioEdicion = null;
+        int anioValue = rs.getInt("anio_edicion");
+        if (!rs.wasNull()) {
+            anioEdicion = anioValue;
+        }
+
+        Libro libro = new Libro(
+            rs.getLong("id"),
+            rs.getString("titulo"),
+            rs.getString("autor"),
+            rs.getString("editorial"),
+            anioEdicion,
+            ficha
+        );
+        libro.setVersion(rs.getInt("version"));
+        return libro;
+    }
+
+}
@@ -6,15 +6,23 @@ USE dbtpi3;
 CREATE TABLE ficha_bibliografica (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     eliminado BOOLEAN NOT NULL DEFAULT FALSE,
+    eliminado_en TIMESTAMP NULL,
+    version INT NOT NULL DEFAULT 0,
     isbn VARCHAR(17) UNIQUE,
+    isbn13 BIGINT,
     clasificacion_dewey VARCHAR(20),
     estanteria VARCHAR(20),
-    idioma VARCHAR(30)
+    idioma VARCHAR(30),
+    INDEX idx_ficha_eliminado_idioma (eliminado, idioma),
+    INDEX idx_ficha_eliminado_en (eliminado, eliminado_en),
+    UNIQUE INDEX uk_ficha_isbn13 (isbn13)
 );
 
 CREATE TABLE libro (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     eliminado BOOLEAN NOT NULL DEFAULT FALSE,
+    eliminado_en TIMESTAMP NULL,
+    version INT NOT NULL DEFAULT 0,
     titulo VARCHAR(150) NOT NULL,
     autor VARCHAR(120) NOT NULL,
     editorial VARCHAR(100),
@@ -22,5 +30,49 @@ CREATE TABLE libro (
     ficha_bibliografica_id BIGINT UNIQUE,
     CONSTRAINT fk_libro_ficha FOREIGN KEY (ficha_bibliografica_id) 
         REFERENCES ficha_bibliografica(id) 
-        ON DELETE CASCADE
+        ON DELETE CASCADE,
+    INDEX idx_libro_eliminado_anio (eliminado, anio_edicion),
+    INDEX idx_libro_eliminado_autor (eliminado, autor),
+    INDEX idx_libro_eliminado_titulo (eliminado, titulo),
+    INDEX idx_libro_eliminado_en (eliminado, eliminado_en),
+    FULLTEXT INDEX ft_libro_titulo (titulo),
+    FULLTEXT INDEX ft_libro_autor (autor),
+    FULLTEXT INDEX ft_libro_editorial (editorial)
+);
+
+CREATE TABLE ficha_bibliografica_archivo (
+    id BIGINT PRIMARY KEY,
+    eliminado BOOLEAN NOT NULL,
+    eliminado_en TIMESTAMP NULL,
+    version INT NOT NULL,
+    isbn VARCHAR(17),
+    isbn13 BIGINT,
+    clasificacion_dewey VARCHAR(20),
+    estanteria VARCHAR(20),
+    idioma VARCHAR(30),
+    archivado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE libro_archivo (
+    id BIGINT PRIMARY KEY,
+    eliminado BOOLEAN NOT NULL,
+    eliminado_en TIMESTAMP NULL,
+    version INT NOT NULL,
+    titulo VARCHAR(150) NOT NULL,
+    autor VARCHAR(120) NOT NULL,
+    editorial VARCHAR(100),
+    anio_edicion INT,
+    ficha_bibliografica_id BIGINT,
+    archivado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_libro_archivo_ficha (ficha_bibliografica_id)
+);
+
+CREATE TABLE importacion_checkpoint (
+    clave CHAR(64) PRIMARY KEY,
+    archivo VARCHAR(255) NOT NULL,
+    registros_procesados BIGINT NOT NULL,
+    importados BIGINT NOT NULL,
+    rechazados BIGINT NOT NULL,
+    completada BOOLEAN NOT NULL DEFAULT FALSE,
+    actualizado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
 );
@@ -0,0 +1,619 @@
+package progra2.Config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool acotado de conexiones JDBC.
+ * Mantiene un conjunto de conexiones físicas abiertas y las presta a los DAOs
+ * para evitar el handshake TCP/MySQL en cada operación.
+ *
+ * Las conexiones prestadas son proxies: al invocar close() la conexión física
+ * no se cierra, sino que se restablece su estado y se devuelve al pool.
+ *
+ * Características:
+ * - Tamaño mínimo y máximo configurables.
+ * - Tiempo máximo de espera al solicitar una conexión.
+ * - Desalojo de conexiones ociosas por encima del mínimo.
+ * - Tiempo de vida máximo de cada conexión física.
+ * - Validación de la conexión antes de prestarla.
+ * - Caché LRU de PreparedStatements por conexión física ({@link StatementCache}).
+ */
+public class ConnectionPool {
+
+    /** URL de conexión JDBC. */
+    private final String url;
+    /** Propiedades de conexión (usuario, contraseña y opciones del driver). */
+    private final Properties connectionProperties;
+    /** Cantidad mínima de conexiones que el pool intenta mantener abiertas. */
+    private final int minSize;
+    /** Cantidad máxima de conexiones físicas simultáneas. */
+    private final int maxSize;
+    /** Tiempo máximo de espera para obtener una conexión, en milisegundos. */
+    private final long acquireTimeoutMs;
+    /** Tiempo tras el cual una conexión ociosa puede cerrarse, en milisegundos. */
+    private final long idleTimeoutMs;
+    /** Tiempo de vida máximo de una conexión física, en milisegundos. */
+    private final long maxLifetimeMs;
+    /** Tiempo máximo para validar una conexión con isValid(), en segundos. */
+    private final int validationTimeoutSec;
+    /** Capacidad de la caché de statements de cada conexión (0 la deshabilita). */
+    private final int statementCacheSize;
+    /** Contadores de la caché de statements, agregados para todo el pool. */
+    private final StatementCache.Counters statementCounters = new StatementCache.Counters();
+
+    /** Conexiones disponibles, la más recientemente usada al frente. */
+    private final ArrayDeque<PooledEntry> idle = new ArrayDeque<>();
+    /** Lock que protege el estado del pool. */
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Condición señalada cuando una conexión vuelve al pool o se libera un lugar. */
+    private final Condition available = lock.newCondition();
+    /** Tarea periódica de mantenimiento (desalojo y relleno hasta el mínimo). */
+    private final ScheduledExecutorService housekeeper;
+
+    /** Conexiones físicas abiertas o en proceso de apertura. */
+    private int total;
+    /** Conexiones actualmente prestadas. */
+    private int active;
+    /** Indica si el pool fue cerrado. */
+    private boolean shutdown;
+
+    /**
+     * Crea un pool de conexiones. No abre conexiones en el constructor:
+     * el relleno hasta el tamaño mínimo lo realiza la tarea de mantenimiento.
+     *
+     * @param url URL de conexión JDBC
+     * @param connectionProperties propiedades de conexión (user, password, etc.)
+     * @param minSize cantidad mínima de conexiones
+     * @param maxSize cantidad máxima de conexiones
+     * @param acquireTimeoutMs espera máxima para obtener una conexión
+     * @param idleTimeoutMs tiempo ocioso tras el cual se cierra una conexión
+     * @param maxLifetimeMs tiempo de vida máximo de una conexión
+     * @param validationTimeoutSec tiempo máximo de validación en segundos
+     * @param statementCacheSize capacidad de la caché de statements por conexión (0 la deshabilita)
+     * @throws IllegalArgumentException si algún parámetro es inválido
+     */
+    public ConnectionPool(String url, Properties connectionProperties, int minSize, int maxSize,
+                          long acquireTimeoutMs, long idleTimeoutMs, long maxLifetimeMs, int validationTimeoutSec,
+                          int statementCacheSize) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Tamanio de pool invalido: min=" + minSize + ", max=" + maxSize);
+        }
+        if (acquireTimeoutMs <= 0 || idleTimeoutMs <= 0 || maxLifetimeMs <= 0 || validationTimeoutSec <= 0) {
+            throw new IllegalArgumentException("Los tiempos del pool deben ser positivos");
+        }
+        if (statementCacheSize < 0) {
+            throw new IllegalArgumentException("El tamanio de la cache de statements no puede ser negativo");
+        }
+        this.url = url;
+        this.connectionProperties = connectionProperties;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxLifetimeMs = maxLifetimeMs;
+        this.validationTimeoutSec = validationTimeoutSec;
+        this.statementCacheSize = statementCacheSize;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, Math.min(idleTimeoutMs, maxLifetimeMs) / 2);
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Obtiene una conexión del pool, esperando como máximo el tiempo configurado.
+     * La conexión devuelta debe cerrarse (idealmente con try-with-resources)
+     * para que vuelva al pool.
+     *
+     * @return conexión prestada por el pool
+     * @throws SQLException si se agota el tiempo de espera o no se puede abrir la conexión
+     */
+    public Connection getConnection() throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(acquireTimeoutMs);
+
+        while (true) {
+            PooledEntry entry = null;
+            boolean create = false;
+
+            lock.lock();
+            try {
+                while (true) {
+                    if (shutdown) {
+                        throw new SQLException("El pool de conexiones esta cerrado");
+                    }
+                    entry = idle.pollFirst();
+                    if (entry != null) {
+                        active++;
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        active++;
+                        create = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new SQLException("Tiempo de espera agotado (" + acquireTimeoutMs
+                                + " ms) al obtener una conexion del pool (max=" + maxSize + ")");
+                    }
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrumpido mientras se esperaba una conexion del pool", e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                try {
+                    entry = newEntry();
+                } catch (SQLException | RuntimeException e) {
+                    discardSlot(true);
+                    throw e;
+                }
+                return entry.lend(this);
+            }
+
+            // Conexión reutilizada: verificar vida útil y validez antes de prestarla
+            if (isExpired(entry) || !isValid(entry)) {
+                destroy(entry, true);
+                continue;
+            }
+            return entry.lend(this);
+        }
+    }
+
+    /**
+     * Cierra el pool y todas las conexiones ociosas.
+     * Las conexiones prestadas se cierran físicamente al ser devueltas.
+     */
+    public void shutdown() {
+        List<PooledEntry> toClose;
+        lock.lock();
+        try {
+            shutdown = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            total -= toClose.size();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        for (PooledEntry entry : toClose) {
+            entry.closePhysical();
+        }
+    }
+
+    /**
+     * Obtiene la cantidad de conexiones físicas abiertas.
+     *
+     * @return conexiones abiertas (prestadas + ociosas)
+     */
+    public int getTotalConnections() {
+        lock.lock();
+        try {
+            return total;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtiene la cantidad de conexiones actualmente prestadas.
+     *
+     * @return conexiones en uso
+     */
+    public int getActiveConnections() {
+        lock.lock();
+        try {
+            return active;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Obtiene la cantidad de statements servidos desde la caché (sin volver a prepararlos).
+     * 
+     * @return aciertos acumulados de la caché de statements
+     */
+    public long getStatementCacheHits() {
+        return statementCounters.hits.sum();
+    }
+    
+    /**
+     * Obtiene la cantidad de statements que debieron prepararse en el servidor.
+     * 
+     * @return fallos acumulados de la caché de statements
+     */
+    public long getStatementCacheMisses() {
+        return statementCounters.misses.sum();
+    }
+    
+    /**
+     * Obtiene la cantidad de statements desalojados por capacidad.
+     * 
+     * @return desalojos acumulados de la caché de statements
+     */
+    public long getStatementCacheEvictions() {
+        return statementCounters.evictions.sum();
+    }
+    
+    /**
+     * Obtiene la cantidad de conexiones ociosas disponibles.
+     *
+     * @return conexiones disponibles en el pool
+     */
+    public int getIdleConnections() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+
+    // ===================== Métodos auxiliares privados =====================
+
+    /**
+     * Abre una nueva conexión física con el driver.
+     *
+     * @return conexión física
+     * @throws SQLException si no se puede conectar
+     */
+    private Connection openPhysical() throws SQLException {
+        return DriverManager.getConnection(url, connectionProperties);
+    }
+    
+    /**
+     * Abre una conexión física y la registra con su caché de statements.
+     * 
+     * @return conexión administrada por el pool
+     * @throws SQLException si no se puede conectar
+     */
+    private PooledEntry newEntry() throws SQLException {
+        StatementCache cache = statementCacheSize > 0
+                ? new StatementCache(statementCacheSize, statementCounters)
+                : null;
+        return new PooledEntry(openPhysical(), cache);
+    }
+
+    /**
+     * Devuelve una conexión al pool luego de restablecer su estado.
+     * Invocado por el proxy cuando el llamador cierra la conexión.
+     *
+     * @param entry la conexión devuelta
+     */
+    private void release(PooledEntry entry) {
+        boolean reusable = resetState(entry) && !isExpired(entry);
+
+        lock.lock();
+        try {
+            active--;
+            if (reusable && !shutdown) {
+                entry.lastUsedAt = System.currentTimeMillis();
+                idle.addFirst(entry);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        destroy(entry, false);
+    }
+
+    /**
+     * Restablece el estado de sesión que el llamador pudo haber modificado.
+     * Si la conexión quedó con una transacción abierta, la revierte.
+     *
+     * @param entry la conexión a restablecer
+     * @return true si la conexión quedó en condiciones de reutilizarse
+     */
+    private boolean resetState(PooledEntry entry) {
+        Connection conn = entry.physical;
+        try {
+            if (conn.isClosed()) {
+                return false;
+            }
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+            if (conn.isReadOnly()) {
+                conn.setReadOnly(false);
+            }
+            if (conn.getTransactionIsolation() != entry.defaultIsolation) {
+                conn.setTransactionIsolation(entry.defaultIsolation);
+            }
+            conn.clearWarnings();
+            return true;
+        } catch (SQLException e) {
+            System.err.println("Error al restablecer conexion del pool: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Cierra físicamente una conexión y libera su lugar en el pool.
+     *
+     * @param entry la conexión a cerrar
+     * @param wasBorrowed true si la conexión estaba contabilizada como prestada
+     */
+    private void destroy(PooledEntry entry, boolean wasBorrowed) {
+        entry.closePhysical();
+        discardSlot(wasBorrowed);
+    }
+
+    /**
+     * Descuenta una conexión física del total y despierta a quien espere un lugar.
+     *
+     * @param wasBorrowed true si además debe descontarse de las prestadas
+     */
+    private void discardSlot(boolean wasBorrowed) {
+        lock.lock();
+        try {
+            total--;
+            if (wasBorrowed) {
+                active--;
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Verifica si la conexión superó su tiempo de vida máximo.
+     *
+     * @param entry la conexión a verificar
+     * @return true si debe descartarse
+     */
+    private boolean isExpired(PooledEntry entry) {
+        return System.currentTimeMillis() - entry.createdAt >= maxLifetimeMs;
+    }
+
+    /**
+     * Valida la conexión física antes de prestarla.
+     *
+     * @param entry la conexión a validar
+     * @return true si la conexión responde correctamente
+     */
+    private boolean isValid(PooledEntry entry) {
+        try {
+            return entry.physical.isValid(validationTimeoutSec);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tarea de mantenimiento periódica.
+     * Cierra las conexiones ociosas vencidas (por inactividad por encima del mínimo,
+     * o por tiempo de vida) y rellena el pool hasta el tamaño mínimo.
+     */
+    private void housekeep() {
+        List<PooledEntry> toClose = new ArrayList<>();
+        int toCreate;
+
+        lock.lock();
+        try {
+            if (shutdown) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            // Recorrer desde las menos usadas (final de la cola)
+            Iterator<PooledEntry> it = idle.descendingIterator();
+            while (it.hasNext()) {
+                PooledEntry entry = it.next();
+                boolean idleTooLong = now - entry.lastUsedAt >= idleTimeoutMs && total - toClose.size() > minSize;
+                if (idleTooLong || isExpired(entry)) {
+                    it.remove();
+                    toClose.add(entry);
+                }
+            }
+            total -= toClose.size();
+            toCreate = Math.max(0, minSize - total);
+            total += toCreate;
+        } finally {
+            lock.unlock();
+        }
+
+        for (PooledEntry entry : toClose) {
+            entry.closePhysical();
+        }
+
+        for (int i = 0; i < toCreate; i++) {
+            try {
+                PooledEntry entry = newEntry();
+                lock.lock();
+                try {
+                    idle.addLast(entry);
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+            } catch (SQLException e) {
+                // La base puede no estar disponible todavía; se reintenta en la próxima ejecución
+                lock.lock();
+                try {
+                    total -= (toCreate - i);
+                    available.signal();
+                } finally {
+                    lock.unlock();
+                }
+                break;
+            }
+        }
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /**
+     * Conexión física administrada por el pool junto con sus metadatos.
+     */
+    private static final class PooledEntry {
+
+        /** Conexión física del driver. */
+        private final Connection physical;
+        /** Instante de creación, para controlar el tiempo de vida máximo. */
+        private final long createdAt;
+        /** Nivel de aislamiento inicial, restaurado al devolver la conexión. */
+        private final int defaultIsolation;
+        /** Caché de statements de esta conexión (null si está deshabilitada). */
+        private final StatementCache statementCache;
+        /** Instante de la última devolución al pool. */
+        private long lastUsedAt;
+
+        /**
+         * Registra una conexión física recién abierta.
+         *
+         * @param physical conexión física
+         * @param statementCache caché de statements, o null para no cachear
+         * @throws SQLException si no se puede leer su estado inicial
+         */
+        private PooledEntry(Connection physical, StatementCache statementCache) throws SQLException {
+            this.physical = physical;
+            this.statementCache = statementCache;
+            this.createdAt = System.currentTimeMillis();
+            this.lastUsedAt = createdAt;
+            this.defaultIsolation = physical.getTransactionIsolation();
+        }
+
+        /**
+         * Crea el proxy que se entrega al llamador para un préstamo.
+         *
+         * @param pool pool al que debe devolverse la conexión
+         * @return conexión lógica
+         */
+        private Connection lend(ConnectionPool pool) {
+            return (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new PooledConnectionHandler(pool, this));
+        }
+
+        /** Cierra la conexión física (y sus statements cacheados) ignorando errores. */
+        private void closePhysical() {
+            if (statementCache != null) {
+                statementCache.clear();
+            }
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.err.println("Error al cerrar conexion fisica: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Manejador del proxy de conexión prestada.
+     * Intercepta close() para devolver la conexión al pool, resuelve
+     * prepareStatement(sql) y prepareStatement(sql, autoGeneratedKeys)
+     * desde la caché de statements, y bloquea su uso una vez devuelta.
+     */
+    private static final class PooledConnectionHandler implements InvocationHandler {
+
+        /** Pool propietario de la conexión. */
+        private final ConnectionPool pool;
+        /** Conexión física envuelta. */
+        private final PooledEntry entry;
+        /** Indica si la conexión lógica ya fue devuelta. */
+        private boolean closed;
+
+        private PooledConnectionHandler(ConnectionPool pool, PooledEntry entry) {
+            this.pool = pool;
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        pool.release(entry);
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || entry.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "PooledConnection[" + entry.physical + (closed ? ", devuelta" : "") + "]";
+                }
+                case "prepareStatement" -> {
+                    if (closed) {
+                        throw new SQLException("La conexion ya fue devuelta al pool");
+                    }
+                    if (entry.statementCache != null && isCacheable(method)) {
+                        int keys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                        return entry.statementCache.prepare(entry.physical, (Connection) proxy, (String) args[0], keys);
+                    }
+                    try {
+                        return method.invoke(entry.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+                default -> {
+                    if (closed) {
+                        throw new SQLException("La conexion ya fue devuelta al pool");
+                    }
+                    try {
+                        return method.invoke(entry.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Indica si la sobrecarga de prepareStatement invocada puede cachearse:
+         * solo prepareStatement(String) y prepareStatement(String, int autoGeneratedKeys).
+         * Las variantes con tipo de ResultSet o columnas se preparan sin caché.
+         *
+         * @param method método invocado
+         * @return true si el statement puede cachearse
+         */
+        private static boolean isCacheable(Method method) {
+            Class<?>[] params = method.getParameterTypes();
+            return params.length == 1
+                    || (params.length == 2 && params[1] == int.class);
+        }
+    }
+
+}
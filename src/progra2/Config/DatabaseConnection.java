@@ -1,18 +1,38 @@
 package progra2.Config;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
 
 /**
  * Clase utilitaria singleton para gestionar conexiones JDBC a MySQL.
  * Encapsula la configuración de la base de datos y proporciona
  * un punto centralizado para obtener conexiones.
  * 
+ * Las conexiones se obtienen de un {@link ConnectionPool}: cerrarlas
+ * las devuelve al pool en lugar de cerrar la conexión física.
+ * 
+ * Con réplicas configuradas, getReadConnection() reparte las lecturas entre
+ * ellas (ver {@link ReplicaRouter}); getConnection() usa siempre el primario.
+ * 
  * La configuración puede ser sobrescrita mediante propiedades del sistema:
  * - Ddb.url: URL de conexión JDBC
  * - Ddb.user: Usuario de la base de datos
  * - Ddb.password: Contraseña del usuario
+ * - Ddb.pool.minSize / Ddb.pool.maxSize: tamaño mínimo y máximo del pool
+ * - Ddb.pool.timeoutMs: espera máxima para obtener una conexión
+ * - Ddb.pool.idleTimeoutMs: inactividad tras la cual se cierra una conexión
+ * - Ddb.pool.maxLifetimeMs: tiempo de vida máximo de una conexión
+ * - Ddb.pool.validationTimeoutSec: tiempo máximo de validación al prestar
+ * - Ddb.stmtCache.size: statements cacheados por conexión (0 la deshabilita)
+ * - Ddb.replicas: URLs JDBC de las réplicas de lectura, separadas por coma
+ * - Ddb.replicas.balance: round-robin o least-loaded
+ * - Ddb.replicas.readYourWritesMs: ventana tras una escritura en la que el hilo lee del primario
+ * - Ddb.replicas.maxLagSec: retraso de replicación máximo tolerado (0 no lo controla)
+ * - Ddb.replicas.lagCheckMs: intervalo entre controles del retraso
  */
 public final class DatabaseConnection {
     
@@ -25,6 +45,48 @@ public final class DatabaseConnection {
     /** Contraseña del usuario. Configurable via -Ddb.password */
     private static final String PASSWORD = System.getProperty("db.password", "");
     
+    /** Cantidad mínima de conexiones del pool. Configurable via -Ddb.pool.minSize */
+    private static final int POOL_MIN_SIZE = Integer.getInteger("db.pool.minSize", 2);
+    
+    /** Cantidad máxima de conexiones del pool. Configurable via -Ddb.pool.maxSize */
+    private static final int POOL_MAX_SIZE = Integer.getInteger("db.pool.maxSize", 10);
+    
+    /** Espera máxima para obtener una conexión (ms). Configurable via -Ddb.pool.timeoutMs */
+    private static final long POOL_TIMEOUT_MS = Long.getLong("db.pool.timeoutMs", 30_000L);
+    
+    /** Inactividad tras la cual se cierra una conexión (ms). Configurable via -Ddb.pool.idleTimeoutMs */
+    private static final long POOL_IDLE_TIMEOUT_MS = Long.getLong("db.pool.idleTimeoutMs", 600_000L);
+    
+    /** Tiempo de vida máximo de una conexión (ms). Configurable via -Ddb.pool.maxLifetimeMs */
+    private static final long POOL_MAX_LIFETIME_MS = Long.getLong("db.pool.maxLifetimeMs", 1_800_000L);
+    
+    /** Tiempo máximo de validación al prestar (s). Configurable via -Ddb.pool.validationTimeoutSec */
+    private static final int POOL_VALIDATION_TIMEOUT_SEC = Integer.getInteger("db.pool.validationTimeoutSec", 5);
+    
+    /** Statements cacheados por conexión. Configurable via -Ddb.stmtCache.size */
+    private static final int STATEMENT_CACHE_SIZE = Integer.getInteger("db.stmtCache.size", 64);
+    
+    /** URLs de las réplicas de lectura, separadas por coma. Configurable via -Ddb.replicas */
+    private static final String REPLICAS = System.getProperty("db.replicas", "");
+    
+    /** Criterio de elección de réplica. Configurable via -Ddb.replicas.balance */
+    private static final String REPLICAS_BALANCE = System.getProperty("db.replicas.balance", "round-robin");
+    
+    /** Ventana de lectura de las propias escrituras (ms). Configurable via -Ddb.replicas.readYourWritesMs */
+    private static final long REPLICAS_READ_YOUR_WRITES_MS = Long.getLong("db.replicas.readYourWritesMs", 1000L);
+    
+    /** Retraso de replicación máximo tolerado (s). Configurable via -Ddb.replicas.maxLagSec */
+    private static final int REPLICAS_MAX_LAG_SEC = Integer.getInteger("db.replicas.maxLagSec", 0);
+    
+    /** Intervalo entre controles del retraso (ms). Configurable via -Ddb.replicas.lagCheckMs */
+    private static final long REPLICAS_LAG_CHECK_MS = Long.getLong("db.replicas.lagCheckMs", 5000L);
+    
+    /** Pool compartido por toda la aplicación (primario). */
+    private static final ConnectionPool POOL;
+    
+    /** Enrutador de lecturas a réplicas, o null si no hay réplicas configuradas. */
+    private static final ReplicaRouter ROUTER;
+    
     /**
      * Bloque estático que carga el driver JDBC y valida la configuración.
      * Se ejecuta al cargar la clase por primera vez.
@@ -35,9 +97,20 @@ public final class DatabaseConnection {
         try {
             Class.forName("com.mysql.cj.jdbc.Driver");
             validateConfiguration();
+            POOL = crearPool(URL);
+            List<String> replicas = parseReplicas();
+            ROUTER = replicas.isEmpty() ? null : new ReplicaRouter(POOL, replicas, DatabaseConnection::crearPool,
+                    ReplicaRouter.Balance.parse(REPLICAS_BALANCE), REPLICAS_READ_YOUR_WRITES_MS,
+                    REPLICAS_MAX_LAG_SEC, REPLICAS_LAG_CHECK_MS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                if (ROUTER != null) {
+                    ROUTER.shutdown();
+                }
+                POOL.shutdown();
+            }, "connection-pool-shutdown"));
         } catch (ClassNotFoundException e) {
             throw new ExceptionInInitializerError("Error: No se encontro el driver de base de datos " + e.getMessage());
-        } catch (IllegalStateException e) {
+        } catch (IllegalStateException | IllegalArgumentException e) {
             throw new ExceptionInInitializerError("Error en la configuracion de la base de datos " + e.getMessage());
         }
     }
@@ -53,14 +126,126 @@ public final class DatabaseConnection {
     }
     
     /**
-     * Obtiene una nueva conexión a la base de datos.
-     * Cada llamada genera una conexión independiente que debe cerrarse manualmente.
+     * Obtiene una conexión del pool del primario.
+     * Debe cerrarse al terminar de usarla (idealmente con try-with-resources),
+     * lo que la devuelve al pool sin cerrar la conexión física.
+     * Si el hilo tiene una transacción activa (ver TransactionManager), devuelve
+     * en cambio la conexión de esa transacción, en una vista cuyo close() no la
+     * cierra: la operación participa de la transacción en curso.
      * 
      * @return conexión JDBC activa a la base de datos
-     * @throws SQLException si no se puede establecer la conexión
+     * @throws SQLException si no se puede obtener una conexión en el tiempo configurado
      */
     public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        Connection ambiente = TransactionManager.ambientConnection();
+        return ambiente != null ? ambiente : POOL.getConnection();
+    }
+    
+    /**
+     * Registra que el hilo actual confirmó una escritura en el primario: con
+     * réplicas configuradas, sus lecturas siguientes no irán a las réplicas
+     * durante la ventana de lectura de las propias escrituras.
+     * La invocan los DAOs tras una escritura en autocommit; dentro de una
+     * transacción no hace nada (la registra TransactionManager al confirmarla).
+     */
+    public static void registrarEscritura() {
+        if (ROUTER != null && !TransactionManager.isAmbientTransactionActive()) {
+            ReplicaRouter.registrarEscritura();
+        }
+    }
+    
+    /**
+     * Obtiene una conexión para operaciones de solo lectura.
+     * Si el hilo tiene una transacción activa, devuelve la conexión de esa
+     * transacción (como getConnection()). Si no, y hay réplicas configuradas,
+     * devuelve una conexión de una réplica disponible; sin réplicas, o dentro
+     * de la ventana posterior a una escritura del hilo, una del primario.
+     * Debe cerrarse al terminar de usarla, igual que getConnection().
+     * 
+     * @return conexión JDBC activa para leer
+     * @throws SQLException si no se puede obtener una conexión en el tiempo configurado
+     */
+    public static Connection getReadConnection() throws SQLException {
+        Connection ambiente = TransactionManager.ambientConnection();
+        if (ambiente != null) {
+            return ambiente;
+        }
+        return ROUTER != null ? ROUTER.getReadConnection() : POOL.getConnection();
+    }
+    
+    /**
+     * Obtiene el pool de conexiones, útil para consultar su estado.
+     * 
+     * @return pool de conexiones de la aplicación
+     */
+    public static ConnectionPool getPool() {
+        return POOL;
+    }
+    
+    /**
+     * Obtiene el estado de las réplicas de lectura configuradas.
+     * 
+     * @return estado de cada réplica (vacío si no hay réplicas)
+     */
+    public static List<ReplicaRouter.Stats> getReplicaStats() {
+        return ROUTER != null ? ROUTER.getStats() : Collections.emptyList();
+    }
+    
+    /**
+     * Obtiene la cantidad de lecturas hechas en el primario teniendo réplicas configuradas.
+     * 
+     * @return lecturas en el primario (0 si no hay réplicas)
+     */
+    public static long getPrimaryReads() {
+        return ROUTER != null ? ROUTER.getLecturasPrimario() : 0;
+    }
+    
+    /**
+     * Crea un pool de conexiones con la configuración común.
+     * 
+     * @param url URL JDBC del servidor (primario o réplica)
+     * @return pool de conexiones al servidor
+     */
+    private static ConnectionPool crearPool(String url) {
+        return new ConnectionPool(url, buildConnectionProperties(), POOL_MIN_SIZE, POOL_MAX_SIZE,
+                POOL_TIMEOUT_MS, POOL_IDLE_TIMEOUT_MS, POOL_MAX_LIFETIME_MS, POOL_VALIDATION_TIMEOUT_SEC,
+                STATEMENT_CACHE_SIZE);
+    }
+    
+    /**
+     * Separa la lista de réplicas de la propiedad db.replicas.
+     * 
+     * @return URLs de las réplicas (vacía si no hay réplicas configuradas)
+     */
+    private static List<String> parseReplicas() {
+        if (REPLICAS.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(REPLICAS.split("\\s*,\\s*"));
+    }
+    
+    /**
+     * Construye las propiedades de conexión que recibe el driver.
+     * Habilita los prepared statements del lado del servidor, que la caché
+     * de statements del pool reutiliza entre invocaciones, y la reescritura
+     * de lotes en INSERTs multi-fila para las inserciones por lotes.
+     * useCursorFetch permite recorrer resultados grandes con cursores del
+     * servidor cuando el statement define un fetch size positivo.
+     * useLocalSessionState hace que el driver responda getAutoCommit(),
+     * isReadOnly() y getTransactionIsolation() con el estado que ya conoce,
+     * sin consultar al servidor cada vez que el pool restablece una conexión.
+     * 
+     * @return propiedades con usuario, contraseña y opciones del driver
+     */
+    private static Properties buildConnectionProperties() {
+        Properties props = new Properties();
+        props.setProperty("user", USER);
+        props.setProperty("password", PASSWORD);
+        props.setProperty("useServerPrepStmts", "true");
+        props.setProperty("rewriteBatchedStatements", "true");
+        props.setProperty("useCursorFetch", "true");
+        props.setProperty("useLocalSessionState", "true");
+        return props;
     }
     
     /**
@@ -0,0 +1,489 @@
+package progra2.Config;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Caché de entidades en memoria, acotada y segura para uso concurrente.
+ * Se usa como caché de lectura (read-through) delante de los DAOs: si la
+ * entidad no está cacheada, se carga con el cargador indicado y se guarda.
+ *
+ * Características:
+ * - Lecturas sin locks sobre un ConcurrentHashMap: los aciertos de distintos
+ *   hilos no se serializan.
+ * - Desalojo LRU aproximado (por instante del último acceso) al superar la
+ *   cantidad máxima de entradas.
+ * - Expiración por tiempo de vida (TTL) de cada entrada.
+ * - Invalidación por clave, por condición o total. Invalidar una clave descarta
+ *   solo las cargas en curso de esa clave.
+ * - Estadísticas de aciertos, fallos, desalojos, expiraciones y tiempo de carga.
+ *
+ * Las entidades del dominio son mutables, por eso la caché guarda una copia
+ * propia y devuelve copias: modificar una entidad obtenida no altera la caché.
+ *
+ * Dentro de una transacción (ver TransactionManager.isAmbientTransactionActive)
+ * la caché se omite: las lecturas van a la base de datos para ver los cambios
+ * aún no confirmados de la propia transacción, y no se guardan porque podrían
+ * revertirse.
+ *
+ * La configuración por defecto puede sobrescribirse mediante propiedades del sistema:
+ * - Dcache.maxSize: cantidad máxima de entradas por caché
+ * - Dcache.ttlMs: tiempo de vida de cada entrada en milisegundos
+ *
+ * @param <K> tipo de la clave (ID de la entidad)
+ * @param <V> tipo de la entidad cacheada
+ */
+public class EntityCache<K, V> {
+
+    /** Cantidad máxima de entradas por defecto. Configurable via -Dcache.maxSize */
+    private static final int DEFAULT_MAX_SIZE = Integer.getInteger("cache.maxSize", 1000);
+
+    /** Tiempo de vida por defecto (ms). Configurable via -Dcache.ttlMs */
+    private static final long DEFAULT_TTL_MS = Long.getLong("cache.ttlMs", 60_000L);
+
+    /**
+     * Función que carga una entidad desde la base de datos.
+     *
+     * @param <K> tipo de la clave
+     * @param <V> tipo de la entidad
+     */
+    @FunctionalInterface
+    public interface Loader<K, V> {
+
+        /**
+         * Carga la entidad con la clave indicada.
+         *
+         * @param key clave de la entidad
+         * @return la entidad o null si no existe
+         * @throws Exception si hay error en la carga
+         */
+        V load(K key) throws Exception;
+    }
+
+    /**
+     * Función que carga varias entidades desde la base de datos en una sola operación.
+     *
+     * @param <K> tipo de la clave
+     * @param <V> tipo de la entidad
+     */
+    @FunctionalInterface
+    public interface BulkLoader<K, V> {
+
+        /**
+         * Carga las entidades con las claves indicadas.
+         *
+         * @param keys claves de las entidades
+         * @return entidades encontradas indexadas por clave (las inexistentes se omiten)
+         * @throws Exception si hay error en la carga
+         */
+        Map<K, V> loadAll(Collection<K> keys) throws Exception;
+    }
+
+    /** Nombre de la caché, usado en las estadísticas. */
+    private final String name;
+    /** Cantidad máxima de entradas. */
+    private final int maxSize;
+    /** Tiempo de vida de cada entrada en milisegundos. */
+    private final long ttlMs;
+    /** Función que crea una copia independiente de una entidad. */
+    private final UnaryOperator<V> copier;
+
+    /** Entradas cacheadas. Las lecturas no toman locks. */
+    private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    /**
+     * Cargas en curso por clave. Invalidar una clave descarta su marca, y la carga
+     * que ya no la encuentra al terminar no guarda su resultado: así no se vuelve
+     * a cachear un valor leído antes de la invalidación. Las cargas de otras
+     * claves no se ven afectadas.
+     */
+    private final ConcurrentHashMap<K, Object> inFlight = new ConcurrentHashMap<>();
+    /** Evita que varios hilos desalojen a la vez (los demás siguen sin esperar). */
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+
+    /**
+     * Crea una caché con la configuración por defecto.
+     *
+     * @param name nombre de la caché
+     * @param copier función que copia una entidad
+     */
+    public EntityCache(String name, UnaryOperator<V> copier) {
+        this(name, DEFAULT_MAX_SIZE, DEFAULT_TTL_MS, copier);
+    }
+
+    /**
+     * Crea una caché con capacidad y tiempo de vida explícitos.
+     *
+     * @param name nombre de la caché
+     * @param maxSize cantidad máxima de entradas (0 deshabilita la caché)
+     * @param ttlMs tiempo de vida de cada entrada en milisegundos
+     * @param copier función que copia una entidad
+     * @throws IllegalArgumentException si algún parámetro es inválido
+     */
+    public EntityCache(String name, int maxSize, long ttlMs, UnaryOperator<V> copier) {
+        if (maxSize < 0 || ttlMs <= 0) {
+            throw new IllegalArgumentException("Configuracion de cache invalida: maxSize=" + maxSize + ", ttlMs=" + ttlMs);
+        }
+        if (copier == null) {
+            throw new IllegalArgumentException("La funcion de copia no puede ser null");
+        }
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMs = ttlMs;
+        this.copier = copier;
+    }
+
+    /**
+     * Obtiene una entidad de la caché o, si no está o expiró, la carga y la guarda.
+     * Los resultados null (entidad inexistente) no se cachean.
+     *
+     * @param key clave de la entidad
+     * @param loader función de carga desde la base de datos
+     * @return copia de la entidad o null si no existe
+     * @throws Exception si hay error en la carga
+     */
+    public V get(K key, Loader<K, V> loader) throws Exception {
+        if (TransactionManager.isAmbientTransactionActive()) {
+            return loader.load(key);
+        }
+        V cached = lookup(key, System.currentTimeMillis());
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        Object marca = registrarCarga(key);
+        try {
+            long start = System.nanoTime();
+            V loaded = loader.load(key);
+            loadNanos.add(System.nanoTime() - start);
+            loads.increment();
+
+            if (loaded != null) {
+                store(key, loaded, marca, System.currentTimeMillis() + ttlMs);
+                evictIfNeeded();
+            }
+            return loaded;
+        } finally {
+            inFlight.remove(key, marca);
+        }
+    }
+
+    /**
+     * Obtiene varias entidades: las cacheadas se resuelven en memoria y todas
+     * las faltantes se cargan juntas con una única llamada al cargador.
+     *
+     * @param keys claves de las entidades (se ignoran repetidas)
+     * @param loader función de carga por lotes desde la base de datos
+     * @return copias de las entidades encontradas, indexadas por clave en el orden solicitado
+     * @throws Exception si hay error en la carga
+     */
+    public Map<K, V> getAll(Collection<K> keys, BulkLoader<K, V> loader) throws Exception {
+        Map<K, V> cached = new HashMap<>();
+        List<K> missing = new ArrayList<>();
+        Collection<K> uniqueKeys = new LinkedHashSet<>(keys);
+        if (TransactionManager.isAmbientTransactionActive()) {
+            missing.addAll(uniqueKeys);
+            return ordenar(uniqueKeys, cached, missing.isEmpty() ? Map.of() : loader.loadAll(missing));
+        }
+        long now = System.currentTimeMillis();
+
+        for (K key : uniqueKeys) {
+            V value = lookup(key, now);
+            if (value != null) {
+                cached.put(key, value);
+            } else {
+                missing.add(key);
+            }
+        }
+        hits.add(cached.size());
+        misses.add(missing.size());
+
+        Map<K, V> loaded = Map.of();
+        if (!missing.isEmpty()) {
+            Map<K, Object> marcas = new HashMap<>();
+            for (K key : missing) {
+                marcas.put(key, registrarCarga(key));
+            }
+            try {
+                long start = System.nanoTime();
+                loaded = loader.loadAll(missing);
+                loadNanos.add(System.nanoTime() - start);
+                loads.increment();
+
+                long expiresAt = System.currentTimeMillis() + ttlMs;
+                for (Map.Entry<K, V> loadedEntry : loaded.entrySet()) {
+                    store(loadedEntry.getKey(), loadedEntry.getValue(), marcas.get(loadedEntry.getKey()), expiresAt);
+                }
+                evictIfNeeded();
+            } finally {
+                marcas.forEach(inFlight::remove);
+            }
+        }
+
+        return ordenar(uniqueKeys, cached, loaded);
+    }
+
+    /**
+     * Une las entidades cacheadas y las cargadas en el orden solicitado.
+     *
+     * @param keys claves solicitadas, sin repetir
+     * @param cached entidades resueltas desde la caché
+     * @param loaded entidades cargadas de la base de datos
+     * @return entidades encontradas, indexadas por clave en el orden de keys
+     */
+    private Map<K, V> ordenar(Collection<K> keys, Map<K, V> cached, Map<K, V> loaded) {
+        Map<K, V> result = new LinkedHashMap<>();
+        for (K key : keys) {
+            V value = cached.containsKey(key) ? cached.get(key) : loaded.get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Invalida la entrada de una clave y descarta el resultado de sus cargas en curso.
+     *
+     * @param key clave a invalidar
+     */
+    public void invalidate(K key) {
+        // Primero la marca: una carga que guarde después ya no la encuentra
+        inFlight.remove(key);
+        entries.remove(key);
+    }
+
+    /**
+     * Invalida todas las entradas cuyo valor cumple la condición.
+     * Como no se sabe qué devolverán las cargas en curso, descarta el resultado
+     * de todas ellas.
+     *
+     * @param condition condición sobre la entidad cacheada
+     */
+    public void invalidateIf(Predicate<V> condition) {
+        inFlight.clear();
+        entries.values().removeIf(entry -> condition.test(entry.value));
+    }
+
+    /** Invalida todas las entradas y descarta el resultado de las cargas en curso. */
+    public void invalidateAll() {
+        inFlight.clear();
+        entries.clear();
+    }
+
+    /**
+     * Obtiene una instantánea de las estadísticas de la caché.
+     *
+     * @return estadísticas acumuladas
+     */
+    public Stats getStats() {
+        return new Stats(name, entries.size(), hits.sum(), misses.sum(), evictions.sum(),
+                expirations.sum(), loads.sum(), loadNanos.sum());
+    }
+
+    /**
+     * Busca una entrada vigente y registra el acceso. Descarta la entrada si expiró.
+     *
+     * @param key clave de la entidad
+     * @param now instante actual (ms)
+     * @return copia de la entidad, o null si no está cacheada o expiró
+     */
+    private V lookup(K key, long now) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt <= now) {
+            if (entries.remove(key, entry)) {
+                expirations.increment();
+            }
+            return null;
+        }
+        entry.lastAccess = System.nanoTime();
+        return copier.apply(entry.value);
+    }
+
+    /**
+     * Registra una carga en curso de la clave.
+     *
+     * @param key clave a cargar
+     * @return marca de la carga, a comparar al guardar el resultado
+     */
+    private Object registrarCarga(K key) {
+        Object marca = new Object();
+        inFlight.put(key, marca);
+        return marca;
+    }
+
+    /**
+     * Guarda el resultado de una carga si la clave no se invalidó mientras se
+     * cargaba (su marca sigue registrada). La comprobación se hace dentro de
+     * compute(), así una invalidación concurrente queda antes (y se descarta
+     * el valor) o después (y lo quita).
+     *
+     * @param key clave de la entidad
+     * @param value entidad cargada
+     * @param marca marca registrada al iniciar la carga
+     * @param expiresAt instante de expiración (ms)
+     */
+    private void store(K key, V value, Object marca, long expiresAt) {
+        if (maxSize == 0 || marca == null) {
+            return;
+        }
+        V stored = copier.apply(value);
+        entries.compute(key, (k, actual) -> inFlight.get(k) == marca ? new Entry<>(stored, expiresAt) : actual);
+    }
+
+    /**
+     * Desaloja las entradas con el acceso más antiguo al superar la capacidad
+     * (LRU aproximado). Para no recorrer las entradas en cada inserción con la
+     * caché llena, deja un margen de alrededor del 3% de la capacidad.
+     * Si otro hilo ya está desalojando, no espera.
+     */
+    private void evictIfNeeded() {
+        if (entries.size() <= maxSize || !evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            int excess = entries.size() - maxSize;
+            if (excess <= 0) {
+                return;
+            }
+            int toEvict = Math.min(entries.size(), excess + maxSize / 32);
+            // Montículo con las toEvict entradas de acceso más antiguo (la más reciente arriba)
+            PriorityQueue<Map.Entry<K, Entry<V>>> oldest = new PriorityQueue<>(toEvict + 1,
+                    (a, b) -> Long.compare(b.getValue().lastAccess, a.getValue().lastAccess));
+            for (Map.Entry<K, Entry<V>> e : entries.entrySet()) {
+                oldest.add(Map.entry(e.getKey(), e.getValue()));
+                if (oldest.size() > toEvict) {
+                    oldest.poll();
+                }
+            }
+            for (Map.Entry<K, Entry<V>> e : oldest) {
+                if (entries.remove(e.getKey(), e.getValue())) {
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /**
+     * Entrada de la caché con su instante de expiración.
+     *
+     * @param <V> tipo de la entidad
+     */
+    private static final class Entry<V> {
+
+        /** Copia de la entidad propiedad de la caché. */
+        private final V value;
+        /** Instante (ms) a partir del cual la entrada expira. */
+        private final long expiresAt;
+        /** Último acceso (System.nanoTime()), para el desalojo LRU aproximado. */
+        private volatile long lastAccess = System.nanoTime();
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Estadísticas de uso de una caché en un instante dado.
+     */
+    public static final class Stats {
+
+        private final String name;
+        private final int size;
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final long expirations;
+        private final long loads;
+        private final long loadNanos;
+
+        private Stats(String name, int size, long hits, long misses, long evictions,
+                      long expirations, long loads, long loadNanos) {
+            this.name = name;
+            this.size = size;
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.loads = loads;
+            this.loadNanos = loadNanos;
+        }
+
+        /** @return entradas actualmente cacheadas */
+        public int getSize() {
+            return size;
+        }
+
+        /** @return lecturas resueltas desde la caché */
+        public long getHits() {
+            return hits;
+        }
+
+        /** @return lecturas que debieron ir a la base de datos */
+        public long getMisses() {
+            return misses;
+        }
+
+        /** @return entradas desalojadas por capacidad */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        /** @return entradas descartadas por expiración */
+        public long getExpirations() {
+            return expirations;
+        }
+
+        /** @return proporción de aciertos entre 0 y 1 */
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        /** @return tiempo promedio de carga desde la base de datos, en milisegundos */
+        public double getAverageLoadMillis() {
+            return loads == 0 ? 0.0 : loadNanos / 1_000_000.0 / loads;
+        }
+
+        /**
+         * Representación en texto de las estadísticas.
+         *
+         * @return String con todos los contadores
+         */
+        @Override
+        public String toString() {
+            return String.format("Cache %s: %d entradas, %d aciertos, %d fallos (%.1f%%), "
+                    + "%d desalojos, %d expiraciones, carga promedio %.2f ms",
+                    name, size, hits, misses, getHitRatio() * 100, evictions, expirations, getAverageLoadMillis());
+        }
+    }
+
+}
@@ -0,0 +1,321 @@
+package progra2.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Ejecutor de migraciones de esquema versionadas.
+ * Aplica en orden los scripts SQL de la carpeta migrations/ que todavía no
+ * figuran en la tabla schema_version, registrando versión, descripción,
+ * checksum SHA-256 y duración de cada uno.
+ *
+ * Es idempotente: una migración ya registrada no se vuelve a ejecutar, y si
+ * su contenido cambió (checksum distinto) se aborta en lugar de aplicarla
+ * de nuevo. Las sentencias que fallan porque el objeto ya existe (columna,
+ * índice o tabla) se consideran aplicadas, lo que permite registrar las
+ * migraciones sobre bases creadas con la versión actual de create_database.sql.
+ *
+ * Se usa un lock con nombre de MySQL para que dos instancias que arrancan
+ * a la vez no apliquen la misma migración.
+ */
+public final class MigrationRunner {
+
+    /**
+     * Migraciones disponibles, en orden de aplicación.
+     * Cada archivo debe llamarse V{version}__{descripcion}.sql.
+     * Para agregar una migración, crear el archivo y sumarlo al final de esta lista.
+     */
+    private static final String[] MIGRACIONES = {
+        "V1__indices_rendimiento.sql",
+        "V2__indices_fulltext.sql",
+        "V3__version_concurrencia_optimista.sql",
+        "V4__isbn13_canonico.sql",
+        "V5__archivo_eliminados.sql",
+        "V6__importacion_checkpoint.sql"
+    };
+
+    /** Carpeta (relativa a esta clase) donde se encuentran los scripts. */
+    private static final String CARPETA_MIGRACIONES = "migrations/";
+
+    /** Nombre del lock de MySQL que serializa las migraciones concurrentes. */
+    private static final String LOCK_NAME = "progra2_schema_migration";
+
+    /** Segundos a esperar por el lock de migración. */
+    private static final int LOCK_TIMEOUT_SEC = 60;
+
+    /** Errores de MySQL que indican que el objeto ya existe. */
+    private static final int ER_TABLE_EXISTS = 1050;
+    private static final int ER_DUP_FIELDNAME = 1060;
+    private static final int ER_DUP_KEYNAME = 1061;
+
+    /** Query SQL para crear la tabla de control de versiones. */
+    private static final String CREATE_VERSION_TABLE_SQL =
+            "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INT PRIMARY KEY, " +
+            "descripcion VARCHAR(200) NOT NULL, " +
+            "checksum CHAR(64) NOT NULL, " +
+            "aplicada_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+            "duracion_ms BIGINT NOT NULL)";
+
+    /** Query SQL para obtener las migraciones ya aplicadas. */
+    private static final String SELECT_APPLIED_SQL = "SELECT version, checksum FROM schema_version";
+
+    /** Query SQL para registrar una migración aplicada. */
+    private static final String INSERT_VERSION_SQL =
+            "INSERT INTO schema_version (version, descripcion, checksum, duracion_ms) VALUES (?, ?, ?, ?)";
+
+    /**
+     * Constructor privado para prevenir instanciación.
+     *
+     * @throws UnsupportedOperationException siempre que se intente instanciar
+     */
+    private MigrationRunner() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * Aplica todas las migraciones pendientes.
+     *
+     * @return cantidad de migraciones aplicadas en esta ejecución
+     * @throws SQLException si una migración falla, cambió su checksum o no se obtiene el lock
+     * @throws IOException si no se puede leer un script de migración
+     */
+    public static int migrar() throws SQLException, IOException {
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            adquirirLock(conn);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute(CREATE_VERSION_TABLE_SQL);
+                }
+
+                Map<Integer, String> aplicadas = obtenerAplicadas(conn);
+                int cantidad = 0;
+
+                for (String archivo : MIGRACIONES) {
+                    Migracion migracion = cargar(archivo);
+                    String checksumAplicado = aplicadas.get(migracion.version);
+
+                    if (checksumAplicado != null) {
+                        if (!checksumAplicado.equals(migracion.checksum)) {
+                            throw new SQLException("La migracion " + archivo + " fue modificada despues de aplicarse "
+                                    + "(checksum registrado " + checksumAplicado + ", actual " + migracion.checksum + ")");
+                        }
+                        continue;
+                    }
+
+                    aplicar(conn, migracion);
+                    cantidad++;
+                }
+                return cantidad;
+            } finally {
+                liberarLock(conn);
+            }
+        }
+    }
+
+
+    // ===================== Métodos auxiliares privados =====================
+
+    /**
+     * Ejecuta las sentencias de una migración y la registra en schema_version.
+     *
+     * @param conn conexión de base de datos
+     * @param migracion la migración a aplicar
+     * @throws SQLException si alguna sentencia falla
+     */
+    private static void aplicar(Connection conn, Migracion migracion) throws SQLException {
+        System.out.println("Aplicando migracion V" + migracion.version + ": " + migracion.descripcion);
+        long inicio = System.currentTimeMillis();
+
+        try (Statement stmt = conn.createStatement()) {
+            for (String sentencia : migracion.sentencias) {
+                try {
+                    stmt.execute(sentencia);
+                } catch (SQLException e) {
+                    if (!yaExiste(e)) {
+                        throw new SQLException("Error en la migracion V" + migracion.version + ": " + e.getMessage(), e);
+                    }
+                    System.out.println("  (omitida, el objeto ya existe) " + e.getMessage());
+                }
+            }
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_VERSION_SQL)) {
+            stmt.setInt(1, migracion.version);
+            stmt.setString(2, migracion.descripcion);
+            stmt.setString(3, migracion.checksum);
+            stmt.setLong(4, System.currentTimeMillis() - inicio);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Verifica si el error indica que el objeto que crea la sentencia ya existe.
+     *
+     * @param e excepción de la sentencia
+     * @return true si la sentencia puede considerarse ya aplicada
+     */
+    private static boolean yaExiste(SQLException e) {
+        int codigo = e.getErrorCode();
+        return codigo == ER_TABLE_EXISTS || codigo == ER_DUP_FIELDNAME || codigo == ER_DUP_KEYNAME;
+    }
+
+    /**
+     * Obtiene las migraciones registradas con su checksum.
+     *
+     * @param conn conexión de base de datos
+     * @return mapa de versión a checksum
+     * @throws SQLException si hay error en la consulta
+     */
+    private static Map<Integer, String> obtenerAplicadas(Connection conn) throws SQLException {
+        Map<Integer, String> aplicadas = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_APPLIED_SQL)) {
+            while (rs.next()) {
+                aplicadas.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        return aplicadas;
+    }
+
+    /**
+     * Adquiere el lock de migración, esperando como máximo LOCK_TIMEOUT_SEC.
+     *
+     * @param conn conexión de base de datos
+     * @throws SQLException si no se obtiene el lock
+     */
+    private static void adquirirLock(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.setInt(2, LOCK_TIMEOUT_SEC);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("No se pudo obtener el lock de migracion en " + LOCK_TIMEOUT_SEC + " segundos");
+                }
+            }
+        }
+    }
+
+    /**
+     * Libera el lock de migración ignorando errores.
+     *
+     * @param conn conexión de base de datos
+     */
+    private static void liberarLock(Connection conn) {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+            stmt.setString(1, LOCK_NAME);
+            stmt.executeQuery().close();
+        } catch (SQLException e) {
+            System.err.println("Error al liberar el lock de migracion: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lee un script de migración y calcula su checksum.
+     *
+     * @param archivo nombre del archivo (V{version}__{descripcion}.sql)
+     * @return migración con sus sentencias
+     * @throws IOException si el archivo no existe o no puede leerse
+     */
+    private static Migracion cargar(String archivo) throws IOException {
+        byte[] contenido;
+        try (InputStream in = MigrationRunner.class.getResourceAsStream(CARPETA_MIGRACIONES + archivo)) {
+            if (in == null) {
+                throw new IOException("No se encontro el script de migracion " + archivo);
+            }
+            contenido = in.readAllBytes();
+        }
+
+        int separador = archivo.indexOf("__");
+        if (!archivo.startsWith("V") || separador < 0 || !archivo.endsWith(".sql")) {
+            throw new IOException("Nombre de migracion invalido: " + archivo);
+        }
+        int version = Integer.parseInt(archivo.substring(1, separador));
+        String descripcion = archivo.substring(separador + 2, archivo.length() - 4).replace('_', ' ');
+
+        // Normalizar fines de línea para que el checksum no dependa del sistema operativo
+        String script = new String(contenido, StandardCharsets.UTF_8).replace("\r\n", "\n");
+        return new Migracion(version, descripcion, sha256(script.getBytes(StandardCharsets.UTF_8)),
+                dividirSentencias(script));
+    }
+
+    /**
+     * Divide un script en sentencias separadas por ';', descartando comentarios de línea.
+     *
+     * @param script contenido del script
+     * @return sentencias no vacías
+     */
+    private static List<String> dividirSentencias(String script) {
+        StringBuilder sinComentarios = new StringBuilder();
+        for (String linea : script.split("\\R")) {
+            if (!linea.trim().startsWith("--")) {
+                sinComentarios.append(linea).append('\n');
+            }
+        }
+
+        List<String> sentencias = new ArrayList<>();
+        for (String sentencia : sinComentarios.toString().split(";")) {
+            if (!sentencia.trim().isEmpty()) {
+                sentencias.add(sentencia.trim());
+            }
+        }
+        return sentencias;
+    }
+
+    /**
+     * Calcula el hash SHA-256 de un contenido en hexadecimal.
+     *
+     * @param contenido bytes a resumir
+     * @return hash de 64 caracteres hexadecimales
+     */
+    private static String sha256(byte[] contenido) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(contenido);
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /**
+     * Script de migración cargado en memoria.
+     */
+    private static final class Migracion {
+
+        /** Número de versión, tomado del nombre del archivo. */
+        private final int version;
+        /** Descripción legible, tomada del nombre del archivo. */
+        private final String descripcion;
+        /** Checksum SHA-256 del contenido del archivo. */
+        private final String checksum;
+        /** Sentencias SQL a ejecutar, en orden. */
+        private final List<String> sentencias;
+
+        private Migracion(int version, String descripcion, String checksum, List<String> sentencias) {
+            this.version = version;
+            this.descripcion = descripcion;
+            this.checksum = checksum;
+            this.sentencias = sentencias;
+        }
+    }
+
+}
@@ -0,0 +1,390 @@
+package progra2.Config;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Enrutador de lecturas hacia réplicas de MySQL.
+ *
+ * Las lecturas fuera de una transacción (listados y búsquedas) se reparten
+ * entre las réplicas, cada una con su propio {@link ConnectionPool}, por turno
+ * (round-robin) o eligiendo la que tiene menos conexiones en uso. Las escrituras,
+ * las lecturas por ID (alimentan la caché de entidades) y todo lo que corre dentro
+ * de un TransactionManager de escritura usan siempre el primario (ver DatabaseConnection).
+ *
+ * Lectura de las propias escrituras: después de que un hilo escribe en el primario,
+ * sus lecturas van también al primario durante una ventana configurable, para no
+ * leer de una réplica que todavía no recibió el cambio.
+ *
+ * Réplicas no disponibles: si no se puede obtener una conexión de una réplica,
+ * se la excluye por un tiempo y la lectura se hace en el primario. Opcionalmente,
+ * una tarea periódica consulta el retraso de replicación (SHOW REPLICA STATUS) y
+ * excluye las réplicas atrasadas más de lo tolerado o con la replicación detenida.
+ * Si no queda ninguna réplica disponible, todas las lecturas van al primario.
+ */
+public final class ReplicaRouter {
+
+    /** Tiempo que una réplica queda excluida tras un error de conexión (ms). */
+    private static final long EXCLUSION_MS = 30_000L;
+
+    /** Última escritura en el primario de cada hilo (System.nanoTime()). */
+    private static final ThreadLocal<Long> ULTIMA_ESCRITURA = new ThreadLocal<>();
+
+    /** Criterio de elección de la réplica para cada lectura. */
+    public enum Balance {
+        /** Por turno, saltando las réplicas excluidas. */
+        ROUND_ROBIN,
+        /** La réplica con menos conexiones prestadas (por turno ante empates). */
+        LEAST_LOADED;
+
+        /**
+         * Interpreta el valor de la propiedad db.replicas.balance.
+         *
+         * @param valor "round-robin" o "least-loaded" (sin distinguir mayúsculas)
+         * @return criterio correspondiente
+         * @throws IllegalArgumentException si el valor no es válido
+         */
+        public static Balance parse(String valor) {
+            switch (valor.trim().toLowerCase(Locale.ROOT)) {
+                case "round-robin":
+                    return ROUND_ROBIN;
+                case "least-loaded":
+                    return LEAST_LOADED;
+                default:
+                    throw new IllegalArgumentException(
+                            "Criterio de balanceo invalido: " + valor + " (round-robin o least-loaded)");
+            }
+        }
+    }
+
+    /** Pool del primario, usado cuando no hay réplica disponible o aplica la ventana. */
+    private final ConnectionPool primario;
+    /** Réplicas configuradas, en el orden de la propiedad. */
+    private final List<Replica> replicas;
+    /** Criterio de elección de réplica. */
+    private final Balance balance;
+    /** Ventana de lectura de las propias escrituras (ns). */
+    private final long ventanaEscrituraNs;
+    /** Retraso de replicación máximo tolerado (s), o 0 si no se controla. */
+    private final int maxLagSec;
+    /** Tarea periódica de control del retraso, o null si no se controla. */
+    private final ScheduledExecutorService lagChecker;
+    /** Turno de la próxima lectura. */
+    private final AtomicInteger turno = new AtomicInteger();
+    /** Lecturas que se hicieron en el primario. */
+    private final LongAdder lecturasPrimario = new LongAdder();
+
+    /**
+     * Crea el enrutador y, si se controla el retraso, inicia la tarea periódica.
+     *
+     * @param primario pool del primario
+     * @param urls URLs JDBC de las réplicas (al menos una)
+     * @param crearPool crea el pool de conexiones de una réplica a partir de su URL
+     * @param balance criterio de elección de réplica
+     * @param readYourWritesMs ventana tras una escritura en la que el hilo lee del primario (0 la deshabilita)
+     * @param maxLagSec retraso de replicación máximo tolerado en segundos (0 no lo controla)
+     * @param lagCheckMs intervalo entre controles del retraso
+     * @throws IllegalArgumentException si algún parámetro es inválido
+     */
+    public ReplicaRouter(ConnectionPool primario, List<String> urls, Function<String, ConnectionPool> crearPool,
+                         Balance balance, long readYourWritesMs, int maxLagSec, long lagCheckMs) {
+        if (primario == null || balance == null) {
+            throw new IllegalArgumentException("El pool primario y el criterio de balanceo no pueden ser null");
+        }
+        if (urls == null || urls.isEmpty()) {
+            throw new IllegalArgumentException("Debe configurarse al menos una replica");
+        }
+        if (readYourWritesMs < 0 || maxLagSec < 0 || lagCheckMs <= 0) {
+            throw new IllegalArgumentException("Configuracion de replicas invalida: readYourWritesMs=" + readYourWritesMs
+                    + ", maxLagSec=" + maxLagSec + ", lagCheckMs=" + lagCheckMs);
+        }
+        this.primario = primario;
+        this.balance = balance;
+        this.ventanaEscrituraNs = TimeUnit.MILLISECONDS.toNanos(readYourWritesMs);
+        this.maxLagSec = maxLagSec;
+
+        List<Replica> lista = new ArrayList<>();
+        for (String url : urls) {
+            if (url == null || url.trim().isEmpty()) {
+                throw new IllegalArgumentException("La URL de una replica no puede estar vacia");
+            }
+            lista.add(new Replica(url.trim(), crearPool.apply(url.trim())));
+        }
+        this.replicas = Collections.unmodifiableList(lista);
+
+        if (maxLagSec > 0) {
+            lagChecker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "replica-lag-check");
+                t.setDaemon(true);
+                return t;
+            });
+            lagChecker.scheduleWithFixedDelay(this::controlarRetraso, 0, lagCheckMs, TimeUnit.MILLISECONDS);
+        } else {
+            lagChecker = null;
+        }
+    }
+
+    /**
+     * Registra que el hilo actual escribió en el primario: durante la ventana de
+     * lectura de las propias escrituras, sus lecturas no irán a las réplicas.
+     * La invocan DatabaseConnection.registrarEscritura(), tras una escritura en
+     * autocommit, y TransactionManager al confirmar una transacción de escritura.
+     */
+    static void registrarEscritura() {
+        ULTIMA_ESCRITURA.set(System.nanoTime());
+    }
+
+    /**
+     * Obtiene una conexión para leer: de una réplica disponible o, si no hay
+     * ninguna o el hilo escribió hace menos de la ventana, del primario.
+     *
+     * @return conexión prestada por el pool elegido
+     * @throws SQLException si tampoco se puede obtener una conexión del primario
+     */
+    public Connection getReadConnection() throws SQLException {
+        if (!dentroDeVentana()) {
+            Replica replica = elegir();
+            if (replica != null) {
+                try {
+                    Connection conn = replica.pool.getConnection();
+                    replica.lecturas.increment();
+                    return conn;
+                } catch (SQLException e) {
+                    replica.fallos.increment();
+                    replica.excluidaHasta = System.currentTimeMillis() + EXCLUSION_MS;
+                    System.err.println("Replica no disponible (" + replica.url + "), se lee del primario: "
+                            + e.getMessage());
+                }
+            }
+        }
+        lecturasPrimario.increment();
+        return primario.getConnection();
+    }
+
+    /**
+     * Obtiene el estado de cada réplica.
+     *
+     * @return estado de las réplicas, en el orden de configuración
+     */
+    public List<Stats> getStats() {
+        long ahora = System.currentTimeMillis();
+        List<Stats> stats = new ArrayList<>();
+        for (Replica r : replicas) {
+            stats.add(new Stats(r.url, r.disponible(ahora), r.lagSec, r.pool.getActiveConnections(),
+                    r.lecturas.sum(), r.fallos.sum()));
+        }
+        return stats;
+    }
+
+    /**
+     * Obtiene la cantidad de lecturas que se hicieron en el primario (por la
+     * ventana de las propias escrituras o por falta de réplicas disponibles).
+     *
+     * @return lecturas en el primario
+     */
+    public long getLecturasPrimario() {
+        return lecturasPrimario.sum();
+    }
+
+    /**
+     * Detiene el control del retraso y cierra los pools de las réplicas.
+     */
+    public void shutdown() {
+        if (lagChecker != null) {
+            lagChecker.shutdownNow();
+        }
+        for (Replica r : replicas) {
+            r.pool.shutdown();
+        }
+    }
+
+
+    // ===================== Métodos auxiliares privados =====================
+
+    /**
+     * Indica si el hilo actual escribió en el primario hace menos de la ventana.
+     *
+     * @return true si la lectura debe ir al primario
+     */
+    private boolean dentroDeVentana() {
+        Long ultima = ULTIMA_ESCRITURA.get();
+        return ultima != null && System.nanoTime() - ultima < ventanaEscrituraNs;
+    }
+
+    /**
+     * Elige la réplica para una lectura según el criterio configurado.
+     *
+     * @return réplica elegida, o null si ninguna está disponible
+     */
+    private Replica elegir() {
+        long ahora = System.currentTimeMillis();
+        int n = replicas.size();
+        int inicio = Math.floorMod(turno.getAndIncrement(), n);
+        Replica elegida = null;
+        int menorCarga = Integer.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            Replica r = replicas.get((inicio + i) % n);
+            if (!r.disponible(ahora)) {
+                continue;
+            }
+            if (balance == Balance.ROUND_ROBIN) {
+                return r;
+            }
+            int carga = r.pool.getActiveConnections();
+            if (carga < menorCarga) {
+                elegida = r;
+                menorCarga = carga;
+            }
+        }
+        return elegida;
+    }
+
+    /**
+     * Consulta el retraso de replicación de cada réplica y marca como atrasadas
+     * las que superan el máximo, las que tienen la replicación detenida y las
+     * que no pudieron consultarse.
+     */
+    private void controlarRetraso() {
+        for (Replica r : replicas) {
+            try (Connection conn = r.pool.getConnection()) {
+                r.lagSec = consultarRetraso(conn);
+            } catch (SQLException e) {
+                r.lagSec = -1;
+            } catch (RuntimeException e) {
+                // Un error inesperado no debe cancelar la tarea periódica
+                r.lagSec = -1;
+            }
+            boolean atrasada = r.lagSec < 0 || r.lagSec > maxLagSec;
+            if (atrasada && !r.atrasada) {
+                System.err.println("Replica excluida por retraso de replicacion (" + r.url + "): "
+                        + (r.lagSec < 0 ? "desconocido" : r.lagSec + " s"));
+            }
+            r.atrasada = atrasada;
+        }
+    }
+
+    /**
+     * Consulta el retraso de replicación en una réplica.
+     * Usa SHOW REPLICA STATUS (MySQL 8.0.22+) y, si no existe, SHOW SLAVE STATUS.
+     *
+     * @param conn conexión a la réplica
+     * @return retraso en segundos, o -1 si la replicación no está configurada o está detenida
+     * @throws SQLException si no se puede consultar el estado
+     */
+    private static long consultarRetraso(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            ResultSet rs;
+            String columna;
+            try {
+                rs = stmt.executeQuery("SHOW REPLICA STATUS");
+                columna = "Seconds_Behind_Source";
+            } catch (SQLException e) {
+                rs = stmt.executeQuery("SHOW SLAVE STATUS");
+                columna = "Seconds_Behind_Master";
+            }
+            try (ResultSet status = rs) {
+                if (!status.next()) {
+                    return -1;
+                }
+                long lag = status.getLong(columna);
+                return status.wasNull() ? -1 : lag;
+            }
+        }
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /** Réplica configurada con su pool y su estado. */
+    private static final class Replica {
+
+        final String url;
+        final ConnectionPool pool;
+        /** Lecturas servidas. */
+        final LongAdder lecturas = new LongAdder();
+        /** Errores al obtener una conexión. */
+        final LongAdder fallos = new LongAdder();
+        /** Momento hasta el que queda excluida por un error de conexión (ms). */
+        volatile long excluidaHasta;
+        /** Último retraso medido en segundos (-1 desconocido). */
+        volatile long lagSec = -1;
+        /** Indica si el último control del retraso la excluyó. */
+        volatile boolean atrasada;
+
+        Replica(String url, ConnectionPool pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+
+        boolean disponible(long ahora) {
+            return !atrasada && ahora >= excluidaHasta;
+        }
+    }
+
+    /**
+     * Foto del estado de una réplica.
+     */
+    public static final class Stats {
+
+        private final String url;
+        private final boolean disponible;
+        private final long lagSec;
+        private final int activas;
+        private final long lecturas;
+        private final long fallos;
+
+        private Stats(String url, boolean disponible, long lagSec, int activas, long lecturas, long fallos) {
+            this.url = url;
+            this.disponible = disponible;
+            this.lagSec = lagSec;
+            this.activas = activas;
+            this.lecturas = lecturas;
+            this.fallos = fallos;
+        }
+
+        /** @return URL JDBC de la réplica */
+        public String getUrl() {
+            return url;
+        }
+
+        /** @return true si recibe lecturas en este momento */
+        public boolean isDisponible() {
+            return disponible;
+        }
+
+        /** @return último retraso medido en segundos (-1 si no se midió o es desconocido) */
+        public long getLagSec() {
+            return lagSec;
+        }
+
+        /** @return lecturas servidas */
+        public long getLecturas() {
+            return lecturas;
+        }
+
+        /**
+         * Representación en texto del estado.
+         *
+         * @return String con la URL, la disponibilidad y los contadores
+         */
+        @Override
+        public String toString() {
+            return String.format("%s: %s, retraso=%s, en uso=%d, lecturas=%d, fallos=%d",
+                    url, disponible ? "disponible" : "excluida", lagSec < 0 ? "?" : lagSec + " s",
+                    activas, lecturas, fallos);
+        }
+    }
+
+}
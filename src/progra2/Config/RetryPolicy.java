@@ -0,0 +1,333 @@
+package progra2.Config;
+
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Política de reintento de transacciones ante conflictos de concurrencia.
+ *
+ * Con escrituras concurrentes, MySQL puede abortar una transacción por deadlock
+ * (error 1213, SQLState 40001) o por superar la espera de un lock (error 1205).
+ * Son errores transitorios: repetir la transacción completa, desde el inicio y
+ * en una transacción nueva, suele funcionar. Esta política re-ejecuta el bloque
+ * transaccional con un máximo de intentos y una espera exponencial con jitter
+ * entre ellos (un valor aleatorio entre 0 y base * 2^intento, acotado), para que
+ * las transacciones que chocaron no vuelvan a coincidir.
+ *
+ * El bloque debe ser repetible: abrir y cerrar su propia transacción y no dejar
+ * efectos fuera de la base de datos si falla. Cualquier otro error se propaga
+ * sin reintentar. Si el bloque se ejecuta dentro de otra transacción (participa
+ * de la transacción ambiente), no se reintenta: el deadlock revirtió la
+ * transacción completa y solo puede repetirla quien la inició.
+ *
+ * Lleva contadores por operación (ejecuciones, reintentos, recuperadas y agotadas).
+ *
+ * La configuración por defecto puede sobrescribirse mediante propiedades del sistema:
+ * - Ddb.retry.maxAttempts: intentos totales por operación (1 deshabilita los reintentos)
+ * - Ddb.retry.baseDelayMs: espera base antes del primer reintento
+ * - Ddb.retry.maxDelayMs: espera máxima entre intentos
+ */
+public final class RetryPolicy {
+
+    /** Intentos totales por defecto. Configurable via -Ddb.retry.maxAttempts */
+    private static final int DEFAULT_MAX_ATTEMPTS = Integer.getInteger("db.retry.maxAttempts", 4);
+
+    /** Espera base por defecto (ms). Configurable via -Ddb.retry.baseDelayMs */
+    private static final long DEFAULT_BASE_DELAY_MS = Long.getLong("db.retry.baseDelayMs", 20L);
+
+    /** Espera máxima por defecto (ms). Configurable via -Ddb.retry.maxDelayMs */
+    private static final long DEFAULT_MAX_DELAY_MS = Long.getLong("db.retry.maxDelayMs", 1000L);
+
+    /** Código de error de MySQL para deadlock. */
+    private static final int ER_LOCK_DEADLOCK = 1213;
+
+    /** Código de error de MySQL para espera de lock agotada. */
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+
+    /** SQLState de fallo de serialización (deadlock). */
+    private static final String SQLSTATE_SERIALIZATION_FAILURE = "40001";
+
+    /** Política compartida con la configuración por defecto. */
+    private static final RetryPolicy DEFAULT = new RetryPolicy(
+            DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MS, DEFAULT_MAX_DELAY_MS);
+
+    /**
+     * Bloque transaccional que produce un resultado.
+     *
+     * @param <T> tipo del resultado
+     */
+    @FunctionalInterface
+    public interface Action<T> {
+
+        /**
+         * Ejecuta el bloque completo (iniciar, operar y confirmar la transacción).
+         *
+         * @return resultado del bloque
+         * @throws Exception si el bloque falla
+         */
+        T run() throws Exception;
+    }
+
+    /**
+     * Bloque transaccional sin resultado.
+     */
+    @FunctionalInterface
+    public interface Block {
+
+        /**
+         * Ejecuta el bloque completo (iniciar, operar y confirmar la transacción).
+         *
+         * @throws Exception si el bloque falla
+         */
+        void run() throws Exception;
+    }
+
+    /** Intentos totales por operación. */
+    private final int maxAttempts;
+    /** Espera base antes del primer reintento (ms). */
+    private final long baseDelayMs;
+    /** Espera máxima entre intentos (ms). */
+    private final long maxDelayMs;
+    /** Contadores por nombre de operación. */
+    private final Map<String, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Crea una política con la configuración indicada.
+     *
+     * @param maxAttempts intentos totales por operación (al menos 1)
+     * @param baseDelayMs espera base antes del primer reintento (no negativa)
+     * @param maxDelayMs espera máxima entre intentos (no menor que la base)
+     * @throws IllegalArgumentException si algún parámetro es inválido
+     */
+    public RetryPolicy(int maxAttempts, long baseDelayMs, long maxDelayMs) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts debe ser al menos 1");
+        }
+        if (baseDelayMs < 0 || maxDelayMs < baseDelayMs) {
+            throw new IllegalArgumentException("Se requiere 0 <= baseDelayMs <= maxDelayMs");
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /**
+     * Obtiene la política compartida con la configuración por defecto.
+     *
+     * @return política por defecto
+     */
+    public static RetryPolicy getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Ejecuta un bloque transaccional, repitiéndolo si falla por deadlock o espera de lock agotada.
+     *
+     * @param <T> tipo del resultado
+     * @param operation nombre de la operación (para los contadores)
+     * @param action bloque a ejecutar; debe ser repetible
+     * @return resultado del primer intento exitoso
+     * @throws Exception el error del bloque si no es reintentable, o el del último intento
+     */
+    public <T> T execute(String operation, Action<T> action) throws Exception {
+        Counters c = counters.computeIfAbsent(operation, k -> new Counters());
+        c.executions.increment();
+        if (TransactionManager.isAmbientTransactionActive()) {
+            return action.run();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = action.run();
+                if (attempt > 1) {
+                    c.recovered.increment();
+                }
+                return result;
+            } catch (Exception e) {
+                if (!isRetryable(e)) {
+                    throw e;
+                }
+                if (attempt >= maxAttempts) {
+                    c.exhausted.increment();
+                    throw e;
+                }
+                c.retries.increment();
+                long delay = backoff(attempt);
+                System.err.println("Conflicto de concurrencia en " + operation + " (intento " + attempt + " de "
+                        + maxAttempts + "), reintentando en " + delay + " ms");
+                sleep(delay, e);
+            }
+        }
+    }
+
+    /**
+     * Ejecuta un bloque transaccional sin resultado, repitiéndolo si falla por
+     * deadlock o espera de lock agotada.
+     *
+     * @param operation nombre de la operación (para los contadores)
+     * @param block bloque a ejecutar; debe ser repetible
+     * @throws Exception el error del bloque si no es reintentable, o el del último intento
+     */
+    public void run(String operation, Block block) throws Exception {
+        execute(operation, () -> {
+            block.run();
+            return null;
+        });
+    }
+
+    /**
+     * Indica si un error (o alguna de sus causas) es un conflicto de concurrencia
+     * que se resuelve repitiendo la transacción.
+     *
+     * @param e error a analizar
+     * @return true para deadlock (1213 / 40001) y espera de lock agotada (1205)
+     */
+    public static boolean isRetryable(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLTransactionRollbackException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                SQLException sql = (SQLException) t;
+                if (sql.getErrorCode() == ER_LOCK_DEADLOCK || sql.getErrorCode() == ER_LOCK_WAIT_TIMEOUT
+                        || SQLSTATE_SERIALIZATION_FAILURE.equals(sql.getSQLState())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Obtiene los contadores de una operación.
+     *
+     * @param operation nombre de la operación
+     * @return contadores actuales (en cero si nunca se ejecutó)
+     */
+    public Stats getStats(String operation) {
+        Counters c = counters.get(operation);
+        return c != null ? c.snapshot(operation) : new Counters().snapshot(operation);
+    }
+
+    /**
+     * Obtiene los contadores de todas las operaciones ejecutadas.
+     *
+     * @return contadores por nombre de operación, en orden alfabético
+     */
+    public Map<String, Stats> getAllStats() {
+        Map<String, Stats> stats = new TreeMap<>();
+        counters.forEach((operation, c) -> stats.put(operation, c.snapshot(operation)));
+        return stats;
+    }
+
+
+    // ===================== Métodos auxiliares privados =====================
+
+    /**
+     * Calcula la espera antes de un reintento: exponencial con jitter completo.
+     *
+     * @param attempt intento que acaba de fallar (base 1)
+     * @return espera en milisegundos, entre 0 y min(maxDelayMs, baseDelayMs * 2^(attempt-1))
+     */
+    private long backoff(int attempt) {
+        long ceiling = baseDelayMs << Math.min(attempt - 1, 20);
+        ceiling = Math.min(maxDelayMs, Math.max(ceiling, baseDelayMs));
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    /**
+     * Espera antes de reintentar. Si el hilo se interrumpe, deja de reintentar.
+     *
+     * @param millis espera en milisegundos
+     * @param cause error que motivó el reintento
+     * @throws Exception el error original si la espera se interrumpe
+     */
+    private static void sleep(long millis, Exception cause) throws Exception {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /** Contadores acumulados de una operación. */
+    private static final class Counters {
+
+        /** Ejecuciones de la operación (sin contar reintentos). */
+        final LongAdder executions = new LongAdder();
+        /** Reintentos realizados. */
+        final LongAdder retries = new LongAdder();
+        /** Ejecuciones que terminaron bien luego de al menos un reintento. */
+        final LongAdder recovered = new LongAdder();
+        /** Ejecuciones que fallaron por conflicto en todos sus intentos. */
+        final LongAdder exhausted = new LongAdder();
+
+        Stats snapshot(String operation) {
+            return new Stats(operation, executions.sum(), retries.sum(), recovered.sum(), exhausted.sum());
+        }
+    }
+
+    /**
+     * Foto inmutable de los contadores de una operación.
+     */
+    public static final class Stats {
+
+        private final String operation;
+        private final long executions;
+        private final long retries;
+        private final long recovered;
+        private final long exhausted;
+
+        private Stats(String operation, long executions, long retries, long recovered, long exhausted) {
+            this.operation = operation;
+            this.executions = executions;
+            this.retries = retries;
+            this.recovered = recovered;
+            this.exhausted = exhausted;
+        }
+
+        /** @return ejecuciones de la operación (sin contar reintentos) */
+        public long getExecutions() {
+            return executions;
+        }
+
+        /** @return reintentos realizados */
+        public long getRetries() {
+            return retries;
+        }
+
+        /** @return ejecuciones que terminaron bien luego de al menos un reintento */
+        public long getRecovered() {
+            return recovered;
+        }
+
+        /** @return ejecuciones que fallaron por conflicto en todos sus intentos */
+        public long getExhausted() {
+            return exhausted;
+        }
+
+        /**
+         * Representación en texto de los contadores.
+         *
+         * @return String con los contadores de la operación
+         */
+        @Override
+        public String toString() {
+            return String.format("%s: ejecuciones=%d, reintentos=%d, recuperadas=%d, agotadas=%d",
+                    operation, executions, retries, recovered, exhausted);
+        }
+    }
+
+}
@@ -0,0 +1,243 @@
+package progra2.Config;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché LRU de PreparedStatements asociada a una conexión física del pool.
+ * La clave es el texto SQL (más el modo de claves generadas), de modo que
+ * los DAOs reutilizan el mismo statement preparado en el servidor en lugar
+ * de volver a prepararlo en cada invocación.
+ *
+ * Los statements entregados son proxies: close() limpia los parámetros y
+ * devuelve el statement a la caché sin cerrarlo físicamente.
+ * No es thread-safe: una conexión física es usada por un solo hilo a la vez.
+ */
+final class StatementCache {
+
+    /** Capacidad máxima de statements cacheados para esta conexión. */
+    private final int maxSize;
+    /** Contadores compartidos por todas las cachés del pool. */
+    private final Counters counters;
+    /** Statements cacheados en orden de acceso (LRU). */
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    /**
+     * Crea una caché vacía.
+     *
+     * @param maxSize cantidad máxima de statements cacheados
+     * @param counters contadores compartidos de aciertos, fallos y desalojos
+     */
+    StatementCache(int maxSize, Counters counters) {
+        this.maxSize = maxSize;
+        this.counters = counters;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Obtiene un PreparedStatement para el SQL indicado, reutilizándolo si está cacheado.
+     *
+     * @param physical conexión física sobre la que se prepara el statement
+     * @param logical conexión lógica que verá el llamador en getConnection()
+     * @param sql texto SQL
+     * @param autoGeneratedKeys modo de claves generadas (Statement.RETURN_GENERATED_KEYS o NO_GENERATED_KEYS)
+     * @return statement lógico que vuelve a la caché al cerrarse
+     * @throws SQLException si hay error al preparar el statement
+     */
+    PreparedStatement prepare(Connection physical, Connection logical, String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys == Statement.RETURN_GENERATED_KEYS ? "K|" + sql : sql;
+
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            counters.hits.increment();
+            cached.inUse = true;
+            return cached.lend(logical);
+        }
+
+        counters.misses.increment();
+        PreparedStatement stmt = physical.prepareStatement(sql, autoGeneratedKeys);
+        if (cached != null) {
+            // El mismo SQL ya está en uso (por ejemplo, un ResultSet todavía abierto):
+            // se entrega un statement no cacheado que se cierra normalmente.
+            return stmt;
+        }
+
+        CachedStatement created = new CachedStatement(key, stmt);
+        created.inUse = true;
+        statements.put(key, created);
+        evictIfNeeded();
+        return created.lend(logical);
+    }
+
+    /** Cierra todos los statements cacheados (al cerrar la conexión física). */
+    void clear() {
+        for (CachedStatement cached : statements.values()) {
+            cached.closePhysical();
+        }
+        statements.clear();
+    }
+
+    /**
+     * Desaloja los statements menos usados recientemente hasta respetar la capacidad.
+     * Los statements en uso se cierran físicamente al ser devueltos.
+     */
+    private void evictIfNeeded() {
+        Iterator<CachedStatement> it = statements.values().iterator();
+        while (statements.size() > maxSize && it.hasNext()) {
+            CachedStatement eldest = it.next();
+            it.remove();
+            eldest.evicted = true;
+            counters.evictions.increment();
+            if (!eldest.inUse) {
+                eldest.closePhysical();
+            }
+        }
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /**
+     * Contadores de uso compartidos por todas las cachés de un pool.
+     */
+    static final class Counters {
+
+        /** Statements obtenidos de la caché. */
+        final LongAdder hits = new LongAdder();
+        /** Statements que debieron prepararse en el servidor. */
+        final LongAdder misses = new LongAdder();
+        /** Statements desalojados por capacidad. */
+        final LongAdder evictions = new LongAdder();
+    }
+
+    /**
+     * PreparedStatement físico cacheado con su estado de uso.
+     */
+    private final class CachedStatement {
+
+        /** Clave de la caché. */
+        private final String key;
+        /** Statement físico del driver. */
+        private final PreparedStatement physical;
+        /** Indica si está prestado al llamador. */
+        private boolean inUse;
+        /** Indica si fue desalojado mientras estaba en uso. */
+        private boolean evicted;
+
+        private CachedStatement(String key, PreparedStatement physical) {
+            this.key = key;
+            this.physical = physical;
+        }
+
+        /**
+         * Crea el proxy que se entrega al llamador.
+         *
+         * @param logical conexión lógica del llamador
+         * @return statement lógico
+         */
+        private PreparedStatement lend(Connection logical) {
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    StatementCache.class.getClassLoader(),
+                    new Class<?>[] { PreparedStatement.class },
+                    new CachedStatementHandler(this, logical));
+        }
+
+        /**
+         * Devuelve el statement a la caché luego de limpiar sus parámetros.
+         * Si no puede limpiarse o fue desalojado, se cierra físicamente.
+         */
+        private void giveBack() {
+            inUse = false;
+            try {
+                if (!evicted && !physical.isClosed()) {
+                    physical.clearParameters();
+                    physical.clearBatch();
+                    return;
+                }
+            } catch (SQLException e) {
+                System.err.println("Error al devolver statement a la cache: " + e.getMessage());
+            }
+            if (!evicted) {
+                statements.remove(key);
+            }
+            closePhysical();
+        }
+
+        /** Cierra el statement físico ignorando errores. */
+        private void closePhysical() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.err.println("Error al cerrar statement cacheado: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Manejador del proxy de statement cacheado.
+     * Intercepta close() para devolverlo a la caché.
+     */
+    private static final class CachedStatementHandler implements InvocationHandler {
+
+        /** Statement cacheado envuelto. */
+        private final CachedStatement cached;
+        /** Conexión lógica devuelta por getConnection(). */
+        private final Connection logical;
+        /** Indica si el llamador ya cerró el statement. */
+        private boolean closed;
+
+        private CachedStatementHandler(CachedStatement cached, Connection logical) {
+            this.cached = cached;
+            this.logical = logical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        cached.giveBack();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || cached.physical.isClosed();
+                }
+                case "getConnection" -> {
+                    return logical;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "CachedStatement[" + cached.physical + "]";
+                }
+                default -> {
+                    if (closed) {
+                        throw new SQLException("El statement ya fue cerrado");
+                    }
+                    try {
+                        return method.invoke(cached.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+
+}
@@ -1,21 +1,101 @@
 package progra2.Config;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * Administrador de transacciones que encapsula el manejo de commit/rollback.
  * Implementa AutoCloseable para usar con try-with-resources.
+ *
+ * Dentro de una transacción pueden abrirse ámbitos anidados con savepoint()
+ * para revertir solo una parte del trabajo (por ejemplo, un registro inválido
+ * de una carga masiva) sin perder el resto de la transacción.
+ *
+ * Contexto de transacción ambiente: mientras una transacción está activa, queda
+ * asociada al hilo que la inició. DatabaseConnection.getConnection() devuelve en
+ * ese hilo una vista de la misma conexión (que ignora close()), de modo que los
+ * DAOs y servicios que piden "su propia" conexión participan de la transacción
+ * en lugar de tomar otra del pool: una operación lógica usa una sola conexión.
+ *
+ * Un TransactionManager creado sobre esa vista es un participante: no confirma
+ * ni cierra la conexión (lo hace la transacción principal). Si un participante
+ * se revierte, la transacción principal queda marcada para rollback y su
+ * commit() falla, como ocurriría si el trabajo anidado fuera parte de ella.
+ *
+ * Las consultas pueden correr en transacciones de solo lectura con
+ * startReadOnlyTransaction(), eligiendo el nivel de aislamiento: READ COMMITTED
+ * (cada sentencia ve lo último confirmado) o un snapshot consistente (todas las
+ * lecturas ven el mismo instante). Se inician con START TRANSACTION READ ONLY sin
+ * modificar el estado de sesión (autocommit, aislamiento), e InnoDB no les
+ * asigna ID de transacción ni registra undo: evitan el costo del camino de
+ * escritura. Como el pool no puede detectarlas por autocommit, si el ROLLBACK
+ * de una falla la conexión se aborta para que el pool la descarte.
  */
 public class TransactionManager implements AutoCloseable {
     
+    /**
+     * Transacción principal activa en el hilo actual (contexto ambiente).
+     * Es un ThreadLocal y no un ScopedValue porque ScopedValue sigue siendo
+     * una API en preview en JDK 24 (javac.source/target del proyecto) y
+     * requeriría compilar y ejecutar con --enable-preview.
+     */
+    private static final ThreadLocal<TransactionManager> ACTIVE = new ThreadLocal<>();
+    
+    /**
+     * Niveles de aislamiento seleccionables al iniciar una transacción.
+     */
+    public enum Isolation {
+        /** Cada sentencia ve los datos confirmados al momento de ejecutarse. */
+        READ_COMMITTED(Connection.TRANSACTION_READ_COMMITTED, "READ COMMITTED", false),
+        /** Todas las lecturas ven el snapshot tomado en la primera lectura (default de InnoDB). */
+        REPEATABLE_READ(Connection.TRANSACTION_REPEATABLE_READ, "REPEATABLE READ", false),
+        /** REPEATABLE READ con el snapshot tomado al iniciar la transacción. */
+        CONSISTENT_SNAPSHOT(Connection.TRANSACTION_REPEATABLE_READ, "REPEATABLE READ", true);
+        
+        private final int jdbcLevel;
+        private final String sqlLevel;
+        private final boolean snapshotAlInicio;
+        
+        Isolation(int jdbcLevel, String sqlLevel, boolean snapshotAlInicio) {
+            this.jdbcLevel = jdbcLevel;
+            this.sqlLevel = sqlLevel;
+            this.snapshotAlInicio = snapshotAlInicio;
+        }
+        
+        /** @return constante de nivel de aislamiento de java.sql.Connection */
+        public int getJdbcLevel() {
+            return jdbcLevel;
+        }
+    }
+    
     /** Conexión de base de datos administrada por este manager. */
     private Connection conn;
     /** Indica si hay una transacción activa en este momento. */
     private boolean transactionActive;
+    /** Ámbitos de savepoint abiertos, el más interno primero. */
+    private final Deque<SavepointScope> savepoints = new ArrayDeque<>();
+    /** Transacción principal de la que participa este manager, o null si es principal. */
+    private final TransactionManager owner;
+    /** Transacción ambiente que había al iniciar esta (se restablece al terminar). */
+    private TransactionManager previous;
+    /** Vista de la conexión para los participantes (close() no la cierra). */
+    private Connection participantView;
+    /** Indica si algún participante se revirtió y la transacción no puede confirmarse. */
+    private boolean rollbackOnly;
+    /** Indica si la transacción es de solo lectura (iniciada con START TRANSACTION READ ONLY). */
+    private boolean readOnly;
     
     /**
      * Constructor que recibe una conexión ya establecida.
+     * Si la conexión es la vista de la transacción ambiente del hilo
+     * (obtenida con DatabaseConnection.getConnection()), el manager participa
+     * de esa transacción en lugar de iniciar una propia.
      * 
      * @param conn conexión a la base de datos
      * @throws SQLException si la conexión es inválida
@@ -24,10 +104,42 @@ public class TransactionManager implements AutoCloseable {
         if (conn == null) {
             throw new IllegalArgumentException("La conexion no puede ser null");
         }
+        TransactionManager ambient = ACTIVE.get();
+        this.owner = ambient != null && conn == ambient.participantView ? ambient : null;
         this.conn = conn;
         this.transactionActive = false;
     }
     
+    /**
+     * Obtiene la conexión de la transacción ambiente del hilo actual, como una
+     * vista que ignora close(). La usa DatabaseConnection.getConnection().
+     * 
+     * @return vista de la conexión, o null si no hay transacción activa en el hilo
+     */
+    static Connection ambientConnection() {
+        TransactionManager ambient = ACTIVE.get();
+        return ambient != null ? ambient.participantView() : null;
+    }
+    
+    /**
+     * Indica si el hilo actual tiene una transacción activa: las operaciones de
+     * base de datos que ejecute participan de ella.
+     * 
+     * @return true si hay transacción ambiente
+     */
+    public static boolean isAmbientTransactionActive() {
+        return ACTIVE.get() != null;
+    }
+    
+    /**
+     * Indica si este manager participa de una transacción iniciada por otro.
+     * 
+     * @return true si es participante (no confirma ni cierra la conexión)
+     */
+    public boolean isParticipant() {
+        return owner != null;
+    }
+    
     /**
      * Obtiene la conexión administrada.
      * 
@@ -43,14 +155,66 @@ public class TransactionManager implements AutoCloseable {
      * @throws SQLException si hay error al configurar la conexión
      */
     public void startTransaction() throws SQLException {
-        if (conn == null) {
-            throw new SQLException("No se puede iniciar la transaccion: conexion no disponible");
+        startTransaction(null);
+    }
+    
+    /**
+     * Inicia una transacción de escritura con el nivel de aislamiento indicado.
+     * El pool restablece el aislamiento por defecto al devolver la conexión.
+     * Si el manager participa de otra transacción, usa el aislamiento de esa.
+     * 
+     * @param isolation nivel de aislamiento, o null para el de la conexión
+     * @throws SQLException si hay error al configurar la conexión, o si participa
+     *         de una transacción de solo lectura
+     */
+    public void startTransaction(Isolation isolation) throws SQLException {
+        if (participar()) {
+            if (owner.readOnly) {
+                throw new SQLException("No se puede escribir dentro de una transaccion de solo lectura");
+            }
+            return;
         }
-        if (conn.isClosed()) {
-            throw new SQLException("No se puede iniciar la transaccion: conexion cerrada");
+        if (isolation != null) {
+            conn.setTransactionIsolation(isolation.jdbcLevel);
         }
         conn.setAutoCommit(false);
-        transactionActive = true;
+        if (isolation != null && isolation.snapshotAlInicio) {
+            ejecutar("START TRANSACTION WITH CONSISTENT SNAPSHOT");
+        }
+        activar(false);
+    }
+    
+    /**
+     * Inicia una transacción de solo lectura con el nivel de aislamiento indicado.
+     * No modifica autocommit ni el aislamiento de la sesión: el nivel aplica solo
+     * a esta transacción. Cualquier escritura dentro de ella falla en el servidor.
+     * Si el manager participa de otra transacción, usa el aislamiento de esa.
+     * 
+     * @param isolation nivel de aislamiento
+     * @throws SQLException si hay error al iniciar la transacción
+     */
+    public void startReadOnlyTransaction(Isolation isolation) throws SQLException {
+        if (isolation == null) {
+            throw new IllegalArgumentException("El nivel de aislamiento no puede ser null");
+        }
+        if (participar()) {
+            return;
+        }
+        ejecutar("SET TRANSACTION ISOLATION LEVEL " + isolation.sqlLevel);
+        ejecutar(isolation.snapshotAlInicio
+                ? "START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY"
+                : "START TRANSACTION READ ONLY");
+        activar(true);
+    }
+    
+    /**
+     * Indica si la transacción (o la transacción principal, para un participante)
+     * es de solo lectura.
+     * 
+     * @return true si se inició con startReadOnlyTransaction()
+     */
+    public boolean isReadOnly() {
+        return owner != null ? owner.readOnly : readOnly;
     }
     
     /**
@@ -65,8 +229,25 @@ public class TransactionManager implements AutoCloseable {
         if (!transactionActive) {
             throw new SQLException("No hay una transaccion activa para hacer commit");
         }
-        conn.commit();
+        if (owner != null) {
+            // La confirmación la hace la transacción principal
+            transactionActive = false;
+            descartarSavepoints();
+            return;
+        }
+        if (rollbackOnly) {
+            rollback();
+            throw new SQLException("Se revirtio la transaccion: una operacion anidada fallo (rollback)");
+        }
+        if (readOnly) {
+            ejecutar("COMMIT");
+        } else {
+            conn.commit();
+            ReplicaRouter.registrarEscritura();
+        }
         transactionActive = false;
+        descartarSavepoints();
+        liberarContexto();
     }
     
     /**
@@ -74,31 +255,246 @@ public class TransactionManager implements AutoCloseable {
      * No lanza excepciones para permitir uso seguro en bloques catch.
      */
     public void rollback() {
+        if (owner != null) {
+            // No se puede revertir solo una parte: la transacción principal ya no podrá confirmarse
+            if (transactionActive) {
+                owner.rollbackOnly = true;
+                transactionActive = false;
+            }
+            descartarSavepoints();
+            return;
+        }
         if (conn != null && transactionActive) {
             try {
-                conn.rollback();
+                if (readOnly) {
+                    ejecutar("ROLLBACK");
+                } else {
+                    conn.rollback();
+                }
                 transactionActive = false;
             } catch (SQLException e) {
                 System.err.println("Error durante el rollback: " + e.getMessage());
+                if (readOnly) {
+                    descartarConexion();
+                }
+            }
+        }
+        descartarSavepoints();
+        liberarContexto();
+    }
+    
+    /**
+     * Abre un ámbito anidado dentro de la transacción activa, respaldado por un
+     * savepoint JDBC. Si el ámbito se cierra sin llamar a release(), sus cambios
+     * se revierten y la transacción continúa con lo hecho antes de abrirlo:
+     * <pre>
+     * try (TransactionManager.SavepointScope sp = tm.savepoint()) {
+     *     ...
+     *     sp.release();
+     * }
+     * </pre>
+     * Los ámbitos pueden anidarse y deben cerrarse en orden inverso al de apertura;
+     * cerrar uno cierra también los que se abrieron dentro de él.
+     * 
+     * @return ámbito abierto
+     * @throws SQLException si no hay transacción activa, es de solo lectura o no se
+     *         puede crear el savepoint
+     */
+    public SavepointScope savepoint() throws SQLException {
+        if (!transactionActive) {
+            throw new SQLException("No hay una transaccion activa para crear un savepoint");
+        }
+        if (isReadOnly()) {
+            throw new SQLException("No se pueden crear savepoints en una transaccion de solo lectura");
+        }
+        SavepointScope scope = new SavepointScope(conn.setSavepoint(), savepoints.size() + 1);
+        savepoints.push(scope);
+        return scope;
+    }
+    
+    /**
+     * Obtiene la cantidad de ámbitos de savepoint abiertos.
+     * 
+     * @return profundidad de anidamiento actual (0 si no hay ninguno)
+     */
+    public int getSavepointDepth() {
+        return savepoints.size();
+    }
+    
+    /**
+     * Valida la conexión y, si el manager es participante, se une a la
+     * transacción principal.
+     * 
+     * @return true si el manager participa de otra transacción
+     * @throws SQLException si la conexión no está disponible o la transacción principal terminó
+     */
+    private boolean participar() throws SQLException {
+        if (conn == null) {
+            throw new SQLException("No se puede iniciar la transaccion: conexion no disponible");
+        }
+        if (conn.isClosed()) {
+            throw new SQLException("No se puede iniciar la transaccion: conexion cerrada");
+        }
+        if (owner == null) {
+            return false;
+        }
+        if (!owner.transactionActive) {
+            throw new SQLException("No se puede participar: la transaccion principal ya no esta activa");
+        }
+        transactionActive = true;
+        return true;
+    }
+    
+    /**
+     * Marca la transacción como activa y la asocia al hilo como transacción ambiente.
+     * 
+     * @param soloLectura true si se inició como transacción de solo lectura
+     */
+    private void activar(boolean soloLectura) {
+        readOnly = soloLectura;
+        transactionActive = true;
+        previous = ACTIVE.get();
+        ACTIVE.set(this);
+    }
+    
+    /**
+     * Aborta la conexión física cuando no se pudo revertir una transacción de
+     * solo lectura. Como esas transacciones se inician con START TRANSACTION y
+     * dejan autocommit en true, el pool no puede detectar que quedó abierta:
+     * de volver a prestarse, el siguiente usuario leería de un snapshot viejo.
+     * Una conexión abortada figura como cerrada y el pool la descarta al devolverla.
+     */
+    private void descartarConexion() {
+        try {
+            conn.abort(Runnable::run);
+        } catch (SQLException e) {
+            System.err.println("Error al descartar la conexion: " + e.getMessage());
+        }
+        transactionActive = false;
+    }
+    
+    /**
+     * Ejecuta una sentencia de control de transacción sobre la conexión.
+     * 
+     * @param sql sentencia a ejecutar
+     * @throws SQLException si la sentencia falla
+     */
+    private void ejecutar(String sql) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+    
+    /**
+     * Desasocia esta transacción del hilo, restableciendo la que estaba activa
+     * antes de iniciarla (si la había).
+     */
+    private void liberarContexto() {
+        if (ACTIVE.get() == this) {
+            if (previous != null) {
+                ACTIVE.set(previous);
+            } else {
+                ACTIVE.remove();
             }
         }
+        previous = null;
+        rollbackOnly = false;
+        readOnly = false;
+    }
+    
+    /**
+     * Obtiene (creándola la primera vez) la vista de la conexión para los
+     * participantes: delega todo en la conexión real salvo close(), que no hace nada.
+     * 
+     * @return vista de la conexión administrada
+     */
+    private Connection participantView() {
+        if (participantView == null) {
+            Connection target = conn;
+            participantView = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                return null;
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "toString":
+                                return "Participante(" + target + ")";
+                            default:
+                                try {
+                                    return method.invoke(target, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                        }
+                    });
+        }
+        return participantView;
+    }
+    
+    /**
+     * Marca como cerrados los ámbitos abiertos: al terminar la transacción,
+     * sus savepoints dejan de existir en el servidor.
+     */
+    private void descartarSavepoints() {
+        while (!savepoints.isEmpty()) {
+            savepoints.pop().finished = true;
+        }
+    }
+    
+    /**
+     * Quita de la pila un ámbito y los abiertos dentro de él.
+     * 
+     * @param scope ámbito a cerrar
+     * @throws SQLException si el ámbito ya no está abierto
+     */
+    private void cerrarHasta(SavepointScope scope) throws SQLException {
+        if (!savepoints.contains(scope)) {
+            throw new SQLException("El savepoint ya no esta activo");
+        }
+        SavepointScope actual;
+        do {
+            actual = savepoints.pop();
+            actual.finished = true;
+        } while (actual != scope);
     }
     
     /**
      * Cierra la transacción y la conexión, haciendo rollback si es necesario.
+     * Si la conexión proviene del pool, cerrarla la devuelve al pool con
+     * autocommit restablecido en lugar de cerrar la conexión física.
      * Se invoca automáticamente al usar try-with-resources.
      */
     @Override
     public void close() {
+        if (owner != null) {
+            // La conexión pertenece a la transacción principal
+            if (transactionActive) {
+                rollback();
+            }
+            return;
+        }
         if (conn != null) {
             try {
                 if (transactionActive) {
                     rollback();
                 }
-                conn.setAutoCommit(true);
+                if (!conn.isClosed() && !conn.getAutoCommit()) {
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                System.err.println("Error al restablecer la conexion: " + e.getMessage());
+            }
+            try {
                 conn.close();
             } catch (SQLException e) {
                 System.err.println("Error al cerrar la conexion: " + e.getMessage());
+            } finally {
+                liberarContexto();
             }
         }
     }
@@ -112,4 +508,73 @@ public class TransactionManager implements AutoCloseable {
         return transactionActive;
     }
     
+    
+    // ========================== Clases auxiliares ==========================
+    
+    /**
+     * Ámbito anidado de una transacción, respaldado por un savepoint JDBC.
+     * Se obtiene con {@link TransactionManager#savepoint()}.
+     */
+    public final class SavepointScope implements AutoCloseable {
+        
+        /** Savepoint JDBC del inicio del ámbito. */
+        private final Savepoint savepoint;
+        /** Profundidad de anidamiento (1 para el ámbito más externo). */
+        private final int depth;
+        /** Indica si el ámbito ya fue liberado o revertido. */
+        private boolean finished;
+        
+        private SavepointScope(Savepoint savepoint, int depth) {
+            this.savepoint = savepoint;
+            this.depth = depth;
+        }
+        
+        /**
+         * Conserva los cambios del ámbito como parte de la transacción y libera
+         * el savepoint (y los de los ámbitos internos aún abiertos).
+         * Los cambios se confirman recién con el commit de la transacción.
+         * 
+         * @throws SQLException si el ámbito ya no está abierto o no se puede liberar
+         */
+        public void release() throws SQLException {
+            cerrarHasta(this);
+            conn.releaseSavepoint(savepoint);
+        }
+        
+        /**
+         * Revierte los cambios hechos desde que se abrió el ámbito y lo cierra.
+         * La transacción sigue activa con el trabajo anterior al ámbito.
+         * 
+         * @throws SQLException si el ámbito ya no está abierto o no se puede revertir
+         */
+        public void rollback() throws SQLException {
+            cerrarHasta(this);
+            conn.rollback(savepoint);
+            conn.releaseSavepoint(savepoint);
+        }
+        
+        /**
+         * Obtiene la profundidad de anidamiento del ámbito.
+         * 
+         * @return 1 para el ámbito más externo
+         */
+        public int getDepth() {
+            return depth;
+        }
+        
+        /**
+         * Cierra el ámbito, revirtiendo sus cambios si no se llamó a release().
+         * No hace nada si el ámbito ya terminó (por ejemplo, por commit o rollback
+         * de toda la transacción). Se invoca automáticamente con try-with-resources.
+         * 
+         * @throws SQLException si no se pueden revertir los cambios del ámbito
+         */
+        @Override
+        public void close() throws SQLException {
+            if (!finished) {
+                rollback();
+            }
+        }
+    }
+    
 }
@@ -0,0 +1,11 @@
+-- Indices compuestos alineados con los caminos de acceso de los DAOs.
+-- Todas las consultas filtran por eliminado = FALSE, por eso es la primera columna.
+-- Se crean en linea (INPLACE, LOCK=NONE) para no bloquear lecturas ni escrituras.
+
+ALTER TABLE libro ADD INDEX idx_libro_eliminado_anio (eliminado, anio_edicion), ALGORITHM=INPLACE, LOCK=NONE;
+
+ALTER TABLE libro ADD INDEX idx_libro_eliminado_autor (eliminado, autor), ALGORITHM=INPLACE, LOCK=NONE;
+
+ALTER TABLE libro ADD INDEX idx_libro_eliminado_titulo (eliminado, titulo), ALGORITHM=INPLACE, LOCK=NONE;
+
+ALTER TABLE ficha_bibliografica ADD INDEX idx_ficha_eliminado_idioma (eliminado, idioma), ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,9 @@
+-- Indices FULLTEXT usados por las busquedas por titulo, autor y editorial.
+-- InnoDB solo permite agregar un indice FULLTEXT por sentencia en linea,
+-- y requiere LOCK=SHARED (se permiten lecturas durante la creacion).
+
+ALTER TABLE libro ADD FULLTEXT INDEX ft_libro_titulo (titulo), ALGORITHM=INPLACE, LOCK=SHARED;
+
+ALTER TABLE libro ADD FULLTEXT INDEX ft_libro_autor (autor), ALGORITHM=INPLACE, LOCK=SHARED;
+
+ALTER TABLE libro ADD FULLTEXT INDEX ft_libro_editorial (editorial), ALGORITHM=INPLACE, LOCK=SHARED;
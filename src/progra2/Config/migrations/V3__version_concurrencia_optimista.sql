@@ -0,0 +1,8 @@
+-- Columna de version para control de concurrencia optimista.
+-- Cada UPDATE incrementa la version y solo se aplica si coincide con la leida,
+-- de modo que una edicion concurrente no pisa los cambios de otra.
+-- Se agrega de forma instantanea (solo metadatos), sin copiar la tabla.
+
+ALTER TABLE ficha_bibliografica ADD COLUMN version INT NOT NULL DEFAULT 0, ALGORITHM=INSTANT;
+
+ALTER TABLE libro ADD COLUMN version INT NOT NULL DEFAULT 0, ALGORITHM=INSTANT;
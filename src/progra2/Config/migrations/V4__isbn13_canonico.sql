@@ -0,0 +1,47 @@
+-- ISBN canonico numerico para busquedas exactas por indice.
+-- isbn13 guarda el ISBN-13 como BIGINT (un ISBN-10 se convierte con prefijo 978),
+-- de modo que '978-3-16-148410-0', '9783161484100' y su ISBN-10 son la misma clave.
+-- La aplicacion lo calcula con ISBNUtils al insertar/actualizar; aqui se completa
+-- para las filas existentes con la misma regla, incluyendo digito verificador.
+
+ALTER TABLE ficha_bibliografica ADD COLUMN isbn13 BIGINT NULL, ALGORITHM=INSTANT;
+
+-- Backfill: n.d es el ISBN sin guiones ni espacios. Los ISBN invalidos quedan en NULL.
+UPDATE /*+ NO_MERGE(n) */ ficha_bibliografica f
+JOIN (
+    SELECT id, REPLACE(REPLACE(UPPER(TRIM(isbn)), '-', ''), ' ', '') AS d
+    FROM ficha_bibliografica
+    WHERE isbn IS NOT NULL AND isbn13 IS NULL
+) n ON n.id = f.id
+SET f.isbn13 = CASE
+    WHEN n.d REGEXP '^97[89][0-9]{10}$'
+         AND MOD(SUBSTR(n.d, 1, 1) + 3 * SUBSTR(n.d, 2, 1) + SUBSTR(n.d, 3, 1) + 3 * SUBSTR(n.d, 4, 1)
+               + SUBSTR(n.d, 5, 1) + 3 * SUBSTR(n.d, 6, 1) + SUBSTR(n.d, 7, 1) + 3 * SUBSTR(n.d, 8, 1)
+               + SUBSTR(n.d, 9, 1) + 3 * SUBSTR(n.d, 10, 1) + SUBSTR(n.d, 11, 1) + 3 * SUBSTR(n.d, 12, 1)
+               + SUBSTR(n.d, 13, 1), 10) = 0
+        THEN CAST(n.d AS UNSIGNED)
+    WHEN n.d REGEXP '^[0-9]{9}[0-9X]$'
+         AND MOD(10 * SUBSTR(n.d, 1, 1) + 9 * SUBSTR(n.d, 2, 1) + 8 * SUBSTR(n.d, 3, 1) + 7 * SUBSTR(n.d, 4, 1)
+               + 6 * SUBSTR(n.d, 5, 1) + 5 * SUBSTR(n.d, 6, 1) + 4 * SUBSTR(n.d, 7, 1) + 3 * SUBSTR(n.d, 8, 1)
+               + 2 * SUBSTR(n.d, 9, 1) + IF(SUBSTR(n.d, 10, 1) = 'X', 10, SUBSTR(n.d, 10, 1)), 11) = 0
+        THEN 9780000000000 + CAST(SUBSTR(n.d, 1, 9) AS UNSIGNED) * 10
+             + MOD(10 - MOD(38 + 3 * SUBSTR(n.d, 1, 1) + SUBSTR(n.d, 2, 1) + 3 * SUBSTR(n.d, 3, 1)
+                             + SUBSTR(n.d, 4, 1) + 3 * SUBSTR(n.d, 5, 1) + SUBSTR(n.d, 6, 1)
+                             + 3 * SUBSTR(n.d, 7, 1) + SUBSTR(n.d, 8, 1) + 3 * SUBSTR(n.d, 9, 1), 10), 10)
+    ELSE NULL
+END;
+
+-- Un ISBN-10 y su ISBN-13 cargados en fichas distintas tienen el mismo isbn13:
+-- se conserva en la ficha mas antigua y las demas quedan en NULL para revision manual.
+UPDATE /*+ NO_MERGE(dup) */ ficha_bibliografica f
+JOIN (
+    SELECT isbn13, MIN(id) AS id_conservado
+    FROM ficha_bibliografica
+    WHERE isbn13 IS NOT NULL
+    GROUP BY isbn13
+    HAVING COUNT(*) > 1
+) dup ON dup.isbn13 = f.isbn13
+SET f.isbn13 = NULL
+WHERE f.id <> dup.id_conservado;
+
+ALTER TABLE ficha_bibliografica ADD UNIQUE INDEX uk_ficha_isbn13 (isbn13), ALGORITHM=INPLACE, LOCK=NONE;
@@ -0,0 +1,47 @@
+-- Separacion de filas vivas y archivadas.
+-- eliminado_en registra cuando se elimino logicamente cada fila; el archivado
+-- (ArchivoService) mueve a las tablas *_archivo las filas eliminadas hace mas
+-- que el periodo de retencion, para que indices y buffer pool contengan solo
+-- filas vivas. Las tablas de archivo no tienen FK, UNIQUE ni FULLTEXT: solo
+-- se consultan por ID al restaurar.
+
+ALTER TABLE ficha_bibliografica ADD COLUMN eliminado_en TIMESTAMP NULL, ALGORITHM=INSTANT;
+
+ALTER TABLE libro ADD COLUMN eliminado_en TIMESTAMP NULL, ALGORITHM=INSTANT;
+
+-- Las filas ya eliminadas empiezan a contar su retencion desde ahora.
+UPDATE ficha_bibliografica SET eliminado_en = CURRENT_TIMESTAMP WHERE eliminado = TRUE AND eliminado_en IS NULL;
+
+UPDATE libro SET eliminado_en = CURRENT_TIMESTAMP WHERE eliminado = TRUE AND eliminado_en IS NULL;
+
+-- Camino de acceso del archivado: filas eliminadas ordenadas por fecha de eliminacion.
+ALTER TABLE ficha_bibliografica ADD INDEX idx_ficha_eliminado_en (eliminado, eliminado_en), ALGORITHM=INPLACE, LOCK=NONE;
+
+ALTER TABLE libro ADD INDEX idx_libro_eliminado_en (eliminado, eliminado_en), ALGORITHM=INPLACE, LOCK=NONE;
+
+CREATE TABLE ficha_bibliografica_archivo (
+    id BIGINT PRIMARY KEY,
+    eliminado BOOLEAN NOT NULL,
+    eliminado_en TIMESTAMP NULL,
+    version INT NOT NULL,
+    isbn VARCHAR(17),
+    isbn13 BIGINT,
+    clasificacion_dewey VARCHAR(20),
+    estanteria VARCHAR(20),
+    idioma VARCHAR(30),
+    archivado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE libro_archivo (
+    id BIGINT PRIMARY KEY,
+    eliminado BOOLEAN NOT NULL,
+    eliminado_en TIMESTAMP NULL,
+    version INT NOT NULL,
+    titulo VARCHAR(150) NOT NULL,
+    autor VARCHAR(120) NOT NULL,
+    editorial VARCHAR(100),
+    anio_edicion INT,
+    ficha_bibliografica_id BIGINT,
+    archivado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_libro_archivo_ficha (ficha_bibliografica_id)
+);
@@ -0,0 +1,15 @@
+-- Avance de las importaciones CSV (ImportacionService).
+-- Cada lote importado actualiza su fila en la misma transaccion que inserta
+-- los libros, de modo que registros_procesados indica exactamente hasta donde
+-- se confirmo y una importacion interrumpida puede reanudarse desde alli.
+-- clave identifica el archivo: SHA-256 de su nombre, tamanio y primeros 64 KB.
+
+CREATE TABLE importacion_checkpoint (
+    clave CHAR(64) PRIMARY KEY,
+    archivo VARCHAR(255) NOT NULL,
+    registros_procesados BIGINT NOT NULL,
+    importados BIGINT NOT NULL,
+    rechazados BIGINT NOT NULL,
+    completada BOOLEAN NOT NULL DEFAULT FALSE,
+    actualizado_en TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP
+);
@@ -0,0 +1,335 @@
+package progra2.DAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+/**
+ * DAO del archivo de filas eliminadas.
+ * Mueve libros y fichas eliminados lógicamente desde las tablas vivas
+ * (libro, ficha_bibliografica) a libro_archivo y ficha_bibliografica_archivo,
+ * y los restaura en sentido inverso.
+ *
+ * Todos los métodos reciben una conexión externa: las transacciones (una por
+ * lote) las maneja ArchivoService.
+ *
+ * Una ficha solo se archiva si ningún libro de la tabla viva la referencia:
+ * la FK de libro tiene ON DELETE CASCADE, y borrar una ficha referenciada
+ * borraría también su libro. Por eso el archivado procesa primero los libros.
+ */
+public class ArchivoDAO {
+
+    /** Columnas de libro que se copian entre la tabla viva y la de archivo. */
+    private static final String COLUMNAS_LIBRO =
+            "id, eliminado, eliminado_en, version, titulo, autor, editorial, anio_edicion, ficha_bibliografica_id";
+
+    /** Columnas de ficha que se copian entre la tabla viva y la de archivo. */
+    private static final String COLUMNAS_FICHA =
+            "id, eliminado, eliminado_en, version, isbn, isbn13, clasificacion_dewey, estanteria, idioma";
+
+    /** Condición de una ficha sin libros que la referencien en la tabla viva. */
+    private static final String FICHA_SIN_LIBRO =
+            "NOT EXISTS (SELECT 1 FROM libro l WHERE l.ficha_bibliografica_id = ficha_bibliografica.id)";
+
+    /** Query SQL para contar los libros eliminados antes del límite. */
+    private static final String COUNT_LIBROS_SQL =
+            "SELECT COUNT(*) FROM libro WHERE eliminado = TRUE AND eliminado_en < ?";
+
+    /**
+     * Query SQL para contar las fichas que se archivarían, considerando que los
+     * libros eliminados antes del límite se archivan primero y dejan de referenciarlas.
+     */
+    private static final String COUNT_FICHAS_SQL =
+            "SELECT COUNT(*) FROM ficha_bibliografica WHERE eliminado = TRUE AND eliminado_en < ? "
+            + "AND NOT EXISTS (SELECT 1 FROM libro l WHERE l.ficha_bibliografica_id = ficha_bibliografica.id "
+            + "AND (l.eliminado = FALSE OR l.eliminado_en IS NULL OR l.eliminado_en >= ?))";
+
+    /** Query SQL para bloquear el próximo lote de libros a archivar (índice idx_libro_eliminado_en). */
+    private static final String SELECT_LOTE_LIBROS_SQL =
+            "SELECT id FROM libro WHERE eliminado = TRUE AND eliminado_en < ? ORDER BY eliminado_en, id LIMIT ? FOR UPDATE";
+
+    /** Query SQL para bloquear el próximo lote de fichas a archivar (índice idx_ficha_eliminado_en). */
+    private static final String SELECT_LOTE_FICHAS_SQL =
+            "SELECT id FROM ficha_bibliografica WHERE eliminado = TRUE AND eliminado_en < ? AND " + FICHA_SIN_LIBRO
+            + " ORDER BY eliminado_en, id LIMIT ? FOR UPDATE";
+
+    /** Queries SQL para copiar libros al archivo, una por forma de la lista IN (ver InClauseBuilder). */
+    private static final String[] ARCHIVAR_LIBROS_SQL = InClauseBuilder.sqlPorForma(
+            "INSERT INTO libro_archivo (" + COLUMNAS_LIBRO + ") SELECT " + COLUMNAS_LIBRO
+            + " FROM libro WHERE eliminado = TRUE AND id ", "");
+
+    /** Queries SQL para borrar de la tabla viva los libros archivados. */
+    private static final String[] BORRAR_LIBROS_SQL = InClauseBuilder.sqlPorForma(
+            "DELETE FROM libro WHERE eliminado = TRUE AND id ", "");
+
+    /** Queries SQL para copiar fichas al archivo. */
+    private static final String[] ARCHIVAR_FICHAS_SQL = InClauseBuilder.sqlPorForma(
+            "INSERT INTO ficha_bibliografica_archivo (" + COLUMNAS_FICHA + ") SELECT " + COLUMNAS_FICHA
+            + " FROM ficha_bibliografica WHERE eliminado = TRUE AND " + FICHA_SIN_LIBRO + " AND id ", "");
+
+    /** Queries SQL para borrar de la tabla viva las fichas archivadas. */
+    private static final String[] BORRAR_FICHAS_SQL = InClauseBuilder.sqlPorForma(
+            "DELETE FROM ficha_bibliografica WHERE eliminado = TRUE AND " + FICHA_SIN_LIBRO + " AND id ", "");
+
+    /** Query SQL para obtener (y bloquear) la ficha de un libro archivado. */
+    private static final String SELECT_FICHA_DE_LIBRO_ARCHIVADO_SQL =
+            "SELECT ficha_bibliografica_id FROM libro_archivo WHERE id = ? FOR UPDATE";
+
+    /** Query SQL para devolver un libro archivado a la tabla viva, sin eliminar. */
+    private static final String RESTAURAR_LIBRO_SQL =
+            "INSERT INTO libro (" + COLUMNAS_LIBRO + ") SELECT id, FALSE, NULL, version + 1, titulo, autor, "
+            + "editorial, anio_edicion, ficha_bibliografica_id FROM libro_archivo WHERE id = ?";
+
+    /** Query SQL para borrar un libro del archivo. */
+    private static final String BORRAR_LIBRO_ARCHIVADO_SQL = "DELETE FROM libro_archivo WHERE id = ?";
+
+    /** Query SQL para devolver una ficha archivada a la tabla viva, sin eliminar. */
+    private static final String RESTAURAR_FICHA_SQL =
+            "INSERT INTO ficha_bibliografica (" + COLUMNAS_FICHA + ") SELECT id, FALSE, NULL, version + 1, isbn, "
+            + "isbn13, clasificacion_dewey, estanteria, idioma FROM ficha_bibliografica_archivo WHERE id = ?";
+
+    /** Query SQL para borrar una ficha del archivo. */
+    private static final String BORRAR_FICHA_ARCHIVADA_SQL = "DELETE FROM ficha_bibliografica_archivo WHERE id = ?";
+
+
+    // ============================ Simulación ============================
+
+    /**
+     * Cuenta los libros que se archivarían con el límite indicado.
+     *
+     * @param limite se consideran los libros eliminados antes de este instante
+     * @param conn conexión de base de datos externa
+     * @return cantidad de libros archivables
+     * @throws SQLException si hay error en la consulta
+     */
+    public int contarLibrosArchivables(Timestamp limite, Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(COUNT_LIBROS_SQL)) {
+            stmt.setTimestamp(1, limite);
+            return contar(stmt);
+        }
+    }
+
+    /**
+     * Cuenta las fichas que se archivarían con el límite indicado, una vez
+     * archivados los libros eliminados que las referencian.
+     *
+     * @param limite se consideran las fichas eliminadas antes de este instante
+     * @param conn conexión de base de datos externa
+     * @return cantidad de fichas archivables
+     * @throws SQLException si hay error en la consulta
+     */
+    public int contarFichasArchivables(Timestamp limite, Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(COUNT_FICHAS_SQL)) {
+            stmt.setTimestamp(1, limite);
+            stmt.setTimestamp(2, limite);
+            return contar(stmt);
+        }
+    }
+
+
+    // ============================= Archivado =============================
+
+    /**
+     * Selecciona y bloquea (FOR UPDATE) el próximo lote de libros a archivar.
+     * Debe ejecutarse dentro de la transacción que luego los archiva.
+     *
+     * @param limite se consideran los libros eliminados antes de este instante
+     * @param tamanioLote cantidad máxima de libros
+     * @param conn conexión de base de datos externa (en transacción)
+     * @return IDs bloqueados, en orden de eliminación
+     * @throws SQLException si hay error en la consulta
+     */
+    public long[] bloquearLoteLibros(Timestamp limite, int tamanioLote, Connection conn) throws SQLException {
+        return bloquearLote(SELECT_LOTE_LIBROS_SQL, limite, tamanioLote, conn);
+    }
+
+    /**
+     * Selecciona y bloquea (FOR UPDATE) el próximo lote de fichas a archivar.
+     * Solo incluye fichas que ningún libro de la tabla viva referencia.
+     *
+     * @param limite se consideran las fichas eliminadas antes de este instante
+     * @param tamanioLote cantidad máxima de fichas
+     * @param conn conexión de base de datos externa (en transacción)
+     * @return IDs bloqueados, en orden de eliminación
+     * @throws SQLException si hay error en la consulta
+     */
+    public long[] bloquearLoteFichas(Timestamp limite, int tamanioLote, Connection conn) throws SQLException {
+        return bloquearLote(SELECT_LOTE_FICHAS_SQL, limite, tamanioLote, conn);
+    }
+
+    /**
+     * Copia los libros indicados a libro_archivo y los borra de libro.
+     *
+     * @param ids IDs bloqueados con bloquearLoteLibros
+     * @param conn conexión de base de datos externa (en transacción)
+     * @return cantidad de libros archivados
+     * @throws SQLException si hay error o si no se pudieron mover todos los libros
+     */
+    public int archivarLibros(long[] ids, Connection conn) throws SQLException {
+        return mover(ids, ARCHIVAR_LIBROS_SQL, BORRAR_LIBROS_SQL, "libros", conn);
+    }
+
+    /**
+     * Copia las fichas indicadas a ficha_bibliografica_archivo y las borra de ficha_bibliografica.
+     *
+     * @param ids IDs bloqueados con bloquearLoteFichas
+     * @param conn conexión de base de datos externa (en transacción)
+     * @return cantidad de fichas archivadas
+     * @throws SQLException si hay error o si no se pudieron mover todas las fichas
+     */
+    public int archivarFichas(long[] ids, Connection conn) throws SQLException {
+        return mover(ids, ARCHIVAR_FICHAS_SQL, BORRAR_FICHAS_SQL, "fichas", conn);
+    }
+
+
+    // ============================ Restauración ============================
+
+    /**
+     * Devuelve un libro archivado a la tabla viva como no eliminado.
+     * Si su ficha también está archivada, la restaura primero.
+     *
+     * @param id ID del libro archivado
+     * @param conn conexión de base de datos externa (en transacción)
+     * @return true si el libro estaba archivado y fue restaurado
+     * @throws SQLException si hay error (por ejemplo, el ISBN de la ficha ya está en uso)
+     */
+    public boolean restaurarLibro(long id, Connection conn) throws SQLException {
+        long fichaId;
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_FICHA_DE_LIBRO_ARCHIVADO_SQL)) {
+            stmt.setLong(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                fichaId = rs.getLong(1);
+            }
+        }
+
+        if (fichaId > 0) {
+            restaurarFicha(fichaId, conn);
+        }
+        return restaurar(id, RESTAURAR_LIBRO_SQL, BORRAR_LIBRO_ARCHIVADO_SQL, conn);
+    }
+
+    /**
+     * Devuelve una ficha archivada a la tabla viva como no eliminada.
+     *
+     * @param id ID de la ficha archivada
+     * @param conn conexión de base de datos externa (en transacción)
+     * @return true si la ficha estaba archivada y fue restaurada
+     * @throws SQLException si hay error (por ejemplo, el ISBN ya está en uso)
+     */
+    public boolean restaurarFicha(long id, Connection conn) throws SQLException {
+        return restaurar(id, RESTAURAR_FICHA_SQL, BORRAR_FICHA_ARCHIVADA_SQL, conn);
+    }
+
+
+    // ===================== Métodos auxiliares privados =====================
+
+    /**
+     * Ejecuta una consulta COUNT(*) ya parametrizada.
+     *
+     * @param stmt statement preparado
+     * @return resultado del conteo
+     * @throws SQLException si hay error en la consulta
+     */
+    private int contar(PreparedStatement stmt) throws SQLException {
+        try (ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Ejecuta una consulta de selección de lote y devuelve los IDs.
+     *
+     * @param sql query con parámetros (límite, tamaño de lote)
+     * @param limite instante límite de eliminación
+     * @param tamanioLote cantidad máxima de filas
+     * @param conn conexión de base de datos externa
+     * @return IDs seleccionados
+     * @throws SQLException si hay error en la consulta
+     */
+    private long[] bloquearLote(String sql, Timestamp limite, int tamanioLote, Connection conn) throws SQLException {
+        long[] ids = new long[tamanioLote];
+        int cantidad = 0;
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setTimestamp(1, limite);
+            stmt.setInt(2, tamanioLote);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next() && cantidad < tamanioLote) {
+                    ids[cantidad++] = rs.getLong(1);
+                }
+            }
+        }
+        return cantidad == tamanioLote ? ids : Arrays.copyOf(ids, cantidad);
+    }
+
+    /**
+     * Copia filas a la tabla de archivo y las borra de la tabla viva, en bloques
+     * de IDs con listas IN de tamaño fijo. Si la cantidad copiada y la borrada
+     * no coinciden (una fila cambió de estado entre ambas sentencias), falla
+     * para que la transacción se revierta.
+     *
+     * @param ids IDs a mover
+     * @param archivarSql queries INSERT ... SELECT por forma
+     * @param borrarSql queries DELETE por forma
+     * @param entidad nombre de la entidad para el mensaje de error
+     * @param conn conexión de base de datos externa (en transacción)
+     * @return cantidad de filas movidas
+     * @throws SQLException si hay error o las cantidades no coinciden
+     */
+    private int mover(long[] ids, String[] archivarSql, String[] borrarSql, String entidad, Connection conn)
+            throws SQLException {
+        int copiadas = 0;
+        int borradas = 0;
+        for (int desde = 0; desde < ids.length; ) {
+            int forma = InClauseBuilder.indiceForma(ids.length - desde);
+            int tamanio = InClauseBuilder.tamanioForma(forma);
+            int cantidad = Math.min(tamanio, ids.length - desde);
+
+            try (PreparedStatement stmt = conn.prepareStatement(archivarSql[forma])) {
+                InClauseBuilder.bind(stmt, ids, desde, cantidad, tamanio);
+                copiadas += stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(borrarSql[forma])) {
+                InClauseBuilder.bind(stmt, ids, desde, cantidad, tamanio);
+                borradas += stmt.executeUpdate();
+            }
+            desde += cantidad;
+        }
+
+        if (copiadas != borradas) {
+            throw new SQLException("Archivado de " + entidad + " inconsistente: " + copiadas
+                    + " copiadas y " + borradas + " borradas");
+        }
+        return borradas;
+    }
+
+    /**
+     * Inserta en la tabla viva una fila archivada y la borra del archivo.
+     *
+     * @param id ID de la fila
+     * @param restaurarSql query INSERT ... SELECT desde el archivo
+     * @param borrarSql query DELETE sobre el archivo
+     * @param conn conexión de base de datos externa (en transacción)
+     * @return true si la fila estaba archivada
+     * @throws SQLException si hay error
+     */
+    private boolean restaurar(long id, String restaurarSql, String borrarSql, Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(restaurarSql)) {
+            stmt.setLong(1, id);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(borrarSql)) {
+            stmt.setLong(1, id);
+            stmt.executeUpdate();
+        }
+        return true;
+    }
+
+}
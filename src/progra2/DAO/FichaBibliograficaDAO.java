@@ -2,9 +2,14 @@ package progra2.DAO;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import progra2.Config.DatabaseConnection;
 import progra2.Models.FichaBibliografica;
+import progra2.Models.ISBNUtils;
 
 /**
  * DAO (Data Access Object) para operaciones CRUD de FichaBibliografica.
@@ -19,25 +24,44 @@ import progra2.Models.FichaBibliografica;
 public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
     
     /** Query SQL para insertar una nueva ficha bibliográfica. */
-    private static final String INSERT_SQL = "INSERT INTO ficha_bibliografica (isbn, clasificacion_dewey, estanteria, idioma) VALUES (?, ?, ?, ?)";
+    private static final String INSERT_SQL = "INSERT INTO ficha_bibliografica (isbn, clasificacion_dewey, estanteria, idioma, isbn13) VALUES (?, ?, ?, ?, ?)";
     
-    /** Query SQL para actualizar una ficha bibliográfica existente. */
-    private static final String UPDATE_SQL = "UPDATE ficha_bibliografica SET isbn = ?, clasificacion_dewey = ?, estanteria = ?, idioma = ? WHERE id = ?";
+    /**
+     * Query SQL para actualizar una ficha bibliográfica existente con control de concurrencia
+     * optimista: solo actualiza si la fila existe, no está eliminada y conserva la versión leída.
+     */
+    private static final String UPDATE_SQL = "UPDATE ficha_bibliografica SET isbn = ?, clasificacion_dewey = ?, estanteria = ?, idioma = ?, isbn13 = ?, "
+            + "version = version + 1 WHERE id = ? AND version = ? AND eliminado = FALSE";
     
-    /** Query SQL para realizar eliminación lógica de una ficha. */
-    private static final String DELETE_SQL = "UPDATE ficha_bibliografica SET eliminado = TRUE WHERE id = ?";
+    /** Query SQL para realizar eliminación lógica de una ficha (solo si no está eliminada: conserva su eliminado_en). */
+    private static final String DELETE_SQL =
+            "UPDATE ficha_bibliografica SET eliminado = TRUE, eliminado_en = CURRENT_TIMESTAMP, version = version + 1 " +
+            "WHERE id = ? AND eliminado = FALSE";
     
     /** Query SQL para buscar una ficha por ID (solo no eliminadas). */
-    private static final String SELECT_BY_ID_SQL = "SELECT * FROM ficha_bibliografica WHERE id = ? AND eliminado = FALSE";
+    private static final String SELECT_BY_ID_SQL = "SELECT " + FichaBibliograficaRowMapper.COLUMNAS + " FROM ficha_bibliografica WHERE id = ? AND eliminado = FALSE";
     
     /** Query SQL para obtener todas las fichas no eliminadas. */
-    private static final String SELECT_ALL_SQL = "SELECT * FROM ficha_bibliografica WHERE eliminado = FALSE";
+    private static final String SELECT_ALL_SQL = "SELECT " + FichaBibliograficaRowMapper.COLUMNAS + " FROM ficha_bibliografica WHERE eliminado = FALSE";
+    
+    /** Query SQL para obtener una página de fichas posteriores a un ID (paginación por clave). */
+    private static final String SELECT_PAGE_SQL = "SELECT " + FichaBibliograficaRowMapper.COLUMNAS + " FROM ficha_bibliografica WHERE id > ? AND eliminado = FALSE ORDER BY id LIMIT ?";
+    
+    /** Queries SQL para buscar fichas por lista de IDs, una por forma de la lista IN (ver InClauseBuilder). */
+    private static final String[] SELECT_BY_IDS_SQL = InClauseBuilder.sqlPorForma(
+            "SELECT " + FichaBibliograficaRowMapper.COLUMNAS + " FROM ficha_bibliografica WHERE eliminado = FALSE AND id ", "");
     
-    /** Query SQL para verificar existencia de un ISBN. */
-    private static final String EXISTS_ISBN_SQL = "SELECT COUNT(*) FROM ficha_bibliografica WHERE isbn = ? AND eliminado = FALSE";
+    /** Query SQL para buscar una ficha por ISBN canónico (índice único uk_ficha_isbn13). */
+    private static final String SELECT_BY_ISBN13_SQL = "SELECT " + FichaBibliograficaRowMapper.COLUMNAS + " FROM ficha_bibliografica WHERE isbn13 = ? AND eliminado = FALSE";
+    
+    /** Query SQL para verificar existencia de un ISBN (por su forma canónica). */
+    private static final String EXISTS_ISBN_SQL = "SELECT COUNT(*) FROM ficha_bibliografica WHERE isbn13 = ? AND eliminado = FALSE";
     
     /** Query SQL para verificar existencia de ISBN excluyendo un ID específico. */
-    private static final String EXISTS_ISBN_EXCEPT_ID_SQL = "SELECT COUNT(*) FROM ficha_bibliografica WHERE isbn = ? AND id != ? AND eliminado = FALSE";
+    private static final String EXISTS_ISBN_EXCEPT_ID_SQL = "SELECT COUNT(*) FROM ficha_bibliografica WHERE isbn13 = ? AND id != ? AND eliminado = FALSE";
+    
+    /** Cantidad máxima de filas enviadas en cada executeBatch(). */
+    private static final int BATCH_SIZE = 1000;
     
     
     // ===================== Métodos con conexion propia =====================
@@ -54,6 +78,7 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
         try (Connection conn = DatabaseConnection.getConnection()) {
             insertar(fichaBibliografica, conn);
         }
+        DatabaseConnection.registrarEscritura();
     }
     
     /**
@@ -68,6 +93,7 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
         try (Connection conn = DatabaseConnection.getConnection()) {
             actualizar(ficha, conn);
         }
+        DatabaseConnection.registrarEscritura();
     }
     
     /**
@@ -78,27 +104,61 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
      * @throws SQLException si hay error en la eliminación
      */
     @Override
-    public void eliminar(int id) throws SQLException {
+    public void eliminar(long id) throws SQLException {
         try (Connection conn = DatabaseConnection.getConnection()) {
             eliminar(id, conn);
         }
+        DatabaseConnection.registrarEscritura();
     }
     
     /**
      * Obtiene una ficha bibliográfica por su ID.
-     * Crea su propia conexión y la cierra automáticamente.
+     * Crea su propia conexión y la cierra automáticamente. Lee siempre del
+     * primario (no de una réplica): estas lecturas alimentan la caché por ID.
      * 
      * @param id identificador de la ficha
      * @return la ficha encontrada o null si no existe
      * @throws SQLException si hay error en la consulta
      */
     @Override
-    public FichaBibliografica getById(int id) throws SQLException {
+    public FichaBibliografica getById(long id) throws SQLException {
         try (Connection conn = DatabaseConnection.getConnection()) {
             return getById(id, conn);
         }
     }
     
+    /**
+     * Obtiene varias fichas por sus IDs en pocas consultas.
+     * Crea su propia conexión y la cierra automáticamente. Lee siempre del
+     * primario (no de una réplica): estas lecturas alimentan la caché por ID.
+     * 
+     * @param ids IDs a buscar (se ignoran nulos y repetidos)
+     * @return fichas encontradas indexadas por ID, en el orden de los IDs solicitados
+     * @throws SQLException si hay error en la consulta
+     */
+    public Map<Long, FichaBibliografica> getByIds(Collection<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getByIds(ids, conn);
+        }
+    }
+    
+    /**
+     * Obtiene una ficha por su ISBN canónico.
+     * Crea su propia conexión y la cierra automáticamente.
+     * 
+     * @param isbn13 ISBN-13 canónico (ver ISBNUtils.parse)
+     * @return la ficha encontrada o null si no existe
+     * @throws SQLException si hay error en la consulta
+     */
+    public FichaBibliografica getByIsbn(long isbn13) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            return getByIsbn(isbn13, conn);
+        }
+    }
+    
     /**
      * Obtiene todas las fichas bibliográficas no eliminadas.
      * Crea su propia conexión y la cierra automáticamente.
@@ -108,11 +168,26 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
      */
     @Override
     public List<FichaBibliografica> getAll() throws SQLException {
-        try (Connection conn = DatabaseConnection.getConnection()) {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
             return getAll(conn);
         }
     }
     
+    /**
+     * Obtiene una página de fichas no eliminadas cuyo ID sea mayor a afterId,
+     * ordenadas por ID. Crea su propia conexión y la cierra automáticamente.
+     * 
+     * @param afterId último ID de la página anterior (0 para la primera página)
+     * @param pageSize cantidad máxima de fichas a devolver
+     * @return página de fichas (vacía si no hay más)
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<FichaBibliografica> getPage(long afterId, int pageSize) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            return getPage(afterId, pageSize, conn);
+        }
+    }
+    
     
     // ================ Métodos con conexion externa (original) ================
     
@@ -132,24 +207,59 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
         }
     }
     
+    /**
+     * Inserta varias fichas usando JDBC batching sobre una conexión externa.
+     * Las filas se envían en lotes de hasta BATCH_SIZE y los IDs generados
+     * se asignan a cada ficha en el mismo orden de la lista.
+     * No cierra la conexión ni confirma la transacción (debe hacerlo el llamador).
+     * 
+     * @param fichas las fichas a insertar
+     * @param conn la conexión de base de datos (manejada externamente)
+     * @throws SQLException si hay error en la inserción o en la obtención de IDs
+     */
+    public void insertarBatch(List<FichaBibliografica> fichas, Connection conn) throws SQLException {
+        if (fichas.isEmpty()) {
+            return;
+        }
+        
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            
+            for (int inicio = 0; inicio < fichas.size(); inicio += BATCH_SIZE) {
+                List<FichaBibliografica> lote = fichas.subList(inicio, Math.min(inicio + BATCH_SIZE, fichas.size()));
+                for (FichaBibliografica ficha : lote) {
+                    setFichaParameters(stmt, ficha);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                setGeneratedIds(stmt, lote);
+            }
+        }
+    }
+    
     /**
      * Actualiza una ficha bibliográfica usando una conexión externa.
+     * La existencia y la versión se verifican en el mismo UPDATE: si no se afecta
+     * ninguna fila, la ficha no existe, fue eliminada o la modificó otro usuario
+     * desde que se leyó. Si se actualiza, incrementa la versión de la ficha.
      * No cierra la conexión (debe ser manejada por el llamador).
      * 
-     * @param ficha la ficha con datos actualizados
+     * @param ficha la ficha con datos actualizados y la versión leída
      * @param conn conexión de base de datos externa
-     * @throws SQLException si hay error en la actualización
+     * @throws SQLException si hay error en la actualización o la versión no coincide
      */
     public void actualizar(FichaBibliografica ficha, Connection conn) throws SQLException {
         try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
             
             setFichaParameters(stmt, ficha);
-            stmt.setInt(5, ficha.getId());
+            stmt.setLong(6, ficha.getId());
+            stmt.setInt(7, ficha.getVersion());
             
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected == 0) {
-                throw new SQLException("No se pudo actualizar la ficha con ID: " + ficha.getId());
+                throw new SQLException("No se pudo actualizar la ficha con ID: " + ficha.getId()
+                        + " (no existe o fue modificada por otro usuario)");
             }
+            ficha.setVersion(ficha.getVersion() + 1);
         }
     }
     
@@ -161,10 +271,10 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
      * @param conn conexión de base de datos externa
      * @throws SQLException si hay error en la eliminación
      */
-    public void eliminar(int id, Connection conn) throws SQLException {
+    public void eliminar(long id, Connection conn) throws SQLException {
         try (PreparedStatement stmt = conn.prepareStatement(DELETE_SQL)) {
                 
-            stmt.setInt(1, id);
+            stmt.setLong(1, id);
             
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected == 0) {
@@ -182,14 +292,83 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
      * @return la ficha encontrada o null si no existe
      * @throws SQLException si hay error en la consulta
      */
-    public FichaBibliografica getById(int id, Connection conn) throws SQLException {
+    public FichaBibliografica getById(long id, Connection conn) throws SQLException {
         try (PreparedStatement stmt = conn.prepareStatement(SELECT_BY_ID_SQL)) {
 
-            stmt.setInt(1, id);
+            stmt.setLong(1, id);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return FichaBibliograficaRowMapper.INSTANCIA.mapRow(rs);
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Obtiene varias fichas por sus IDs usando una conexión externa.
+     * Los IDs se consultan en bloques de hasta {@value InClauseBuilder#MAX_IDS_POR_CONSULTA}
+     * con listas IN de tamaño fijo (ver InClauseBuilder), evitando una consulta por ID.
+     * Los IDs inexistentes o eliminados no aparecen en el resultado.
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param ids IDs a buscar (se ignoran nulos y repetidos)
+     * @param conn conexión de base de datos externa
+     * @return fichas encontradas indexadas por ID, en el orden de los IDs solicitados
+     * @throws SQLException si hay error en la consulta
+     */
+    public Map<Long, FichaBibliografica> getByIds(Collection<Long> ids, Connection conn) throws SQLException {
+        long[] unicos = InClauseBuilder.idsUnicos(ids);
+        Map<Long, FichaBibliografica> encontradas = new HashMap<>(unicos.length * 2);
+        
+        for (int desde = 0; desde < unicos.length; ) {
+            int forma = InClauseBuilder.indiceForma(unicos.length - desde);
+            int tamanio = InClauseBuilder.tamanioForma(forma);
+            int cantidad = Math.min(tamanio, unicos.length - desde);
+            
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_BY_IDS_SQL[forma])) {
+                InClauseBuilder.bind(stmt, unicos, desde, cantidad, tamanio);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        FichaBibliografica ficha = FichaBibliograficaRowMapper.INSTANCIA.mapRow(rs);
+                        encontradas.put(ficha.getId(), ficha);
+                    }
+                }
+            }
+            desde += cantidad;
+        }
+        
+        // Respetar el orden de los IDs solicitados
+        Map<Long, FichaBibliografica> resultado = new LinkedHashMap<>();
+        for (long id : unicos) {
+            FichaBibliografica ficha = encontradas.get(id);
+            if (ficha != null) {
+                resultado.put(id, ficha);
+            }
+        }
+        return resultado;
+    }
+    
+    /**
+     * Obtiene una ficha por su ISBN canónico usando una conexión externa.
+     * Es una única lectura por el índice único de isbn13, por lo que una
+     * búsqueda con lector de código de barras no recorre la tabla.
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param isbn13 ISBN-13 canónico (ver ISBNUtils.parse)
+     * @param conn conexión de base de datos externa
+     * @return la ficha encontrada o null si no existe
+     * @throws SQLException si hay error en la consulta
+     */
+    public FichaBibliografica getByIsbn(long isbn13, Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_BY_ISBN13_SQL)) {
+
+            stmt.setLong(1, isbn13);
 
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToFicha(rs);
+                    return FichaBibliograficaRowMapper.INSTANCIA.mapRow(rs);
                 }
             }
         }
@@ -211,7 +390,35 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
              ResultSet rs = stmt.executeQuery(SELECT_ALL_SQL)) {
             
             while (rs.next()) {
-                fichas.add(mapResultSetToFicha(rs));
+                fichas.add(FichaBibliograficaRowMapper.INSTANCIA.mapRow(rs));
+            }
+        }
+        return fichas;
+    }
+    
+    /**
+     * Obtiene una página de fichas usando una conexión externa.
+     * Usa paginación por clave (WHERE id > ? ORDER BY id LIMIT ?).
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param afterId último ID de la página anterior (0 para la primera página)
+     * @param pageSize cantidad máxima de fichas a devolver
+     * @param conn conexión de base de datos externa
+     * @return página de fichas (vacía si no hay más)
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<FichaBibliografica> getPage(long afterId, int pageSize, Connection conn) throws SQLException {
+        List<FichaBibliografica> fichas = new ArrayList<>(pageSize);
+        
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_PAGE_SQL)) {
+            
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, pageSize);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    fichas.add(FichaBibliograficaRowMapper.INSTANCIA.mapRow(rs));
+                }
             }
         }
         return fichas;
@@ -221,20 +428,22 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
     
     /**
      * Verifica si ya existe una ficha con el ISBN dado.
+     * Compara la forma canónica, por lo que un ISBN-10 coincide con su ISBN-13.
      * 
      * @param isbn el ISBN a verificar
      * @return true si exise, false en caso contrario
      * @throws SQLException si hay error en la consulta
      */
     public boolean existeISBN(String isbn) throws SQLException {
-        if (isbn == null || isbn.trim().isEmpty()) {
+        long isbn13 = ISBNUtils.parse(isbn);
+        if (isbn13 == ISBNUtils.INVALIDO) {
             return false;
         }
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(EXISTS_ISBN_SQL)) {
             
-            stmt.setString(1, isbn);
+            stmt.setLong(1, isbn13);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 return rs.next() && rs.getInt(1) > 0;
@@ -251,16 +460,17 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
      * @return true si existe otra ficha con ese ISBN, false en caso contrario
      * @throws SQLException si hay error en la consulta
      */
-    public boolean existeISBNExceptoId(String isbn , int idActual) throws SQLException {
-        if (isbn == null || isbn.trim().isEmpty()) {
+    public boolean existeISBNExceptoId(String isbn , long idActual) throws SQLException {
+        long isbn13 = ISBNUtils.parse(isbn);
+        if (isbn13 == ISBNUtils.INVALIDO) {
             return false;
         }
         
         try (Connection conn = DatabaseConnection.getConnection();
              PreparedStatement stmt = conn.prepareStatement(EXISTS_ISBN_EXCEPT_ID_SQL)) {
             
-            stmt.setString(1, isbn);
-            stmt.setInt(2, idActual);
+            stmt.setLong(1, isbn13);
+            stmt.setLong(2, idActual);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 return rs.next() && rs.getInt(1) > 0;
@@ -273,6 +483,8 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
     
     /**
      * Configura los parámetros del PreparedStatement con los datos de la ficha.
+     * Además del ISBN tal como se ingresó, guarda su forma canónica en isbn13
+     * (NULL si la ficha no tiene ISBN).
      * 
      * @param stmt el PreparedStatement a configurar
      * @param fichaBibliografica la ficha con los datos
@@ -283,6 +495,13 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
         stmt.setString(2, fichaBibliografica.getClasificacionDewey());
         stmt.setString(3, fichaBibliografica.getEstanteria());
         stmt.setString(4, fichaBibliografica.getIdioma());
+        
+        long isbn13 = ISBNUtils.parse(fichaBibliografica.getIsbn());
+        if (isbn13 != ISBNUtils.INVALIDO) {
+            stmt.setLong(5, isbn13);
+        } else {
+            stmt.setNull(5, Types.BIGINT);
+        }
     }
     
     /**
@@ -295,7 +514,7 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
     private void setGeneratedId(PreparedStatement stmt, FichaBibliografica fichaBibliografica) throws SQLException {
         try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
             if (generatedKeys.next()) {
-                fichaBibliografica.setId(generatedKeys.getInt(1));
+                fichaBibliografica.setId(generatedKeys.getLong(1));
             } else {
                 throw new SQLException("La insercion de la ficha fallo, no se obtuvo ID generado");
             }
@@ -303,21 +522,23 @@ public class FichaBibliograficaDAO implements GenericDAO<FichaBibliografica> {
     }
     
     /**
-     * Mapea un ResultSet a un objeto FichaBibliografica.
+     * Obtiene los IDs generados por un executeBatch() y los asigna a las fichas del lote.
      * 
-     * @param rs el ResultSet con los datos
-     * @return objeto FichaBibliografica mapeado
-     * @throws SQLException si hay error al leer los datos
+     * @param stmt el PreparedStatement que ejecutó el lote
+     * @param lote las fichas insertadas, en el orden en que se agregaron al lote
+     * @throws SQLException si la cantidad de IDs generados no coincide con el lote
      */
-    private FichaBibliografica mapResultSetToFicha(ResultSet rs) throws SQLException {
-        return new FichaBibliografica(
-                rs.getString("isbn"),
-                rs.getString("clasificacion_dewey"),
-                rs.getString("estanteria"),
-                rs.getString("idioma"),
-                rs.getInt("id"),
-                rs.getBoolean("eliminado")
-        );
+    private void setGeneratedIds(PreparedStatement stmt, List<FichaBibliografica> lote) throws SQLException {
+        try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
+            int i = 0;
+            while (generatedKeys.next() && i < lote.size()) {
+                lote.get(i++).setId(generatedKeys.getLong(1));
+            }
+            if (i != lote.size()) {
+                throw new SQLException("La insercion por lotes de fichas fallo: se esperaban "
+                        + lote.size() + " IDs generados y se obtuvieron " + i);
+            }
+        }
     }
     
 }
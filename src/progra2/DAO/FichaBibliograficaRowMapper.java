@@ -0,0 +1,89 @@
+package progra2.DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import progra2.Models.FichaBibliografica;
+
+/**
+ * Mapper de filas de ficha_bibliografica por índice de columna.
+ *
+ * Las columnas deben seleccionarse en el orden de {@link #COLUMNAS}
+ * (o {@link #columnas(String)} con alias de tabla). En consultas que empiezan
+ * con otras columnas, como el JOIN desde libro, el mapper se crea indicando
+ * la posición de la primera columna de la ficha.
+ */
+public final class FichaBibliograficaRowMapper implements RowMapper<FichaBibliografica> {
+
+    /** Desplazamiento de cada columna respecto de la primera columna de la ficha. */
+    private static final int ID = 0;
+    private static final int ELIMINADO = 1;
+    private static final int VERSION = 2;
+    private static final int ISBN = 3;
+    private static final int CLASIFICACION_DEWEY = 4;
+    private static final int ESTANTERIA = 5;
+    private static final int IDIOMA = 6;
+
+    /** Cantidad de columnas que lee el mapper. */
+    public static final int CANTIDAD_COLUMNAS = 7;
+
+    /** Columnas de la ficha, en el orden que espera el mapper. */
+    public static final String COLUMNAS = columnas(null);
+
+    /** Mapper para consultas que seleccionan solo las columnas de la ficha. */
+    public static final FichaBibliograficaRowMapper INSTANCIA = new FichaBibliograficaRowMapper(1);
+
+    /** Índice (base 1) de la primera columna de la ficha en el ResultSet. */
+    private final int primeraColumna;
+
+    /**
+     * Crea un mapper cuyas columnas comienzan en la posición indicada.
+     *
+     * @param primeraColumna índice (base 1) de la columna id de la ficha
+     * @throws IllegalArgumentException si el índice no es positivo
+     */
+    public FichaBibliograficaRowMapper(int primeraColumna) {
+        if (primeraColumna < 1) {
+            throw new IllegalArgumentException("La primera columna debe ser mayor a cero");
+        }
+        this.primeraColumna = primeraColumna;
+    }
+
+    /**
+     * Genera la lista de columnas de la ficha en el orden que espera el mapper.
+     *
+     * @param alias alias de la tabla ficha_bibliografica (null para no calificar)
+     * @return columnas separadas por coma
+     */
+    public static String columnas(String alias) {
+        String p = alias != null ? alias + "." : "";
+        return p + "id, " + p + "eliminado, " + p + "version, " + p + "isbn, "
+                + p + "clasificacion_dewey, " + p + "estanteria, " + p + "idioma";
+    }
+
+    /**
+     * Mapea la ficha de la fila actual.
+     * Si el id es NULL (ficha ausente en un LEFT JOIN), devuelve null.
+     *
+     * @param rs el ResultSet posicionado en una fila válida
+     * @return la ficha mapeada o null si la fila no tiene ficha
+     * @throws SQLException si hay error al leer los datos
+     */
+    @Override
+    public FichaBibliografica mapRow(ResultSet rs) throws SQLException {
+        long id = rs.getLong(primeraColumna + ID);
+        if (rs.wasNull()) {
+            return null;
+        }
+        FichaBibliografica ficha = new FichaBibliografica(
+                rs.getString(primeraColumna + ISBN),
+                rs.getString(primeraColumna + CLASIFICACION_DEWEY),
+                rs.getString(primeraColumna + ESTANTERIA),
+                rs.getString(primeraColumna + IDIOMA),
+                id,
+                rs.getBoolean(primeraColumna + ELIMINADO)
+        );
+        ficha.setVersion(rs.getInt(primeraColumna + VERSION));
+        return ficha;
+    }
+
+}
@@ -33,7 +33,7 @@ public interface GenericDAO<T> {
      * @param id identificador de la entidad
      * @throws Exception si hay error en la eliminación
      */
-    void eliminar(int id) throws Exception;
+    void eliminar(long id) throws Exception;
     
     /**
      * Obtiene una entidad por su ID.
@@ -42,7 +42,7 @@ public interface GenericDAO<T> {
      * @return la entidad encontrada o null si no existe
      * @throws Exception si hay error en la consulta
      */
-    T getById(int id) throws Exception;
+    T getById(long id) throws Exception;
     
     /**
      * Obtiene todas las entidades no eliminadas de este tipo.
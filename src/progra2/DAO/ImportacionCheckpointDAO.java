@@ -0,0 +1,135 @@
+package progra2.DAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import progra2.Config.DatabaseConnection;
+
+/**
+ * DAO del avance de las importaciones CSV (tabla importacion_checkpoint).
+ * El avance de cada lote se guarda con la conexión de la transacción que
+ * inserta sus libros, para que ambos se confirmen o se reviertan juntos.
+ */
+public class ImportacionCheckpointDAO {
+
+    /** Query SQL para obtener el avance de una importación. */
+    private static final String SELECT_SQL =
+            "SELECT registros_procesados, importados, rechazados, completada FROM importacion_checkpoint WHERE clave = ?";
+
+    /** Query SQL para crear o actualizar el avance de una importación. */
+    private static final String UPSERT_SQL =
+            "INSERT INTO importacion_checkpoint (clave, archivo, registros_procesados, importados, rechazados, completada) "
+            + "VALUES (?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE "
+            + "registros_procesados = VALUES(registros_procesados), importados = VALUES(importados), "
+            + "rechazados = VALUES(rechazados), completada = VALUES(completada)";
+
+    /** Query SQL para descartar el avance de una importación. */
+    private static final String DELETE_SQL = "DELETE FROM importacion_checkpoint WHERE clave = ?";
+
+    /**
+     * Obtiene el avance registrado de una importación.
+     *
+     * @param clave clave del archivo importado
+     * @return avance registrado o null si el archivo nunca se importó
+     * @throws SQLException si hay error en la consulta
+     */
+    public Checkpoint obtener(String clave) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_SQL)) {
+            stmt.setString(1, clave);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return new Checkpoint(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getBoolean(4));
+            }
+        }
+    }
+
+    /**
+     * Guarda el avance de una importación usando una conexión externa (para transacciones).
+     * No cierra la conexión (debe ser manejada por el llamador).
+     *
+     * @param clave clave del archivo importado
+     * @param archivo nombre del archivo (informativo)
+     * @param checkpoint avance a registrar
+     * @param conn conexión de base de datos externa
+     * @throws SQLException si hay error al guardar
+     */
+    public void guardar(String clave, String archivo, Checkpoint checkpoint, Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(UPSERT_SQL)) {
+            stmt.setString(1, clave);
+            stmt.setString(2, archivo.length() > 255 ? archivo.substring(archivo.length() - 255) : archivo);
+            stmt.setLong(3, checkpoint.getRegistrosProcesados());
+            stmt.setLong(4, checkpoint.getImportados());
+            stmt.setLong(5, checkpoint.getRechazados());
+            stmt.setBoolean(6, checkpoint.isCompletada());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Descarta el avance de una importación, para volver a importar el archivo desde el principio.
+     *
+     * @param clave clave del archivo importado
+     * @throws SQLException si hay error al eliminar
+     */
+    public void eliminar(String clave) throws SQLException {
+        try (Connection conn = DatabaseConnection.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(DELETE_SQL)) {
+            stmt.setString(1, clave);
+            stmt.executeUpdate();
+        }
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /**
+     * Avance confirmado de una importación.
+     */
+    public static final class Checkpoint {
+
+        private final long registrosProcesados;
+        private final long importados;
+        private final long rechazados;
+        private final boolean completada;
+
+        /**
+         * Crea un avance.
+         *
+         * @param registrosProcesados registros de datos ya procesados (importados o rechazados)
+         * @param importados libros importados
+         * @param rechazados registros rechazados
+         * @param completada true si se procesó el archivo completo
+         */
+        public Checkpoint(long registrosProcesados, long importados, long rechazados, boolean completada) {
+            this.registrosProcesados = registrosProcesados;
+            this.importados = importados;
+            this.rechazados = rechazados;
+            this.completada = completada;
+        }
+
+        /** @return registros de datos ya procesados (importados o rechazados) */
+        public long getRegistrosProcesados() {
+            return registrosProcesados;
+        }
+
+        /** @return libros importados */
+        public long getImportados() {
+            return importados;
+        }
+
+        /** @return registros rechazados */
+        public long getRechazados() {
+            return rechazados;
+        }
+
+        /** @return true si se procesó el archivo completo */
+        public boolean isCompletada() {
+            return completada;
+        }
+    }
+
+}
@@ -0,0 +1,115 @@
+package progra2.DAO;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Utilidades para consultas con listas de IDs en cláusulas IN (...).
+ *
+ * Una lista de IDs se divide en bloques de tamaño acotado. Cada bloque se
+ * consulta con una de unas pocas "formas" fijas (1, 4, 16, 64 o 256 parámetros),
+ * completando los lugares sobrantes con el último ID del bloque. Así, consultas
+ * con cantidades de IDs distintas producen siempre el mismo puñado de textos SQL
+ * y reutilizan los PreparedStatement cacheados por el pool, en lugar de generar
+ * un SQL distinto para cada cantidad de IDs.
+ */
+final class InClauseBuilder {
+
+    /** Cantidades de parámetros admitidas en la lista IN, de menor a mayor. */
+    private static final int[] FORMAS = {1, 4, 16, 64, 256};
+
+    /** Cantidad máxima de IDs por consulta. */
+    static final int MAX_IDS_POR_CONSULTA = FORMAS[FORMAS.length - 1];
+
+    /**
+     * Constructor privado para prevenir instanciación.
+     *
+     * @throws UnsupportedOperationException siempre que se intente instanciar
+     */
+    private InClauseBuilder() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * Genera el SQL de cada forma: prefijo + "IN (?, ?, ...)" + sufijo.
+     *
+     * @param prefijo parte de la consulta anterior a la lista (debe terminar en "id ")
+     * @param sufijo parte de la consulta posterior a la lista (puede ser vacía)
+     * @return SQL por forma, en el mismo orden que FORMAS
+     */
+    static String[] sqlPorForma(String prefijo, String sufijo) {
+        String[] sqls = new String[FORMAS.length];
+        for (int i = 0; i < FORMAS.length; i++) {
+            StringBuilder sql = new StringBuilder(prefijo.length() + sufijo.length() + FORMAS[i] * 3 + 5);
+            sql.append(prefijo).append("IN (");
+            for (int j = 0; j < FORMAS[i]; j++) {
+                sql.append(j == 0 ? "?" : ", ?");
+            }
+            sqls[i] = sql.append(')').append(sufijo).toString();
+        }
+        return sqls;
+    }
+
+    /**
+     * Obtiene el índice de la forma más chica que admite la cantidad de IDs indicada.
+     *
+     * @param cantidad IDs restantes (mayor a cero)
+     * @return índice en FORMAS (la mayor si la cantidad la supera)
+     */
+    static int indiceForma(int cantidad) {
+        for (int i = 0; i < FORMAS.length; i++) {
+            if (cantidad <= FORMAS[i]) {
+                return i;
+            }
+        }
+        return FORMAS.length - 1;
+    }
+
+    /**
+     * Obtiene la cantidad de parámetros de una forma.
+     *
+     * @param indiceForma índice devuelto por indiceForma()
+     * @return cantidad de parámetros de la lista IN
+     */
+    static int tamanioForma(int indiceForma) {
+        return FORMAS[indiceForma];
+    }
+
+    /**
+     * Asigna un bloque de IDs a los parámetros de la lista IN, completando los
+     * lugares sobrantes de la forma con el último ID del bloque.
+     *
+     * @param stmt statement preparado con el SQL de la forma
+     * @param ids todos los IDs
+     * @param desde posición del primer ID del bloque
+     * @param cantidad IDs del bloque (no mayor al tamaño de la forma)
+     * @param tamanioForma cantidad de parámetros de la forma
+     * @throws SQLException si hay error al asignar los parámetros
+     */
+    static void bind(PreparedStatement stmt, long[] ids, int desde, int cantidad, int tamanioForma) throws SQLException {
+        for (int i = 0; i < tamanioForma; i++) {
+            stmt.setLong(i + 1, ids[desde + Math.min(i, cantidad - 1)]);
+        }
+    }
+
+    /**
+     * Elimina IDs nulos y repetidos, conservando el orden de aparición.
+     *
+     * @param ids IDs solicitados
+     * @return IDs únicos
+     */
+    static long[] idsUnicos(Collection<Long> ids) {
+        Set<Long> unicos = new LinkedHashSet<>(ids);
+        unicos.remove(null);
+        long[] resultado = new long[unicos.size()];
+        int i = 0;
+        for (Long id : unicos) {
+            resultado[i++] = id;
+        }
+        return resultado;
+    }
+
+}
@@ -2,10 +2,18 @@ package progra2.DAO;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import progra2.Config.DatabaseConnection;
 import progra2.Models.Libro;
-import progra2.Models.FichaBibliografica;
 
 /**
  * DAO para operaciones CRUD de Libro en la base de datos.
@@ -17,69 +25,122 @@ public class LibroDAO implements GenericDAO<Libro> {
     private static final String INSERT_SQL =
             "INSERT INTO libro (titulo, autor, editorial, anio_edicion, ficha_bibliografica_id) VALUES (?, ?, ?, ?, ?)";
     
-    /** Query SQL para actualizar un libro existente. */
+    /** Cantidad máxima de filas enviadas en cada executeBatch(). */
+    private static final int BATCH_SIZE = 1000;
+    
+    /**
+     * Query SQL para actualizar un libro existente con control de concurrencia optimista:
+     * solo actualiza si la fila existe, no está eliminada y conserva la versión leída.
+     */
     private static final String UPDATE_SQL =
-            "UPDATE libro SET titulo = ?, autor = ?, editorial = ?, anio_edicion = ?, ficha_bibliografica_id = ? WHERE id = ?";
+            "UPDATE libro SET titulo = ?, autor = ?, editorial = ?, anio_edicion = ?, ficha_bibliografica_id = ?, " +
+            "version = version + 1 " +
+            "WHERE id = ? AND version = ? AND eliminado = FALSE";
     
-    /** Query SQL para eliminación lógica de un libro. */
+    /** Query SQL para eliminación lógica de un libro (solo si no está eliminado: conserva su eliminado_en). */
     private static final String DELETE_SQL =
-            "UPDATE libro SET eliminado = TRUE WHERE id = ?";
+            "UPDATE libro SET eliminado = TRUE, eliminado_en = CURRENT_TIMESTAMP, version = version + 1 " +
+            "WHERE id = ? AND eliminado = FALSE";
+    
+    /**
+     * JOIN con la ficha bibliográfica asociada, si no está eliminada.
+     * Las columnas de una ficha eliminada se devuelven como NULL: el libro
+     * queda solo con el ID de la ficha, como con el plan SIN_FICHA.
+     */
+    private static final String JOIN_FICHA =
+            "LEFT JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id AND f.eliminado = FALSE ";
     
     /** Query SQL para buscar un libro por ID con JOIN a ficha bibliográfica. */
     private static final String SELECT_BY_ID_SQL =
-            "SELECT l.id, l.eliminado, l.titulo, l.autor, l.editorial, l.anio_edicion, " +
-            "f.id AS ficha_id, f.eliminado AS ficha_eliminado, f.isbn, f.clasificacion_dewey, f.estanteria, f.idioma " +
-            "FROM libro l " +
-            "LEFT JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id " +
+            "SELECT " + LibroRowMapper.COLUMNAS + PlanCarga.CON_FICHA.getColumnasFicha() + " " +
+            "FROM libro l " + JOIN_FICHA +
             "WHERE l.id = ? AND l.eliminado = FALSE";
     
-    /** Query SQL para buscar libros por título (búsqueda parcial case-insensitive). */
-    private static final String SELECT_BY_TITULO_SQL =
-            "SELECT l.id, l.eliminado, l.titulo, l.autor, l.editorial, l.anio_edicion, " +
-            "f.id AS ficha_id, f.eliminado AS ficha_eliminado, f.isbn, f.clasificacion_dewey, f.estanteria, f.idioma " +
-            "FROM libro l " +
-            "LEFT JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id " +
-            "WHERE UPPER(l.titulo) LIKE UPPER(?) AND l.eliminado = FALSE";
-    
-    /** Query SQL para buscar libros por autor (búsqueda parcial case-insensitive). */
-    private static final String SELECT_BY_AUTOR_SQL =
-            "SELECT l.id, l.eliminado, l.titulo, l.autor, l.editorial, l.anio_edicion, " +
-            "f.id AS ficha_id, f.eliminado AS ficha_eliminado, f.isbn, f.clasificacion_dewey, f.estanteria, f.idioma " +
-            "FROM libro l " +
-            "LEFT JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id " +
-            "WHERE UPPER(l.autor) LIKE UPPER(?) AND l.eliminado = FALSE";
-    
-    /** Query SQL para buscar libros por editorial (búsqueda parcial case-insensitive). */
-    private static final String SELECT_BY_EDITORIAL_SQL =
-            "SELECT l.id, l.eliminado, l.titulo, l.autor, l.editorial, l.anio_edicion, " +
-            "f.id AS ficha_id, f.eliminado AS ficha_eliminado, f.isbn, f.clasificacion_dewey, f.estanteria, f.idioma " +
-            "FROM libro l " +
-            "LEFT JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id " +
-            "WHERE UPPER(l.editorial) LIKE UPPER(?) AND l.eliminado = FALSE";
-    
-    /** Query SQL para buscar libros por año de edición exacto. */
-    private static final String SELECT_BY_ANIO_SQL =
-            "SELECT l.id, l.eliminado, l.titulo, l.autor, l.editorial, l.anio_edicion, " +
-            "f.id AS ficha_id, f.eliminado AS ficha_eliminado, f.isbn, f.clasificacion_dewey, f.estanteria, f.idioma " +
-            "FROM libro l " +
-            "LEFT JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id " +
-            "WHERE l.anio_edicion = ? AND l.eliminado = FALSE";
-    
-    /** Query SQL para buscar libros por idioma (desde la ficha bibliográfica). */
-    private static final String SELECT_BY_IDIOMA_SQL =
-            "SELECT l.id, l.eliminado, l.titulo, l.autor, l.editorial, l.anio_edicion, " +
-            "f.id AS ficha_id, f.eliminado AS ficha_eliminado, f.isbn, f.clasificacion_dewey, f.estanteria, f.idioma " +
-            "FROM libro l " +
-            "LEFT JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id " +
-            "WHERE UPPER(f.idioma) = UPPER(?) AND l.eliminado = FALSE";
-    
-    /** Query SQL para obtener todos los libros no eliminados con sus fichas. */
-    private static final String SELECT_ALL_SQL =
-            "SELECT l.id, l.eliminado, l.titulo, l.autor, l.editorial, l.anio_edicion, " +
-            "f.id AS ficha_id, f.eliminado AS ficha_eliminado, f.isbn, f.clasificacion_dewey, f.estanteria, f.idioma " +
-            "FROM libro l " +
-            "LEFT JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id " +
-            "WHERE l.eliminado = FALSE";
+    /** Queries SQL para buscar libros por lista de IDs, una por forma de la lista IN (ver InClauseBuilder). */
+    private static final String[] SELECT_BY_IDS_SQL = InClauseBuilder.sqlPorForma(
+            "SELECT " + LibroRowMapper.COLUMNAS + PlanCarga.CON_FICHA.getColumnasFicha() + " " +
+            "FROM libro l " + JOIN_FICHA +
+            "WHERE l.eliminado = FALSE AND l.id ", "");
+    
+    /** Query SQL para buscar un libro por el ISBN canónico de su ficha (índice único uk_ficha_isbn13). */
+    private static final String SELECT_BY_ISBN13_SQL =
+            "SELECT " + LibroRowMapper.COLUMNAS + PlanCarga.CON_FICHA.getColumnasFicha() + " " +
+            "FROM ficha_bibliografica f " +
+            "JOIN libro l ON l.ficha_bibliografica_id = f.id " +
+            "WHERE f.isbn13 = ? AND f.eliminado = FALSE AND l.eliminado = FALSE";
+    
+    /** Queries SQL para buscar libros por título (búsqueda parcial case-insensitive), una por plan de carga. */
+    private static final String[] SELECT_BY_TITULO_SQL = sqlPorPlan("",
+            "WHERE UPPER(l.titulo) LIKE UPPER(?) AND l.eliminado = FALSE", false);
+    
+    /** Queries SQL para buscar libros por autor (búsqueda parcial case-insensitive), una por plan de carga. */
+    private static final String[] SELECT_BY_AUTOR_SQL = sqlPorPlan("",
+            "WHERE UPPER(l.autor) LIKE UPPER(?) AND l.eliminado = FALSE", false);
+    
+    /** Queries SQL para buscar libros por editorial (búsqueda parcial case-insensitive), una por plan de carga. */
+    private static final String[] SELECT_BY_EDITORIAL_SQL = sqlPorPlan("",
+            "WHERE UPPER(l.editorial) LIKE UPPER(?) AND l.eliminado = FALSE", false);
+    
+    /** Queries SQL para buscar libros por título con el índice FULLTEXT, ordenados por relevancia. */
+    private static final String[] SELECT_FT_BY_TITULO_SQL = sqlPorPlan(
+            ", MATCH(l.titulo) AGAINST (? IN BOOLEAN MODE) AS relevancia",
+            "WHERE MATCH(l.titulo) AGAINST (? IN BOOLEAN MODE) AND l.eliminado = FALSE " +
+            "ORDER BY relevancia DESC, l.id", false);
+    
+    /** Queries SQL para buscar libros por autor con el índice FULLTEXT, ordenados por relevancia. */
+    private static final String[] SELECT_FT_BY_AUTOR_SQL = sqlPorPlan(
+            ", MATCH(l.autor) AGAINST (? IN BOOLEAN MODE) AS relevancia",
+            "WHERE MATCH(l.autor) AGAINST (? IN BOOLEAN MODE) AND l.eliminado = FALSE " +
+            "ORDER BY relevancia DESC, l.id", false);
+    
+    /** Queries SQL para buscar libros por editorial con el índice FULLTEXT, ordenados por relevancia. */
+    private static final String[] SELECT_FT_BY_EDITORIAL_SQL = sqlPorPlan(
+            ", MATCH(l.editorial) AGAINST (? IN BOOLEAN MODE) AS relevancia",
+            "WHERE MATCH(l.editorial) AGAINST (? IN BOOLEAN MODE) AND l.eliminado = FALSE " +
+            "ORDER BY relevancia DESC, l.id", false);
+    
+    /** Longitud mínima de palabra indexada por FULLTEXT en InnoDB (innodb_ft_min_token_size). */
+    private static final int FULLTEXT_MIN_TOKEN = 3;
+    
+    /** Queries SQL para buscar libros por año de edición exacto, una por plan de carga. */
+    private static final String[] SELECT_BY_ANIO_SQL = sqlPorPlan("",
+            "WHERE l.anio_edicion = ? AND l.eliminado = FALSE", false);
+    
+    /**
+     * Queries SQL para buscar libros por idioma (desde la ficha bibliográfica), una por plan de carga.
+     * El filtro es sobre la ficha, por lo que el JOIN se mantiene también sin cargar la ficha.
+     */
+    private static final String[] SELECT_BY_IDIOMA_SQL = sqlPorPlan("",
+            "WHERE UPPER(f.idioma) = UPPER(?) AND l.eliminado = FALSE", true);
+    
+    /** Queries SQL para obtener todos los libros no eliminados, una por plan de carga. */
+    private static final String[] SELECT_ALL_SQL = sqlPorPlan("",
+            "WHERE l.eliminado = FALSE", false);
+    
+    /** Query SQL para recorrer todos los libros no eliminados con sus fichas en orden de ID (streaming). */
+    private static final String SELECT_ALL_ORDERED_SQL =
+            SELECT_ALL_SQL[PlanCarga.CON_FICHA.ordinal()] + " ORDER BY l.id";
+    
+    /** Nombres de las columnas de la exportación, en el orden del SELECT de EXPORT_SQL. */
+    public static final String[] COLUMNAS_EXPORTACION = {
+        "id", "titulo", "autor", "editorial", "anio_edicion",
+        "ficha_id", "isbn", "clasificacion_dewey", "estanteria", "idioma"
+    };
+    
+    /**
+     * Query SQL para exportar los libros no eliminados con los datos de su ficha, en orden de ID.
+     * Las columnas de una ficha eliminada se devuelven como NULL.
+     */
+    private static final String EXPORT_SQL =
+            "SELECT l.id, l.titulo, l.autor, l.editorial, l.anio_edicion, " +
+            "f.id, f.isbn, f.clasificacion_dewey, f.estanteria, f.idioma " +
+            "FROM libro l " + JOIN_FICHA +
+            "WHERE l.eliminado = FALSE ORDER BY l.id";
+    
+    /** Queries SQL para obtener una página de libros posteriores a un ID (paginación por clave), una por plan de carga. */
+    private static final String[] SELECT_PAGE_SQL = sqlPorPlan("",
+            "WHERE l.id > ? AND l.eliminado = FALSE " +
+            "ORDER BY l.id LIMIT ?", false);
     
     
     // ===================== Métodos con conexion propia =====================
@@ -96,6 +157,7 @@ public class LibroDAO implements GenericDAO<Libro> {
         try (Connection conn = DatabaseConnection.getConnection()) {
             insertar(libro, conn);
         }
+        DatabaseConnection.registrarEscritura();
     }
     
     /**
@@ -110,6 +172,7 @@ public class LibroDAO implements GenericDAO<Libro> {
         try (Connection conn = DatabaseConnection.getConnection()) {
             actualizar(libro, conn);
         }
+        DatabaseConnection.registrarEscritura();
     }
     
     /**
@@ -120,27 +183,61 @@ public class LibroDAO implements GenericDAO<Libro> {
      * @throws SQLException si hay error en la eliminación
      */
     @Override
-    public void eliminar(int id) throws SQLException {
+    public void eliminar(long id) throws SQLException {
         try (Connection conn = DatabaseConnection.getConnection()) {
             eliminar(id, conn);
         }
+        DatabaseConnection.registrarEscritura();
     }
     
     /**
      * Obtiene un libro por su ID, incluyendo su ficha bibliográfica si tiene.
-     * Crea su propia conexión y la cierra automáticamente.
+     * Crea su propia conexión y la cierra automáticamente. Lee siempre del
+     * primario (no de una réplica): estas lecturas alimentan la caché por ID.
      * 
      * @param id identificador del libro
      * @return el libro encontrado o null si no existe
      * @throws SQLException si hay error en la consulta
      */
     @Override
-    public Libro getById(int id) throws SQLException {
+    public Libro getById(long id) throws SQLException {
         try (Connection conn = DatabaseConnection.getConnection()) {
             return getById(id, conn);
         }
     }
     
+    /**
+     * Obtiene varios libros por sus IDs en pocas consultas.
+     * Crea su propia conexión y la cierra automáticamente. Lee siempre del
+     * primario (no de una réplica): estas lecturas alimentan la caché por ID.
+     * 
+     * @param ids IDs a buscar (se ignoran nulos y repetidos)
+     * @return libros encontrados indexados por ID, en el orden de los IDs solicitados
+     * @throws SQLException si hay error en la consulta
+     */
+    public Map<Long, Libro> getByIds(Collection<Long> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            return getByIds(ids, conn);
+        }
+    }
+    
+    /**
+     * Obtiene el libro cuya ficha tiene el ISBN canónico indicado.
+     * Crea su propia conexión y la cierra automáticamente.
+     * 
+     * @param isbn13 ISBN-13 canónico (ver ISBNUtils.parse)
+     * @return el libro encontrado con su ficha o null si no existe
+     * @throws SQLException si hay error en la consulta
+     */
+    public Libro getByIsbn(long isbn13) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            return getByIsbn(isbn13, conn);
+        }
+    }
+    
     /**
      * Obtiene todos los libros no eliminados con sus fichas bibliográficas.
      * Crea su propia conexión y la cierra automáticamente.
@@ -150,8 +247,71 @@ public class LibroDAO implements GenericDAO<Libro> {
      */
     @Override
     public List<Libro> getAll() throws SQLException {
-        try (Connection conn = DatabaseConnection.getConnection()) {
-            return getAll(conn);
+        return getAll(PlanCarga.CON_FICHA);
+    }
+    
+    /**
+     * Obtiene todos los libros no eliminados con el plan de carga indicado.
+     * Crea su propia conexión y la cierra automáticamente.
+     * 
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargar solo su ID
+     * @return lista de libros
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getAll(PlanCarga plan) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            return getAll(plan, conn);
+        }
+    }
+    
+    /**
+     * Obtiene una página de libros no eliminados cuyo ID sea mayor a afterId,
+     * ordenados por ID. Crea su propia conexión y la cierra automáticamente.
+     * 
+     * @param afterId último ID de la página anterior (0 para la primera página)
+     * @param pageSize cantidad máxima de libros a devolver
+     * @return página de libros (vacía si no hay más)
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getPage(long afterId, int pageSize) throws SQLException {
+        return getPage(afterId, pageSize, PlanCarga.CON_FICHA);
+    }
+    
+    /**
+     * Obtiene una página de libros con el plan de carga indicado.
+     * Crea su propia conexión y la cierra automáticamente.
+     * 
+     * @param afterId último ID de la página anterior (0 para la primera página)
+     * @param pageSize cantidad máxima de libros a devolver
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargar solo su ID
+     * @return página de libros (vacía si no hay más)
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getPage(long afterId, int pageSize, PlanCarga plan) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            return getPage(afterId, pageSize, plan, conn);
+        }
+    }
+    
+    /**
+     * Recorre todos los libros no eliminados como un Stream evaluado de forma perezosa.
+     * Las filas se leen del servidor a medida que se consumen, por lo que el uso de
+     * memoria no depende del tamaño de la tabla.
+     * Obtiene su propia conexión, que se libera al cerrar el Stream:
+     * debe usarse siempre con try-with-resources.
+     * 
+     * @param fetchSize filas a traer por viaje al servidor (cursor del servidor);
+     *                  0 o negativo para streaming fila por fila
+     * @return Stream de libros que debe cerrarse al terminar
+     * @throws SQLException si hay error al abrir el cursor
+     */
+    public Stream<Libro> stream(int fetchSize) throws SQLException {
+        Connection conn = DatabaseConnection.getReadConnection();
+        try {
+            return stream(fetchSize, conn).onClose(() -> closeQuietly(conn));
+        } catch (SQLException | RuntimeException e) {
+            conn.close();
+            throw e;
         }
     }
     
@@ -174,24 +334,60 @@ public class LibroDAO implements GenericDAO<Libro> {
         }
     }
     
+    /**
+     * Inserta varios libros usando JDBC batching sobre una conexión externa.
+     * Las filas se envían en lotes de hasta BATCH_SIZE y los IDs generados
+     * se asignan a cada libro en el mismo orden de la lista.
+     * Las fichas asociadas deben estar insertadas previamente (con ID asignado).
+     * No cierra la conexión ni confirma la transacción (debe hacerlo el llamador).
+     * 
+     * @param libros los libros a insertar
+     * @param conn conexión de base de datos externa
+     * @throws SQLException si hay error en la inserción o en la obtención de IDs
+     */
+    public void insertarBatch(List<Libro> libros, Connection conn) throws SQLException {
+        if (libros.isEmpty()) {
+            return;
+        }
+        
+        try (PreparedStatement stmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+            
+            for (int inicio = 0; inicio < libros.size(); inicio += BATCH_SIZE) {
+                List<Libro> lote = libros.subList(inicio, Math.min(inicio + BATCH_SIZE, libros.size()));
+                for (Libro libro : lote) {
+                    setLibroParameters(stmt, libro);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                setGeneratedIds(stmt, lote);
+            }
+        }
+    }
+    
     /**
      * Actualiza un libro usando una conexión externa (para transacciones).
+     * La existencia y la versión se verifican en el mismo UPDATE: si no se afecta
+     * ninguna fila, el libro no existe, fue eliminado o lo modificó otro usuario
+     * desde que se leyó. Si se actualiza, incrementa la versión del libro.
      * No cierra la conexión (debe ser manejada por el llamador).
      * 
-     * @param libro el libro con datos actualizados
+     * @param libro el libro con datos actualizados y la versión leída
      * @param conn conexión de base de datos externa
-     * @throws SQLException si hay error en la actualización
+     * @throws SQLException si hay error en la actualización o la versión no coincide
      */
     public void actualizar(Libro libro, Connection conn) throws SQLException {
         try (PreparedStatement stmt = conn.prepareStatement(UPDATE_SQL)) {
             
             setLibroParameters(stmt, libro);
-            stmt.setInt(6, libro.getId());
+            stmt.setLong(6, libro.getId());
+            stmt.setInt(7, libro.getVersion());
             
             int rowsAffected = stmt.executeUpdate();
             if (rowsAffected == 0) {
-                throw new SQLException("No se pudo actualizar libro con ID: " + libro.getId());
+                throw new SQLException("No se pudo actualizar libro con ID: " + libro.getId()
+                        + " (no existe o fue modificado por otro usuario)");
             }
+            libro.setVersion(libro.getVersion() + 1);
         }
     }
     
@@ -203,10 +399,10 @@ public class LibroDAO implements GenericDAO<Libro> {
      * @param conn conexión de base de datos externa
      * @throws SQLException si hay error en la eliminación
      */
-    public void eliminar(int id, Connection conn) throws SQLException {
+    public void eliminar(long id, Connection conn) throws SQLException {
         try (PreparedStatement stmt = conn.prepareStatement(DELETE_SQL)) {
             
-            stmt.setInt(1, id);
+            stmt.setLong(1, id);
             
             int rows = stmt.executeUpdate();
             if (rows == 0) {
@@ -228,14 +424,14 @@ public class LibroDAO implements GenericDAO<Libro> {
      * @return el libro encontrado con su ficha o null si no existe
      * @throws SQLException si hay error en la consulta
      */
-    public Libro getById(int id, Connection conn) throws SQLException {
+    public Libro getById(long id, Connection conn) throws SQLException {
         try (PreparedStatement stmt = conn.prepareStatement(SELECT_BY_ID_SQL)) {
             
-            stmt.setInt(1, id);
+            stmt.setLong(1, id);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    return mapResultSetToLibro(rs);
+                    return LibroRowMapper.para(PlanCarga.CON_FICHA).mapRow(rs);
                 }
             }
         }
@@ -243,75 +439,198 @@ public class LibroDAO implements GenericDAO<Libro> {
     }
     
     /**
-     * Busca libros cuyo título contenga el texto especificado (case-insensitive).
+     * Obtiene varios libros por sus IDs usando una conexión externa.
+     * Los IDs se consultan en bloques de hasta {@value InClauseBuilder#MAX_IDS_POR_CONSULTA}
+     * con listas IN de tamaño fijo (ver InClauseBuilder), evitando una consulta por ID.
+     * Los IDs inexistentes o eliminados no aparecen en el resultado.
+     * No cierra la conexión (debe ser manejada por el llamador).
      * 
-     * @param titulo texto a buscar en el título
-     * @return lista de libros que coinciden
+     * @param ids IDs a buscar (se ignoran nulos y repetidos)
+     * @param conn conexión de base de datos externa
+     * @return libros encontrados indexados por ID, en el orden de los IDs solicitados
      * @throws SQLException si hay error en la consulta
      */
-    public List<Libro> getByTitulo(String titulo) throws SQLException {
-        List<Libro> libros = new ArrayList<>();
+    public Map<Long, Libro> getByIds(Collection<Long> ids, Connection conn) throws SQLException {
+        long[] unicos = InClauseBuilder.idsUnicos(ids);
+        Map<Long, Libro> encontrados = new HashMap<>(unicos.length * 2);
         
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(SELECT_BY_TITULO_SQL)) {
-            
-            stmt.setString(1, "%" + titulo + "%");
+        for (int desde = 0; desde < unicos.length; ) {
+            int forma = InClauseBuilder.indiceForma(unicos.length - desde);
+            int tamanio = InClauseBuilder.tamanioForma(forma);
+            int cantidad = Math.min(tamanio, unicos.length - desde);
             
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    libros.add(mapResultSetToLibro(rs));
+            try (PreparedStatement stmt = conn.prepareStatement(SELECT_BY_IDS_SQL[forma])) {
+                InClauseBuilder.bind(stmt, unicos, desde, cantidad, tamanio);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Libro libro = LibroRowMapper.para(PlanCarga.CON_FICHA).mapRow(rs);
+                        encontrados.put(libro.getId(), libro);
+                    }
                 }
             }
+            desde += cantidad;
         }
-        return libros;
+        
+        // Respetar el orden de los IDs solicitados
+        Map<Long, Libro> resultado = new LinkedHashMap<>();
+        for (long id : unicos) {
+            Libro libro = encontrados.get(id);
+            if (libro != null) {
+                resultado.put(id, libro);
+            }
+        }
+        return resultado;
     }
     
     /**
-     * Busca libros cuyo autor contenga el texto especificado (case-insensitive).
+     * Obtiene el libro cuya ficha tiene el ISBN canónico indicado, usando una conexión externa.
+     * Parte del índice único de isbn13 de la ficha y llega al libro por el índice
+     * único de ficha_bibliografica_id: dos lecturas puntuales, sin recorrer tablas.
+     * No cierra la conexión (debe ser manejada por el llamador).
      * 
-     * @param autor texto a buscar en el autor
-     * @return lista de libros que coinciden
+     * @param isbn13 ISBN-13 canónico (ver ISBNUtils.parse)
+     * @param conn conexión de base de datos externa
+     * @return el libro encontrado con su ficha o null si no existe
      * @throws SQLException si hay error en la consulta
      */
-    public List<Libro> getByAutor(String autor) throws SQLException {
-        List<Libro> libros = new ArrayList<>();
-        
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(SELECT_BY_AUTOR_SQL)) {
+    public Libro getByIsbn(long isbn13, Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_BY_ISBN13_SQL)) {
             
-            stmt.setString(1, "%" + autor + "%");
+            stmt.setLong(1, isbn13);
             
             try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    libros.add(mapResultSetToLibro(rs));
+                if (rs.next()) {
+                    return LibroRowMapper.para(PlanCarga.CON_FICHA).mapRow(rs);
                 }
             }
         }
-        return libros;
+        return null;
+    }
+    
+    /**
+     * Busca libros por título con el modo indicado.
+     * En modo FULLTEXT, si el texto no contiene ninguna palabra indexable
+     * (todas de menos de 3 caracteres), se usa LIKE como alternativa.
+     * 
+     * @param titulo texto a buscar en el título
+     * @param modo modo de búsqueda (FULLTEXT ordena por relevancia)
+     * @return lista de libros que coinciden
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByTitulo(String titulo, ModoBusqueda modo) throws SQLException {
+        return getByTitulo(titulo, modo, PlanCarga.CON_FICHA);
+    }
+    
+    /**
+     * Busca libros por título con el modo y el plan de carga indicados.
+     * 
+     * @param titulo texto a buscar en el título
+     * @param modo modo de búsqueda (FULLTEXT ordena por relevancia)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargar solo su ID
+     * @return lista de libros que coinciden
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByTitulo(String titulo, ModoBusqueda modo, PlanCarga plan) throws SQLException {
+        String consulta = modo == ModoBusqueda.FULLTEXT ? construirConsultaFullText(titulo) : null;
+        return consulta != null
+                ? listar(SELECT_FT_BY_TITULO_SQL[plan.ordinal()], plan, consulta, consulta)
+                : listar(SELECT_BY_TITULO_SQL[plan.ordinal()], plan, "%" + titulo + "%");
+    }
+    
+    /**
+     * Busca libros por autor con el modo indicado.
+     * En modo FULLTEXT, si el texto no contiene ninguna palabra indexable
+     * (todas de menos de 3 caracteres), se usa LIKE como alternativa.
+     * 
+     * @param autor texto a buscar en el autor
+     * @param modo modo de búsqueda (FULLTEXT ordena por relevancia)
+     * @return lista de libros que coinciden
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByAutor(String autor, ModoBusqueda modo) throws SQLException {
+        return getByAutor(autor, modo, PlanCarga.CON_FICHA);
+    }
+    
+    /**
+     * Busca libros por autor con el modo y el plan de carga indicados.
+     * 
+     * @param autor texto a buscar en el autor
+     * @param modo modo de búsqueda (FULLTEXT ordena por relevancia)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargar solo su ID
+     * @return lista de libros que coinciden
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByAutor(String autor, ModoBusqueda modo, PlanCarga plan) throws SQLException {
+        String consulta = modo == ModoBusqueda.FULLTEXT ? construirConsultaFullText(autor) : null;
+        return consulta != null
+                ? listar(SELECT_FT_BY_AUTOR_SQL[plan.ordinal()], plan, consulta, consulta)
+                : listar(SELECT_BY_AUTOR_SQL[plan.ordinal()], plan, "%" + autor + "%");
+    }
+    
+    /**
+     * Busca libros por editorial con el modo indicado.
+     * En modo FULLTEXT, si el texto no contiene ninguna palabra indexable
+     * (todas de menos de 3 caracteres), se usa LIKE como alternativa.
+     * 
+     * @param editorial texto a buscar en la editorial
+     * @param modo modo de búsqueda (FULLTEXT ordena por relevancia)
+     * @return lista de libros que coinciden
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByEditorial(String editorial, ModoBusqueda modo) throws SQLException {
+        return getByEditorial(editorial, modo, PlanCarga.CON_FICHA);
+    }
+    
+    /**
+     * Busca libros por editorial con el modo y el plan de carga indicados.
+     * 
+     * @param editorial texto a buscar en la editorial
+     * @param modo modo de búsqueda (FULLTEXT ordena por relevancia)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargar solo su ID
+     * @return lista de libros que coinciden
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByEditorial(String editorial, ModoBusqueda modo, PlanCarga plan) throws SQLException {
+        String consulta = modo == ModoBusqueda.FULLTEXT ? construirConsultaFullText(editorial) : null;
+        return consulta != null
+                ? listar(SELECT_FT_BY_EDITORIAL_SQL[plan.ordinal()], plan, consulta, consulta)
+                : listar(SELECT_BY_EDITORIAL_SQL[plan.ordinal()], plan, "%" + editorial + "%");
+    }
+    
+    /**
+     * Busca libros cuyo título contenga el texto especificado (case-insensitive).
+     * Búsqueda por subcadena con LIKE (modo {@link ModoBusqueda#LIKE}).
+     * 
+     * @param titulo texto a buscar en el título
+     * @return lista de libros que coinciden
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByTitulo(String titulo) throws SQLException {
+        return getByTitulo(titulo, ModoBusqueda.LIKE, PlanCarga.CON_FICHA);
+    }
+    
+    /**
+     * Busca libros cuyo autor contenga el texto especificado (case-insensitive).
+     * Búsqueda por subcadena con LIKE (modo {@link ModoBusqueda#LIKE}).
+     * 
+     * @param autor texto a buscar en el autor
+     * @return lista de libros que coinciden
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByAutor(String autor) throws SQLException {
+        return getByAutor(autor, ModoBusqueda.LIKE, PlanCarga.CON_FICHA);
     }
     
     /**
      * Busca libros cuya editorial contenga el texto especificado (case-insensitive).
+     * Búsqueda por subcadena con LIKE (modo {@link ModoBusqueda#LIKE}).
      * 
      * @param editorial texto a buscar en la editorial
      * @return lista de libros que coinciden
      * @throws SQLException si hay error en la consulta
      */
     public List<Libro> getByEditorial(String editorial) throws SQLException {
-        List<Libro> libros = new ArrayList<>();
-
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(SELECT_BY_EDITORIAL_SQL)) {
-
-            stmt.setString(1, "%" + editorial + "%");
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    libros.add(mapResultSetToLibro(rs));
-                }
-            }
-        }
-        return libros;
+        return getByEditorial(editorial, ModoBusqueda.LIKE, PlanCarga.CON_FICHA);
     }
     
     /**
@@ -322,16 +641,28 @@ public class LibroDAO implements GenericDAO<Libro> {
      * @throws SQLException si hay error en la consulta
      */
     public List<Libro> getByAnioEdicion(int anio) throws SQLException {
+        return getByAnioEdicion(anio, PlanCarga.CON_FICHA);
+    }
+    
+    /**
+     * Busca libros publicados en un año específico con el plan de carga indicado.
+     * 
+     * @param anio año de edición a buscar
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargar solo su ID
+     * @return lista de libros publicados en ese año
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByAnioEdicion(int anio, PlanCarga plan) throws SQLException {
         List<Libro> libros = new ArrayList<>();
         
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(SELECT_BY_ANIO_SQL)) {
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(SELECT_BY_ANIO_SQL[plan.ordinal()])) {
             
             stmt.setInt(1, anio);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    libros.add(mapResultSetToLibro(rs));
+                    libros.add(LibroRowMapper.para(plan).mapRow(rs));
                 }
             }
         }
@@ -346,16 +677,56 @@ public class LibroDAO implements GenericDAO<Libro> {
      * @throws SQLException si hay error en la consulta
      */
     public List<Libro> getByIdioma(String idioma) throws SQLException {
+        return getByIdioma(idioma, PlanCarga.CON_FICHA);
+    }
+    
+    /**
+     * Busca libros por idioma con el plan de carga indicado.
+     * 
+     * @param idioma idioma a buscar (comparación exacta case-insensitive)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargar solo su ID
+     * @return lista de libros en ese idioma
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getByIdioma(String idioma, PlanCarga plan) throws SQLException {
+        return listar(SELECT_BY_IDIOMA_SQL[plan.ordinal()], plan, idioma);
+    }
+    
+    /**
+     * Busca libros que cumplan simultáneamente todos los criterios indicados,
+     * en una única consulta. Crea su propia conexión y la cierra automáticamente.
+     * 
+     * @param criterios criterios de búsqueda, orden y límite
+     * @return lista de libros que cumplen los criterios
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> buscar(LibroSearchCriteria criterios) throws SQLException {
+        try (Connection conn = DatabaseConnection.getReadConnection()) {
+            return buscar(criterios, conn);
+        }
+    }
+    
+    /**
+     * Busca libros por criterios combinados usando una conexión externa.
+     * El SQL se genera con {@link LibroQueryBuilder}, que produce el mismo texto
+     * para criterios con la misma forma y permite reutilizar el statement preparado.
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param criterios criterios de búsqueda, orden y límite
+     * @param conn conexión de base de datos externa
+     * @return lista de libros que cumplen los criterios
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> buscar(LibroSearchCriteria criterios, Connection conn) throws SQLException {
         List<Libro> libros = new ArrayList<>();
         
-        try (Connection conn = DatabaseConnection.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(SELECT_BY_IDIOMA_SQL)) {
+        try (PreparedStatement stmt = conn.prepareStatement(LibroQueryBuilder.sql(criterios))) {
             
-            stmt.setString(1, idioma);
+            LibroQueryBuilder.bind(stmt, criterios);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    libros.add(mapResultSetToLibro(rs));
+                    libros.add(LibroRowMapper.para(criterios.getPlanCarga()).mapRow(rs));
                 }
             }
         }
@@ -371,18 +742,149 @@ public class LibroDAO implements GenericDAO<Libro> {
      * @throws SQLException si hay error en la consulta
      */
     public List<Libro> getAll(Connection conn) throws SQLException {
+        return getAll(PlanCarga.CON_FICHA, conn);
+    }
+    
+    /**
+     * Obtiene todos los libros con el plan de carga indicado usando una conexión externa.
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargar solo su ID
+     * @param conn conexión de base de datos externa
+     * @return lista de todos los libros no eliminados
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getAll(PlanCarga plan, Connection conn) throws SQLException {
         List<Libro> libros = new ArrayList<>();
           
         try (Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(SELECT_ALL_SQL)) {
+             ResultSet rs = stmt.executeQuery(SELECT_ALL_SQL[plan.ordinal()])) {
             
             while (rs.next()) {
-                libros.add(mapResultSetToLibro(rs));
+                libros.add(LibroRowMapper.para(plan).mapRow(rs));
+            }
+        }
+        return libros;
+    }
+    
+    /**
+     * Obtiene una página de libros usando una conexión externa.
+     * Usa paginación por clave (WHERE l.id > ? ORDER BY l.id LIMIT ?), que
+     * recorre el índice primario sin el costo creciente de OFFSET.
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param afterId último ID de la página anterior (0 para la primera página)
+     * @param pageSize cantidad máxima de libros a devolver
+     * @param conn conexión de base de datos externa
+     * @return página de libros (vacía si no hay más)
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getPage(long afterId, int pageSize, Connection conn) throws SQLException {
+        return getPage(afterId, pageSize, PlanCarga.CON_FICHA, conn);
+    }
+    
+    /**
+     * Obtiene una página de libros con el plan de carga indicado usando una conexión externa.
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param afterId último ID de la página anterior (0 para la primera página)
+     * @param pageSize cantidad máxima de libros a devolver
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargar solo su ID
+     * @param conn conexión de base de datos externa
+     * @return página de libros (vacía si no hay más)
+     * @throws SQLException si hay error en la consulta
+     */
+    public List<Libro> getPage(long afterId, int pageSize, PlanCarga plan, Connection conn) throws SQLException {
+        List<Libro> libros = new ArrayList<>(pageSize);
+        
+        try (PreparedStatement stmt = conn.prepareStatement(SELECT_PAGE_SQL[plan.ordinal()])) {
+            
+            stmt.setLong(1, afterId);
+            stmt.setInt(2, pageSize);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    libros.add(LibroRowMapper.para(plan).mapRow(rs));
+                }
             }
         }
         return libros;
     }
     
+    /**
+     * Recorre todos los libros no eliminados como un Stream perezoso sobre una conexión externa.
+     * Con fetchSize positivo usa un cursor del servidor (useCursorFetch);
+     * con 0 o negativo usa el streaming fila por fila de MySQL.
+     * Cerrar el Stream cierra el ResultSet y el statement, pero no la conexión.
+     * Mientras el Stream esté abierto, la conexión no puede usarse para otras consultas.
+     * 
+     * @param fetchSize filas a traer por viaje al servidor
+     * @param conn conexión de base de datos externa
+     * @return Stream de libros que debe cerrarse al terminar
+     * @throws SQLException si hay error al abrir el cursor
+     */
+    public Stream<Libro> stream(int fetchSize, Connection conn) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(SELECT_ALL_ORDERED_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        try {
+            stmt.setFetchSize(fetchSize > 0 ? fetchSize : Integer.MIN_VALUE);
+            ResultSet rs = stmt.executeQuery();
+            
+            Spliterator<Libro> cursor = new Spliterators.AbstractSpliterator<Libro>(
+                    Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Libro> action) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        action.accept(LibroRowMapper.para(PlanCarga.CON_FICHA).mapRow(rs));
+                        return true;
+                    } catch (SQLException e) {
+                        throw new IllegalStateException("Error al leer el cursor de libros: " + e.getMessage(), e);
+                    }
+                }
+            };
+            
+            return StreamSupport.stream(cursor, false).onClose(() -> {
+                closeQuietly(rs);
+                closeQuietly(stmt);
+            });
+        } catch (SQLException | RuntimeException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+    
+    
+    /**
+     * Recorre todos los libros no eliminados con los datos de su ficha, pasando
+     * cada fila del ResultSet al handler sin crear objetos Libro.
+     * Las columnas se leen en el orden de {@link #COLUMNAS_EXPORTACION}.
+     * Con fetchSize positivo usa un cursor del servidor (useCursorFetch);
+     * con 0 o negativo usa el streaming fila por fila de MySQL.
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param fetchSize filas a traer por viaje al servidor
+     * @param handler destino de cada fila
+     * @param conn conexión de base de datos externa
+     * @return cantidad de filas recorridas
+     * @throws Exception si hay error en la consulta o el handler falla
+     */
+    public long exportar(int fetchSize, RowHandler handler, Connection conn) throws Exception {
+        try (PreparedStatement stmt = conn.prepareStatement(EXPORT_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize > 0 ? fetchSize : Integer.MIN_VALUE);
+            long filas = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    handler.procesar(rs);
+                    filas++;
+                }
+            }
+            return filas;
+        }
+    }
     
     // ========================== Métodos Auxiliares ==========================
     
@@ -406,9 +908,9 @@ public class LibroDAO implements GenericDAO<Libro> {
             stmt.setNull(4, java.sql.Types.INTEGER);
         }
         
-        // Manejar ficha_bibliografica_id nullable
-        if (libro.getFichaBibliografica() != null && libro.getFichaBibliografica().getId() > 0) {
-            stmt.setInt(5, libro.getFichaBibliografica().getId());
+        // Manejar ficha_bibliografica_id nullable (sin forzar la carga de una ficha diferida)
+        if (libro.getFichaId() > 0) {
+            stmt.setLong(5, libro.getFichaId());
         } else {
             stmt.setNull(5, java.sql.Types.BIGINT);
         }
@@ -424,7 +926,7 @@ public class LibroDAO implements GenericDAO<Libro> {
     private void setGeneratedId(PreparedStatement stmt, Libro libro) throws SQLException {
         try (ResultSet keys = stmt.getGeneratedKeys()) {
             if (keys.next()) {
-                libro.setId(keys.getInt(1));
+                libro.setId(keys.getLong(1));
             } else {
                 throw new SQLException("No se pudo obtener el ID generado del libro.");
             }
@@ -432,45 +934,122 @@ public class LibroDAO implements GenericDAO<Libro> {
     }
     
     /**
-     * Mapea un ResultSet a un objeto Libro con su FichaBibliografica asociada.
-     * Si el libro no tiene ficha asociada, el campo será null.
-     * Maneja correctamente los valores nullable del ResultSet.
+     * Obtiene los IDs generados por un executeBatch() y los asigna a los libros del lote.
      * 
-     * @param rs el ResultSet posicionado en una fila válida
-     * @return objeto Libro completamente poblado
-     * @throws SQLException si hay error al leer los datos del ResultSet
+     * @param stmt el PreparedStatement que ejecutó el lote
+     * @param lote los libros insertados, en el orden en que se agregaron al lote
+     * @throws SQLException si la cantidad de IDs generados no coincide con el lote
      */
-    private Libro mapResultSetToLibro(ResultSet rs) throws SQLException {
-        FichaBibliografica ficha = null;
-        
-        // Solo crear ficha si existe en la BD
-        int fichaId = rs.getInt("ficha_id");
-        if (!rs.wasNull() && fichaId > 0) {
-            ficha = new FichaBibliografica(
-                rs.getString("isbn"),
-                rs.getString("clasificacion_dewey"),
-                rs.getString("estanteria"),
-                rs.getString("idioma"),
-                fichaId,
-                rs.getBoolean("ficha_eliminado")
-            );
+    private void setGeneratedIds(PreparedStatement stmt, List<Libro> lote) throws SQLException {
+        try (ResultSet keys = stmt.getGeneratedKeys()) {
+            int i = 0;
+            while (keys.next() && i < lote.size()) {
+                lote.get(i++).setId(keys.getLong(1));
+            }
+            if (i != lote.size()) {
+                throw new SQLException("No se pudieron obtener los IDs generados del lote de libros: se esperaban "
+                        + lote.size() + " y se obtuvieron " + i);
+            }
+        }
+    }
+    
+    /**
+     * Genera el SQL de una consulta de libros para cada plan de carga:
+     * columnas del libro, columnas de la ficha según el plan (en el orden que
+     * espera LibroRowMapper) y el resto de la consulta.
+     * Con SIN_FICHA se omite el JOIN, salvo que la condición filtre por columnas de la ficha.
+     * 
+     * @param columnasExtra columnas adicionales (con coma inicial) o vacío
+     * @param resto cláusulas WHERE, ORDER BY y LIMIT
+     * @param filtraPorFicha true si la condición usa columnas de la ficha (alias f)
+     * @return SQL por plan, indexado por PlanCarga.ordinal()
+     */
+    private static String[] sqlPorPlan(String columnasExtra, String resto, boolean filtraPorFicha) {
+        PlanCarga[] planes = PlanCarga.values();
+        String[] sqls = new String[planes.length];
+        for (PlanCarga plan : planes) {
+            boolean conJoin = plan == PlanCarga.CON_FICHA || filtraPorFicha;
+            sqls[plan.ordinal()] = "SELECT " + LibroRowMapper.COLUMNAS + plan.getColumnasFicha() + columnasExtra + " " +
+                    "FROM libro l " + (conJoin ? JOIN_FICHA : "") + resto;
         }
+        return sqls;
+    }
+    
+    /**
+     * Ejecuta una consulta de libros con parámetros de texto en su propia conexión.
+     * En las búsquedas FULLTEXT el término se pasa dos veces:
+     * para calcular la relevancia y para filtrar.
+     * 
+     * @param sql consulta a ejecutar
+     * @param plan plan de carga con el que se generó la consulta
+     * @param parametros valores de los parámetros, en orden
+     * @return lista de libros en el orden de la consulta
+     * @throws SQLException si hay error en la consulta
+     */
+    private List<Libro> listar(String sql, PlanCarga plan, String... parametros) throws SQLException {
+        List<Libro> libros = new ArrayList<>();
         
-        // Manejar anio_edicion nullable
-        Integer anioEdicion = null;
-        int anioValue = rs.getInt("anio_edicion");
-        if (!rs.wasNull()) {
-            anioEdicion = anioValue;
+        try (Connection conn = DatabaseConnection.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            for (int i = 0; i < parametros.length; i++) {
+                stmt.setString(i + 1, parametros[i]);
+            }
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    libros.add(LibroRowMapper.para(plan).mapRow(rs));
+                }
+            }
+        }
+        return libros;
+    }
+    
+    /**
+     * Convierte el texto ingresado por el usuario en una expresión FULLTEXT
+     * en modo booleano: cada palabra de al menos FULLTEXT_MIN_TOKEN caracteres
+     * se vuelve obligatoria y admite prefijos (+palabra*).
+     * Los operadores booleanos del texto original se descartan.
+     * 
+     * @param texto texto a buscar
+     * @return expresión booleana, o null si no hay palabras indexables
+     */
+    private static String construirConsultaFullText(String texto) {
+        if (texto == null) {
+            return null;
         }
         
-        return new Libro(
-            rs.getInt("id"),
-            rs.getString("titulo"),
-            rs.getString("autor"),
-            rs.getString("editorial"),
-            anioEdicion,
-            ficha
-        );
+        StringBuilder consulta = new StringBuilder();
+        int inicio = -1;
+        for (int i = 0; i <= texto.length(); i++) {
+            boolean esParteDePalabra = i < texto.length() && Character.isLetterOrDigit(texto.charAt(i));
+            if (esParteDePalabra && inicio < 0) {
+                inicio = i;
+            } else if (!esParteDePalabra && inicio >= 0) {
+                if (i - inicio >= FULLTEXT_MIN_TOKEN) {
+                    if (consulta.length() > 0) {
+                        consulta.append(' ');
+                    }
+                    consulta.append('+').append(texto, inicio, i).append('*');
+                }
+                inicio = -1;
+            }
+        }
+        return consulta.length() > 0 ? consulta.toString() : null;
+    }
+    
+    /**
+     * Cierra un recurso JDBC ignorando errores.
+     * Usado en los callbacks onClose() de los Streams, que no admiten excepciones verificadas.
+     * 
+     * @param recurso el recurso a cerrar
+     */
+    private static void closeQuietly(AutoCloseable recurso) {
+        try {
+            recurso.close();
+        } catch (Exception e) {
+            System.err.println("Error al cerrar recurso: " + e.getMessage());
+        }
     }
     
 }
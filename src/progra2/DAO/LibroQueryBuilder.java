@@ -0,0 +1,170 @@
+package progra2.DAO;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Constructor de consultas de búsqueda de libros a partir de {@link LibroSearchCriteria}.
+ * Compone una única cláusula WHERE parametrizada con los criterios presentes.
+ *
+ * El texto SQL depende solo de la "forma" de los criterios (qué criterios tienen
+ * valor, el orden y si hay límite), no de sus valores. Las formas ya generadas se
+ * guardan en una caché acotada, de modo que búsquedas con la misma forma producen
+ * exactamente el mismo SQL y reutilizan el PreparedStatement cacheado por el pool.
+ */
+final class LibroQueryBuilder {
+
+    /** Inicio de la consulta con las columnas del libro, comunes a ambos planes de carga (ver LibroRowMapper). */
+    private static final String SELECT_LIBRO = "SELECT " + LibroRowMapper.COLUMNAS;
+
+    /** JOIN con la ficha bibliográfica asociada, si no está eliminada (como en LibroDAO). */
+    private static final String JOIN_FICHA =
+            " LEFT JOIN ficha_bibliografica f ON l.ficha_bibliografica_id = f.id AND f.eliminado = FALSE";
+
+    /** Cantidad máxima de formas de consulta cacheadas. */
+    private static final int MAX_FORMAS = 64;
+
+    /** Bits que describen qué criterios están presentes en una forma. */
+    private static final int TITULO = 1;
+    private static final int AUTOR = 1 << 1;
+    private static final int EDITORIAL = 1 << 2;
+    private static final int IDIOMA = 1 << 3;
+    private static final int ANIO_DESDE = 1 << 4;
+    private static final int ANIO_HASTA = 1 << 5;
+    private static final int LIMITE = 1 << 6;
+    private static final int DESCENDENTE = 1 << 7;
+    private static final int SIN_FICHA = 1 << 8;
+    /** Desplazamiento del ordinal del campo de orden dentro de la forma. */
+    private static final int ORDEN_SHIFT = 9;
+
+    /** Caché LRU de SQL generado, indexada por forma. */
+    private static final Map<Integer, String> CACHE_SQL = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > MAX_FORMAS;
+        }
+    };
+
+    /**
+     * Constructor privado para prevenir instanciación.
+     *
+     * @throws UnsupportedOperationException siempre que se intente instanciar
+     */
+    private LibroQueryBuilder() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * Obtiene el SQL para los criterios indicados, desde la caché si la forma ya fue generada.
+     *
+     * @param criterios criterios de búsqueda
+     * @return texto SQL parametrizado
+     */
+    static String sql(LibroSearchCriteria criterios) {
+        int forma = forma(criterios);
+        synchronized (CACHE_SQL) {
+            String sql = CACHE_SQL.get(forma);
+            if (sql == null) {
+                sql = construir(forma, criterios.getOrden());
+                CACHE_SQL.put(forma, sql);
+            }
+            return sql;
+        }
+    }
+
+    /**
+     * Asigna los valores de los criterios a los parámetros del statement,
+     * en el mismo orden en que construir() agrega las condiciones.
+     *
+     * @param stmt statement preparado con el SQL de sql(criterios)
+     * @param criterios criterios de búsqueda
+     * @throws SQLException si hay error al asignar los parámetros
+     */
+    static void bind(PreparedStatement stmt, LibroSearchCriteria criterios) throws SQLException {
+        int i = 1;
+        if (tieneTexto(criterios.getTitulo())) {
+            stmt.setString(i++, "%" + criterios.getTitulo().trim() + "%");
+        }
+        if (tieneTexto(criterios.getAutor())) {
+            stmt.setString(i++, "%" + criterios.getAutor().trim() + "%");
+        }
+        if (tieneTexto(criterios.getEditorial())) {
+            stmt.setString(i++, "%" + criterios.getEditorial().trim() + "%");
+        }
+        if (tieneTexto(criterios.getIdioma())) {
+            stmt.setString(i++, criterios.getIdioma().trim());
+        }
+        if (criterios.getAnioDesde() != null) {
+            stmt.setInt(i++, criterios.getAnioDesde());
+        }
+        if (criterios.getAnioHasta() != null) {
+            stmt.setInt(i++, criterios.getAnioHasta());
+        }
+        if (criterios.getLimite() != null) {
+            stmt.setInt(i, criterios.getLimite());
+        }
+    }
+
+    /**
+     * Calcula la forma de los criterios: qué criterios están presentes, orden, límite y plan de carga.
+     *
+     * @param criterios criterios de búsqueda
+     * @return forma codificada como máscara de bits
+     */
+    private static int forma(LibroSearchCriteria criterios) {
+        int forma = criterios.getOrden().ordinal() << ORDEN_SHIFT;
+        if (tieneTexto(criterios.getTitulo())) forma |= TITULO;
+        if (tieneTexto(criterios.getAutor())) forma |= AUTOR;
+        if (tieneTexto(criterios.getEditorial())) forma |= EDITORIAL;
+        if (tieneTexto(criterios.getIdioma())) forma |= IDIOMA;
+        if (criterios.getAnioDesde() != null) forma |= ANIO_DESDE;
+        if (criterios.getAnioHasta() != null) forma |= ANIO_HASTA;
+        if (criterios.getLimite() != null) forma |= LIMITE;
+        if (criterios.isDescendente()) forma |= DESCENDENTE;
+        if (criterios.getPlanCarga() == PlanCarga.SIN_FICHA) forma |= SIN_FICHA;
+        return forma;
+    }
+
+    /**
+     * Genera el SQL correspondiente a una forma.
+     *
+     * @param forma forma codificada
+     * @param orden campo de ordenamiento
+     * @return texto SQL parametrizado
+     */
+    private static String construir(int forma, LibroSearchCriteria.Orden orden) {
+        PlanCarga plan = (forma & SIN_FICHA) != 0 ? PlanCarga.SIN_FICHA : PlanCarga.CON_FICHA;
+        StringBuilder sql = new StringBuilder(SELECT_LIBRO).append(plan.getColumnasFicha()).append(" FROM libro l");
+        // Sin ficha, el JOIN solo hace falta si se filtra por idioma
+        if (plan == PlanCarga.CON_FICHA || (forma & IDIOMA) != 0) sql.append(JOIN_FICHA);
+        sql.append(" WHERE l.eliminado = FALSE");
+        if ((forma & TITULO) != 0) sql.append(" AND UPPER(l.titulo) LIKE UPPER(?)");
+        if ((forma & AUTOR) != 0) sql.append(" AND UPPER(l.autor) LIKE UPPER(?)");
+        if ((forma & EDITORIAL) != 0) sql.append(" AND UPPER(l.editorial) LIKE UPPER(?)");
+        if ((forma & IDIOMA) != 0) sql.append(" AND UPPER(f.idioma) = UPPER(?)");
+        if ((forma & ANIO_DESDE) != 0) sql.append(" AND l.anio_edicion >= ?");
+        if ((forma & ANIO_HASTA) != 0) sql.append(" AND l.anio_edicion <= ?");
+
+        String direccion = (forma & DESCENDENTE) != 0 ? " DESC" : "";
+        sql.append(" ORDER BY ").append(orden.getColumna()).append(direccion);
+        if (orden != LibroSearchCriteria.Orden.ID) {
+            // Desempate estable por ID
+            sql.append(", l.id").append(direccion);
+        }
+        if ((forma & LIMITE) != 0) sql.append(" LIMIT ?");
+        return sql.toString();
+    }
+
+    /**
+     * Verifica si un criterio de texto tiene valor.
+     *
+     * @param valor valor del criterio
+     * @return true si no es null ni está vacío
+     */
+    private static boolean tieneTexto(String valor) {
+        return valor != null && !valor.trim().isEmpty();
+    }
+
+}
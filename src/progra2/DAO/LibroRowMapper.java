@@ -0,0 +1,94 @@
+package progra2.DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import progra2.Models.FichaBibliografica;
+import progra2.Models.Libro;
+
+/**
+ * Mapper de filas de libro por índice de columna.
+ *
+ * Toda consulta de libros empieza con {@link #COLUMNAS}. Con el plan
+ * CON_FICHA le siguen las columnas de la ficha del LEFT JOIN (ver
+ * FichaBibliograficaRowMapper.columnas("f")); las columnas posteriores
+ * (por ejemplo, la relevancia FULLTEXT) no se leen.
+ */
+public final class LibroRowMapper implements RowMapper<Libro> {
+
+    /** Índice (base 1) de cada columna del libro. */
+    private static final int ID = 1;
+    private static final int ELIMINADO = 2;
+    private static final int VERSION = 3;
+    private static final int TITULO = 4;
+    private static final int AUTOR = 5;
+    private static final int EDITORIAL = 6;
+    private static final int ANIO_EDICION = 7;
+    private static final int FICHA_ID = 8;
+
+    /** Índice de la primera columna de la ficha en el plan CON_FICHA. */
+    private static final int PRIMERA_COLUMNA_FICHA = FICHA_ID + 1;
+
+    /** Columnas del libro (alias l), en el orden que espera el mapper. */
+    public static final String COLUMNAS =
+            "l.id, l.eliminado, l.version, l.titulo, l.autor, l.editorial, l.anio_edicion, l.ficha_bibliografica_id";
+
+    /** Mapper de libros con su ficha completa. */
+    private static final LibroRowMapper CON_FICHA =
+            new LibroRowMapper(new FichaBibliograficaRowMapper(PRIMERA_COLUMNA_FICHA));
+
+    /** Mapper de libros con solo el ID de su ficha. */
+    private static final LibroRowMapper SIN_FICHA = new LibroRowMapper(null);
+
+    /** Mapper de la ficha del JOIN, o null si el plan no la incluye. */
+    private final FichaBibliograficaRowMapper fichaMapper;
+
+    private LibroRowMapper(FichaBibliograficaRowMapper fichaMapper) {
+        this.fichaMapper = fichaMapper;
+    }
+
+    /**
+     * Obtiene el mapper correspondiente a un plan de carga.
+     *
+     * @param plan plan con el que se generó la consulta
+     * @return mapper que lee las columnas de ese plan
+     */
+    public static LibroRowMapper para(PlanCarga plan) {
+        return plan == PlanCarga.SIN_FICHA ? SIN_FICHA : CON_FICHA;
+    }
+
+    /**
+     * Mapea el libro de la fila actual.
+     * Con CON_FICHA incluye su ficha; con SIN_FICHA el libro queda solo
+     * con el ID de la ficha (ver Libro.setFichaId).
+     *
+     * @param rs el ResultSet posicionado en una fila válida
+     * @return el libro mapeado
+     * @throws SQLException si hay error al leer los datos
+     */
+    @Override
+    public Libro mapRow(ResultSet rs) throws SQLException {
+        // Manejar anio_edicion nullable
+        int anioValue = rs.getInt(ANIO_EDICION);
+        Integer anioEdicion = rs.wasNull() ? null : anioValue;
+
+        long fichaId = rs.getLong(FICHA_ID);
+        boolean tieneFicha = !rs.wasNull() && fichaId > 0;
+        FichaBibliografica ficha = tieneFicha && fichaMapper != null ? fichaMapper.mapRow(rs) : null;
+
+        Libro libro = new Libro(
+            rs.getLong(ID),
+            rs.getString(TITULO),
+            rs.getString(AUTOR),
+            rs.getString(EDITORIAL),
+            anioEdicion,
+            ficha
+        );
+        libro.setEliminado(rs.getBoolean(ELIMINADO));
+        libro.setVersion(rs.getInt(VERSION));
+        if (tieneFicha && ficha == null) {
+            libro.setFichaId(fichaId);
+        }
+        return libro;
+    }
+
+}
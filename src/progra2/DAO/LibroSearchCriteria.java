@@ -0,0 +1,270 @@
+package progra2.DAO;
+
+/**
+ * Criterios de búsqueda combinables para libros.
+ * Cada criterio es opcional: solo los que tengan valor se agregan a la
+ * cláusula WHERE, unidos con AND. Permite además elegir el orden y
+ * limitar la cantidad de resultados y si se carga la ficha de cada libro.
+ *
+ * Ejemplo: autor "García", idioma "Español", publicados desde 1990:
+ * <pre>
+ * LibroSearchCriteria criterios = new LibroSearchCriteria();
+ * criterios.setAutor("García");
+ * criterios.setIdioma("Español");
+ * criterios.setAnioDesde(1990);
+ * </pre>
+ */
+public class LibroSearchCriteria {
+
+    /** Campos por los que pueden ordenarse los resultados. */
+    public enum Orden {
+        ID("l.id"),
+        TITULO("l.titulo"),
+        AUTOR("l.autor"),
+        ANIO_EDICION("l.anio_edicion");
+
+        /** Columna SQL asociada al orden. */
+        private final String columna;
+
+        Orden(String columna) {
+            this.columna = columna;
+        }
+
+        /**
+         * Obtiene la columna SQL por la que se ordena.
+         *
+         * @return nombre calificado de la columna
+         */
+        public String getColumna() {
+            return columna;
+        }
+    }
+
+    /** Texto contenido en el título (opcional). */
+    private String titulo;
+    /** Texto contenido en el autor (opcional). */
+    private String autor;
+    /** Texto contenido en la editorial (opcional). */
+    private String editorial;
+    /** Idioma exacto de la ficha bibliográfica (opcional). */
+    private String idioma;
+    /** Año de edición mínimo, inclusive (opcional). */
+    private Integer anioDesde;
+    /** Año de edición máximo, inclusive (opcional). */
+    private Integer anioHasta;
+    /** Campo de ordenamiento; por defecto ID. */
+    private Orden orden = Orden.ID;
+    /** Indica si el orden es descendente. */
+    private boolean descendente;
+    /** Cantidad máxima de resultados (opcional). */
+    private Integer limite;
+    /** Plan de carga de la ficha bibliográfica; por defecto CON_FICHA. */
+    private PlanCarga planCarga = PlanCarga.CON_FICHA;
+
+    /** Constructor vacío: sin criterios, ordenado por ID ascendente. */
+    public LibroSearchCriteria() {
+    }
+
+    /**
+     * Obtiene el texto a buscar en el título.
+     *
+     * @return texto del título o null si no se filtra por título
+     */
+    public String getTitulo() {
+        return titulo;
+    }
+
+    /**
+     * Establece el texto a buscar en el título (coincidencia parcial).
+     *
+     * @param titulo texto del título
+     */
+    public void setTitulo(String titulo) {
+        this.titulo = titulo;
+    }
+
+    /**
+     * Obtiene el texto a buscar en el autor.
+     *
+     * @return texto del autor o null si no se filtra por autor
+     */
+    public String getAutor() {
+        return autor;
+    }
+
+    /**
+     * Establece el texto a buscar en el autor (coincidencia parcial).
+     *
+     * @param autor texto del autor
+     */
+    public void setAutor(String autor) {
+        this.autor = autor;
+    }
+
+    /**
+     * Obtiene el texto a buscar en la editorial.
+     *
+     * @return texto de la editorial o null si no se filtra por editorial
+     */
+    public String getEditorial() {
+        return editorial;
+    }
+
+    /**
+     * Establece el texto a buscar en la editorial (coincidencia parcial).
+     *
+     * @param editorial texto de la editorial
+     */
+    public void setEditorial(String editorial) {
+        this.editorial = editorial;
+    }
+
+    /**
+     * Obtiene el idioma a buscar.
+     *
+     * @return idioma o null si no se filtra por idioma
+     */
+    public String getIdioma() {
+        return idioma;
+    }
+
+    /**
+     * Establece el idioma a buscar (coincidencia exacta).
+     *
+     * @param idioma idioma de la ficha bibliográfica
+     */
+    public void setIdioma(String idioma) {
+        this.idioma = idioma;
+    }
+
+    /**
+     * Obtiene el año de edición mínimo.
+     *
+     * @return año mínimo o null si no hay cota inferior
+     */
+    public Integer getAnioDesde() {
+        return anioDesde;
+    }
+
+    /**
+     * Establece el año de edición mínimo (inclusive).
+     *
+     * @param anioDesde año mínimo
+     */
+    public void setAnioDesde(Integer anioDesde) {
+        this.anioDesde = anioDesde;
+    }
+
+    /**
+     * Obtiene el año de edición máximo.
+     *
+     * @return año máximo o null si no hay cota superior
+     */
+    public Integer getAnioHasta() {
+        return anioHasta;
+    }
+
+    /**
+     * Establece el año de edición máximo (inclusive).
+     *
+     * @param anioHasta año máximo
+     */
+    public void setAnioHasta(Integer anioHasta) {
+        this.anioHasta = anioHasta;
+    }
+
+    /**
+     * Obtiene el campo de ordenamiento.
+     *
+     * @return campo de ordenamiento
+     */
+    public Orden getOrden() {
+        return orden;
+    }
+
+    /**
+     * Establece el campo de ordenamiento.
+     *
+     * @param orden campo de ordenamiento (null equivale a ID)
+     */
+    public void setOrden(Orden orden) {
+        this.orden = orden != null ? orden : Orden.ID;
+    }
+
+    /**
+     * Indica si el orden es descendente.
+     *
+     * @return true si es descendente
+     */
+    public boolean isDescendente() {
+        return descendente;
+    }
+
+    /**
+     * Establece si el orden es descendente.
+     *
+     * @param descendente true para orden descendente
+     */
+    public void setDescendente(boolean descendente) {
+        this.descendente = descendente;
+    }
+
+    /**
+     * Obtiene la cantidad máxima de resultados.
+     *
+     * @return límite o null si no hay límite
+     */
+    public Integer getLimite() {
+        return limite;
+    }
+
+    /**
+     * Establece la cantidad máxima de resultados.
+     *
+     * @param limite límite de resultados (null para no limitar)
+     */
+    public void setLimite(Integer limite) {
+        this.limite = limite;
+    }
+
+    /**
+     * Obtiene el plan de carga de la ficha bibliográfica.
+     *
+     * @return plan de carga
+     */
+    public PlanCarga getPlanCarga() {
+        return planCarga;
+    }
+
+    /**
+     * Establece el plan de carga de la ficha bibliográfica.
+     *
+     * @param planCarga plan de carga (null equivale a CON_FICHA)
+     */
+    public void setPlanCarga(PlanCarga planCarga) {
+        this.planCarga = planCarga != null ? planCarga : PlanCarga.CON_FICHA;
+    }
+
+    /**
+     * Representación en texto de los criterios.
+     * Útil para debugging y logging.
+     *
+     * @return String con todos los criterios
+     */
+    @Override
+    public String toString() {
+        return "LibroSearchCriteria{" +
+                "titulo='" + titulo + '\'' +
+                ", autor='" + autor + '\'' +
+                ", editorial='" + editorial + '\'' +
+                ", idioma='" + idioma + '\'' +
+                ", anioDesde=" + anioDesde +
+                ", anioHasta=" + anioHasta +
+                ", orden=" + orden +
+                ", descendente=" + descendente +
+                ", limite=" + limite +
+                ", planCarga=" + planCarga +
+                '}';
+    }
+
+}
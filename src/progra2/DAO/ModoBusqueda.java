@@ -0,0 +1,21 @@
+package progra2.DAO;
+
+/**
+ * Modo de búsqueda de texto para título, autor y editorial.
+ */
+public enum ModoBusqueda {
+    
+    /**
+     * Búsqueda con índices FULLTEXT (MATCH ... AGAINST en modo booleano).
+     * Cada palabra de al menos 3 caracteres debe aparecer como palabra o prefijo
+     * de palabra; los resultados se ordenan por relevancia.
+     */
+    FULLTEXT,
+    
+    /**
+     * Búsqueda por subcadena con UPPER(col) LIKE '%texto%'.
+     * Encuentra cualquier coincidencia parcial pero recorre la tabla completa.
+     */
+    LIKE
+    
+}
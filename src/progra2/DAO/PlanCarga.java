@@ -0,0 +1,37 @@
+package progra2.DAO;
+
+/**
+ * Plan de carga de la ficha bibliográfica en las consultas de listado y búsqueda de libros.
+ */
+public enum PlanCarga {
+
+    /**
+     * Carga cada libro con su ficha completa mediante LEFT JOIN con ficha_bibliografica.
+     */
+    CON_FICHA(", " + FichaBibliograficaRowMapper.columnas("f")),
+
+    /**
+     * Carga solo las columnas del libro y el ID de su ficha, sin JOIN.
+     * La ficha se carga recién cuando se accede a ella (ver Libro.getFichaBibliografica).
+     * Conviene para listados que muestran solo datos del libro: transfiere menos
+     * bytes y crea menos objetos por fila.
+     */
+    SIN_FICHA("");
+
+    /** Columnas de la ficha que agrega el plan a continuación de las del libro. */
+    private final String columnasFicha;
+
+    PlanCarga(String columnasFicha) {
+        this.columnasFicha = columnasFicha;
+    }
+
+    /**
+     * Obtiene las columnas de la ficha que se seleccionan con este plan.
+     *
+     * @return lista de columnas SQL con coma inicial, o vacío si el plan no incluye la ficha
+     */
+    String getColumnasFicha() {
+        return columnasFicha;
+    }
+
+}
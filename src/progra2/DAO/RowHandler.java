@@ -0,0 +1,24 @@
+package progra2.DAO;
+
+import java.sql.ResultSet;
+
+/**
+ * Procesa la fila actual de un ResultSet sin convertirla en una entidad.
+ *
+ * Se usa en recorridos masivos (por ejemplo, exportaciones) donde crear un
+ * objeto por fila no aporta nada: el handler lee las columnas por posición y
+ * las escribe directamente en su destino.
+ */
+@FunctionalInterface
+public interface RowHandler {
+
+    /**
+     * Procesa la fila en la que está posicionado el ResultSet.
+     * No avanza el cursor.
+     *
+     * @param rs el ResultSet posicionado en una fila válida
+     * @throws Exception si hay error al leer la fila o al escribirla en el destino
+     */
+    void procesar(ResultSet rs) throws Exception;
+
+}
@@ -0,0 +1,28 @@
+package progra2.DAO;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Convierte la fila actual de un ResultSet en una entidad.
+ *
+ * Las implementaciones leen las columnas por posición, no por nombre: cada
+ * mapper declara la lista explícita de columnas que espera y el índice de
+ * cada una, de modo que la consulta y el mapeo no pueden desincronizarse.
+ *
+ * @param <T> tipo de entidad que produce el mapper
+ */
+@FunctionalInterface
+public interface RowMapper<T> {
+
+    /**
+     * Mapea la fila en la que está posicionado el ResultSet.
+     * No avanza el cursor.
+     *
+     * @param rs el ResultSet posicionado en una fila válida
+     * @return la entidad mapeada
+     * @throws SQLException si hay error al leer los datos
+     */
+    T mapRow(ResultSet rs) throws SQLException;
+
+}
@@ -1,9 +1,14 @@
 package progra2.Main;
 
 import java.util.Scanner;
+import progra2.DAO.ArchivoDAO;
 import progra2.DAO.FichaBibliograficaDAO;
+import progra2.DAO.ImportacionCheckpointDAO;
 import progra2.DAO.LibroDAO;
+import progra2.Service.ArchivoService;
+import progra2.Service.ExportacionService;
 import progra2.Service.FichaBibliograficaService;
+import progra2.Service.ImportacionService;
 import progra2.Service.LibroService;
 
 /**
@@ -19,6 +24,9 @@ public class AppMenu {
     /** Manejador que gestiona las acciones seleccionadas por el usuario. */
     private final MenuHandler menuHandler;
     
+    /** Manejador de las operaciones de mantenimiento. */
+    private final MantenimientoHandler mantenimientoHandler;
+    
     /** Bandera que controla el bucle principal de la aplicación. */
     private boolean running;
     
@@ -32,6 +40,9 @@ public class AppMenu {
         LibroService libroService = createLibroService(fichaService);
         
         this.menuHandler = new MenuHandler(scanner, libroService, fichaService);
+        this.mantenimientoHandler = new MantenimientoHandler(scanner, new ArchivoService(new ArchivoDAO()),
+                new ImportacionService(libroService, new ImportacionCheckpointDAO()),
+                new ExportacionService(new LibroDAO()));
         this.running = true;
     }
     
@@ -59,6 +70,7 @@ public class AppMenu {
         switch (opcion) {
             case 1 -> gestionarLibros();
             case 2 -> verificarConexion();
+            case 3 -> gestionarMantenimiento();
             case 0 -> {
                 System.out.println("Saliendo del sistema...");
                 running = false;
@@ -96,6 +108,37 @@ public class AppMenu {
         return true;
     }
     
+    /** Método que controla la navegación dentro del menú de mantenimiento. */
+    private void gestionarMantenimiento() {
+        boolean enMenuMantenimiento = true;
+        while (enMenuMantenimiento) {
+            try {
+                MenuDisplay.mostrarMenuMantenimiento();
+                int opcion = Integer.parseInt(scanner.nextLine());
+                enMenuMantenimiento = processMantenimientoOption(opcion);
+            } catch (NumberFormatException e) {
+                System.out.println("Entrada invalida. Por favor, ingrese un numero.");
+            }
+        }
+    }
+    
+    /** Método que procesa las opciones del menú de mantenimiento. */
+    private boolean processMantenimientoOption(int opcion) {
+        switch (opcion) {
+            case 1 -> mantenimientoHandler.simularArchivado();
+            case 2 -> mantenimientoHandler.archivarEliminados();
+            case 3 -> mantenimientoHandler.restaurarLibro();
+            case 4 -> mantenimientoHandler.restaurarFicha();
+            case 5 -> mantenimientoHandler.importarLibros();
+            case 6 -> mantenimientoHandler.exportarCatalogo();
+            case 0 -> {
+                return false;
+            }
+            default -> System.out.println("Opcion no valida.");
+        }
+        return true;
+    }
+    
     /** Método que verifica directamente la conexión a la BD. */
     private void verificarConexion() {
         menuHandler.verificarConexion();
@@ -1,20 +1,42 @@
 package progra2.Main;
 
+import progra2.Config.MigrationRunner;
+
 /**
  * Clase principal que inicia la aplicación del sistema de gestión de biblioteca.
- * Simplemente delega la ejecución al menú de la aplicación.
+ * Aplica las migraciones de esquema pendientes y delega la ejecución al menú de la aplicación.
  */
 public class Main {
     
     /**
      * Punto de entrada de la aplicación.
-     * Crea una instancia de AppMenu y ejecuta el bucle principal.
+     * Aplica las migraciones pendientes (salvo con -Ddb.migrate=false),
+     * crea una instancia de AppMenu y ejecuta el bucle principal.
      * 
      * @param args argumentos de línea de comandos (no utilizados)
      */
     public static void main(String[] args) {   
+        if (Boolean.parseBoolean(System.getProperty("db.migrate", "true"))) {
+            aplicarMigraciones();
+        }
         AppMenu app = new AppMenu();
         app.run();
     }
     
+    /**
+     * Aplica las migraciones de esquema pendientes.
+     * Si la base de datos no está disponible, informa el error y continúa,
+     * para permitir verificar la conexión desde el menú.
+     */
+    private static void aplicarMigraciones() {
+        try {
+            int aplicadas = MigrationRunner.migrar();
+            if (aplicadas > 0) {
+                System.out.println("Migraciones aplicadas: " + aplicadas);
+            }
+        } catch (Exception e) {
+            System.err.println("No se pudieron aplicar las migraciones de esquema: " + e.getMessage());
+        }
+    }
+    
 }
@@ -0,0 +1,264 @@
+package progra2.Main;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Scanner;
+import progra2.DAO.ImportacionCheckpointDAO.Checkpoint;
+import progra2.Service.ArchivoService;
+import progra2.Service.ExportacionService;
+import progra2.Service.ImportacionService;
+
+/**
+ * Controlador de las operaciones de mantenimiento de la base de datos.
+ * Permite simular y ejecutar el archivado de filas eliminadas, restaurar
+ * libros o fichas archivados, importar libros desde archivos CSV y exportar
+ * el catálogo.
+ */
+public class MantenimientoHandler {
+
+    /** Scanner para capturar entrada del usuario. */
+    private final Scanner scanner;
+
+    /** Servicio de archivado de filas eliminadas. */
+    private final ArchivoService archivoService;
+
+    /** Servicio de importación masiva desde CSV. */
+    private final ImportacionService importacionService;
+
+    /** Servicio de exportación del catálogo. */
+    private final ExportacionService exportacionService;
+
+    /**
+     * Constructor que recibe los servicios necesarios.
+     *
+     * @param scanner scanner compartido para entrada de datos
+     * @param archivoService servicio de archivado
+     * @param importacionService servicio de importación CSV
+     * @param exportacionService servicio de exportación del catálogo
+     */
+    public MantenimientoHandler(Scanner scanner, ArchivoService archivoService,
+                                ImportacionService importacionService, ExportacionService exportacionService) {
+        if (scanner == null) {
+            throw new IllegalArgumentException("Scanner no puede ser null");
+        }
+        if (archivoService == null) {
+            throw new IllegalArgumentException("ArchivoService no puede ser null");
+        }
+        if (importacionService == null) {
+            throw new IllegalArgumentException("ImportacionService no puede ser null");
+        }
+        if (exportacionService == null) {
+            throw new IllegalArgumentException("ExportacionService no puede ser null");
+        }
+        this.scanner = scanner;
+        this.archivoService = archivoService;
+        this.importacionService = importacionService;
+        this.exportacionService = exportacionService;
+    }
+
+    /** Informa qué filas se archivarían, sin modificar datos. */
+    public void simularArchivado() {
+        try {
+            System.out.println("\n========= SIMULAR ARCHIVADO =========");
+            int dias = leerRetencion();
+            System.out.println("\n" + archivoService.simular(dias));
+        } catch (Exception e) {
+            System.err.println("\nError al simular el archivado: " + e.getMessage());
+        }
+    }
+
+    /** Flujo interactivo para archivar las filas eliminadas antes de la retención. */
+    public void archivarEliminados() {
+        try {
+            System.out.println("\n========= ARCHIVAR ELIMINADOS =========");
+            int dias = leerRetencion();
+            ArchivoService.Resultado simulacion = archivoService.simular(dias);
+            System.out.println("\n" + simulacion);
+            if (simulacion.getLibros() == 0 && simulacion.getFichas() == 0) {
+                System.out.println("No hay filas para archivar.");
+                return;
+            }
+
+            System.out.print("\n¿Desea archivarlas? (S/N): ");
+            String confirmacion = scanner.nextLine().trim().toUpperCase();
+            if (confirmacion.equals("S")) {
+                System.out.println("\n" + archivoService.archivar(dias));
+            } else {
+                System.out.println("Operacion cancelada.");
+            }
+        } catch (Exception e) {
+            System.err.println("\nError al archivar: " + e.getMessage());
+            System.err.println("Los lotes ya confirmados quedan archivados; puede volver a ejecutarse.");
+        }
+    }
+
+    /** Flujo interactivo para restaurar un libro archivado (y su ficha, si también lo está). */
+    public void restaurarLibro() {
+        try {
+            System.out.println("\n========= RESTAURAR LIBRO ARCHIVADO =========");
+            long id = leerIdPositivo("ID del libro archivado");
+            if (archivoService.restaurarLibro(id)) {
+                System.out.println("\nLibro restaurado exitosamente.");
+            } else {
+                System.out.println("No hay un libro archivado con ese ID.");
+            }
+        } catch (Exception e) {
+            System.err.println("\nError al restaurar libro: " + e.getMessage());
+        }
+    }
+
+    /** Flujo interactivo para restaurar una ficha archivada. */
+    public void restaurarFicha() {
+        try {
+            System.out.println("\n========= RESTAURAR FICHA ARCHIVADA =========");
+            long id = leerIdPositivo("ID de la ficha archivada");
+            if (archivoService.restaurarFicha(id)) {
+                System.out.println("\nFicha restaurada exitosamente.");
+            } else {
+                System.out.println("No hay una ficha archivada con ese ID.");
+            }
+        } catch (Exception e) {
+            System.err.println("\nError al restaurar ficha: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flujo interactivo para importar libros desde un archivo CSV.
+     * Si una importación anterior del mismo archivo quedó incompleta, la reanuda.
+     */
+    public void importarLibros() {
+        try {
+            System.out.println("\n========= IMPORTAR LIBROS DESDE CSV =========");
+            System.out.println("Columnas: titulo, autor (obligatorias), editorial, anio_edicion,");
+            System.out.println("isbn, clasificacion_dewey, estanteria, idioma");
+            System.out.print("Ruta del archivo (Enter para cancelar): ");
+            String ruta = scanner.nextLine().trim();
+            if (ruta.isEmpty()) {
+                System.out.println("Operacion cancelada.");
+                return;
+            }
+            Path archivo = Paths.get(ruta);
+            if (!Files.isRegularFile(archivo)) {
+                System.out.println("El archivo no existe: " + archivo);
+                return;
+            }
+
+            Checkpoint avance = importacionService.getAvance(archivo);
+            if (avance != null && avance.isCompletada()) {
+                System.out.println("\nEste archivo ya fue importado (" + avance.getImportados() + " libros).");
+                System.out.print("¿Desea importarlo de nuevo? (S/N): ");
+                if (!scanner.nextLine().trim().toUpperCase().equals("S")) {
+                    System.out.println("Operacion cancelada.");
+                    return;
+                }
+                importacionService.reiniciar(archivo);
+            } else if (avance != null) {
+                System.out.println("\nImportacion previa incompleta: " + avance.getRegistrosProcesados()
+                        + " registros procesados. Se reanudara desde alli.");
+            }
+
+            System.out.print("\n¿Confirma la importacion? (S/N): ");
+            if (scanner.nextLine().trim().toUpperCase().equals("S")) {
+                System.out.println();
+                importacionService.importar(archivo);
+            } else {
+                System.out.println("Operacion cancelada.");
+            }
+        } catch (Exception e) {
+            System.err.println("\nError al importar: " + e.getMessage());
+            System.err.println("Los lotes ya confirmados quedan importados; al volver a importar el archivo se reanuda.");
+        }
+    }
+
+    /** Flujo interactivo para exportar el catálogo a CSV o JSON Lines. */
+    public void exportarCatalogo() {
+        try {
+            System.out.println("\n========= EXPORTAR CATALOGO =========");
+            System.out.println("Formato: 1. CSV  2. JSON Lines");
+            ExportacionService.Formato formato = null;
+            while (formato == null) {
+                System.out.print("Ingrese una opcion: ");
+                switch (scanner.nextLine().trim()) {
+                    case "1" -> formato = ExportacionService.Formato.CSV;
+                    case "2" -> formato = ExportacionService.Formato.JSONL;
+                    default -> System.out.println("Opcion invalida. Ingrese 1 o 2.");
+                }
+            }
+            System.out.print("¿Comprimir con gzip? (S/N): ");
+            boolean gzip = scanner.nextLine().trim().toUpperCase().equals("S");
+
+            String porDefecto = "catalogo." + formato.getExtension() + (gzip ? ".gz" : "");
+            System.out.print("Archivo destino (Enter para " + porDefecto + "): ");
+            String ruta = scanner.nextLine().trim();
+            Path destino = Paths.get(ruta.isEmpty() ? porDefecto : ruta);
+            if (Files.exists(destino)) {
+                System.out.print("El archivo ya existe. ¿Desea reemplazarlo? (S/N): ");
+                if (!scanner.nextLine().trim().toUpperCase().equals("S")) {
+                    System.out.println("Operacion cancelada.");
+                    return;
+                }
+            }
+
+            System.out.println();
+            exportacionService.exportar(destino, formato, gzip);
+        } catch (Exception e) {
+            System.err.println("\nError al exportar: " + e.getMessage());
+        }
+    }
+
+    // =================== Métodos Auxiliares de Validación ===================
+
+    /**
+     * Lee los días de retención, usando el valor por defecto si se omite.
+     *
+     * @return días de retención (no negativo)
+     */
+    private int leerRetencion() {
+        int porDefecto = archivoService.getRetencionDiasDefault();
+        while (true) {
+            System.out.print("Dias de retencion (Enter para " + porDefecto + "): ");
+            String input = scanner.nextLine().trim();
+            if (input.isEmpty()) {
+                return porDefecto;
+            }
+            try {
+                int dias = Integer.parseInt(input);
+                if (dias >= 0) {
+                    return dias;
+                }
+                System.out.println("Los dias no pueden ser negativos.");
+            } catch (NumberFormatException e) {
+                System.out.println("Entrada invalida. Debe ingresar un numero entero.");
+            }
+        }
+    }
+
+    /**
+     * Lee un ID positivo mayor a cero, repitiendo hasta obtener un valor válido.
+     * Permite cancelar la operación ingresando 0.
+     *
+     * @param mensaje texto descriptivo a mostrar al usuario
+     * @return ID válido mayor a cero
+     * @throws RuntimeException si el usuario cancela ingresando 0
+     */
+    private long leerIdPositivo(String mensaje) {
+        while (true) {
+            try {
+                System.out.print(mensaje + " (0 para cancelar): ");
+                String input = scanner.nextLine().trim();
+                long id = Long.parseLong(input);
+                if (id == 0) {
+                    throw new RuntimeException("Operacion cancelada por el usuario");
+                }
+                if (id > 0) {
+                    return id;
+                }
+                System.out.println("El ID debe ser un numero positivo mayor a cero.");
+            } catch (NumberFormatException e) {
+                System.out.println("Entrada invalida. Debe ingresar un numero entero.");
+            }
+        }
+    }
+
+}
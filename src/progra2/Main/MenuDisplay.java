@@ -12,12 +12,14 @@ public class MenuDisplay {
      * Opciones:
      * 1. Gestion de libros
      * 2. Verificar conexión a la Base de Datos
+     * 3. Mantenimiento
      * 0. Salir de la aplicación
      */
     public static void mostrarMenuPrincipal() {
         System.out.println("\n========= SISTEMA DE GESTION DE BIBLIOTECA =========");
         System.out.println("1. Gestionar Libros");
         System.out.println("2. Verificar conexion a BD");
+        System.out.println("3. Mantenimiento");
         System.out.println("0. Salir");
         System.out.print("Ingrese una opcion: ");
     }
@@ -42,4 +44,28 @@ public class MenuDisplay {
         System.out.print("Ingrese una opcion: ");
     }
     
+    /**
+     * Muestra el menú de mantenimiento de la base de datos.
+     * 
+     * Opciones:
+     * 1. Simular archivado de eliminados
+     * 2. Archivar eliminados
+     * 3. Restaurar libro archivado
+     * 4. Restaurar ficha archivada
+     * 5. Importar libros desde CSV
+     * 6. Exportar catalogo
+     * 0. Volver al menú principal
+     */
+    public static void mostrarMenuMantenimiento() {
+        System.out.println("\n========= MENU - Mantenimiento =========");
+        System.out.println("1. Simular archivado de eliminados");
+        System.out.println("2. Archivar eliminados");
+        System.out.println("3. Restaurar libro archivado");
+        System.out.println("4. Restaurar ficha archivada");
+        System.out.println("5. Importar libros desde CSV");
+        System.out.println("6. Exportar catalogo");
+        System.out.println("0. Volver al menu principal");
+        System.out.print("Ingrese una opcion: ");
+    }
+    
 }
@@ -2,7 +2,10 @@ package progra2.Main;
 
 import java.util.List;
 import java.util.Scanner;
+import progra2.DAO.LibroSearchCriteria;
+import progra2.DAO.ModoBusqueda;
 import progra2.Models.FichaBibliografica;
+import progra2.Models.ISBNUtils;
 import progra2.Models.Libro;
 import progra2.Service.FichaBibliograficaService;
 import progra2.Service.LibroService;
@@ -23,6 +26,9 @@ public class MenuHandler {
     /** Servicio para operaciones relacionadas con fichas bibliográficas. */
     private final FichaBibliograficaService fichaService;
     
+    /** Cantidad de libros mostrados por página en el listado completo. */
+    private static final int TAMANIO_PAGINA = 20;
+    
     /**
      * Constructor que recibe los servicios necesarios.
      *
@@ -47,10 +53,16 @@ public class MenuHandler {
     
     /**
     * Verifica la conexión a la base de datos.
-    * Delega la verificación a la clase TestConexion.
+    * Delega la verificación a la clase TestConexion y muestra
+    * además las estadísticas de las cachés de entidades y de los
+    * reintentos de transacciones por conflictos de concurrencia.
     */
     public void verificarConexion() {
         TestConexion.main(null);
+        System.out.println("- " + libroService.getCacheStats());
+        System.out.println("- " + fichaService.getCacheStats());
+        libroService.getRetryStats().values()
+                .forEach(stats -> System.out.println("- Reintentos " + stats));
     }
     
     /**
@@ -119,7 +131,7 @@ public class MenuHandler {
     public void actualizarLibro() {
         try {
             System.out.println("\n========= ACTUALIZAR LIBRO =========");
-            int id = leerIdPositivo("ID del libro a actualizar");
+            long id = leerIdPositivo("ID del libro a actualizar");
             
             Libro libro = libroService.getById(id);
             if (libro == null) {
@@ -240,7 +252,11 @@ public class MenuHandler {
                 case 1 -> {
                     System.out.print("Nuevo ISBN (Enter para mantener actual): ");
                     String isbn = scanner.nextLine().trim().toUpperCase();
-                    if (!isbn.isEmpty()) f.setIsbn(isbn);
+                    if (!isbn.isEmpty() && !ISBNUtils.esValido(isbn)) {
+                        System.out.println("ISBN invalido. Debe tener 10 o 13 digitos y un digito verificador correcto.");
+                    } else if (!isbn.isEmpty() && isbnDisponible(isbn, f.getId())) {
+                        f.setIsbn(isbn);
+                    }
                 }
                 case 2 -> {
                     System.out.print("Nueva clasificacion Dewey (Enter para mantener): ");
@@ -270,23 +286,28 @@ public class MenuHandler {
             System.out.println("3. Buscar por titulo");
             System.out.println("4. Buscar por anio de publicacion");
             System.out.println("5. Buscar por idioma");
+            System.out.println("6. Busqueda combinada");
+            System.out.println("7. Buscar por ISBN");
             System.out.println("0. Volver");
             System.out.print("Opcion: ");
             
-            int opcion = leerOpcionMenu(0, 5);
+            int opcion = leerOpcionMenu(0, 7);
             if (opcion == 0) return;
 
             List<Libro> libros;
             
             switch (opcion) {
-                case 1 -> libros = libroService.getAll();
+                case 1 -> {
+                    listarPaginado();
+                    return;
+                }
                 case 2 -> {
                     String autor = leerTexto("Autor a buscar", true);
-                    libros = libroService.buscarPorAutor(autor);
+                    libros = libroService.buscarPorAutor(autor, leerModoBusqueda());
                 }
                 case 3 -> {
                     String titulo = leerTexto("Titulo a buscar", true);
-                    libros = libroService.buscarPorTitulo(titulo);
+                    libros = libroService.buscarPorTitulo(titulo, leerModoBusqueda());
                 }
                 case 4 -> {
                     int anio = leerAnioObligatorio("Anio de publicacion a buscar");
@@ -296,6 +317,12 @@ public class MenuHandler {
                     String idioma = leerTexto("Idioma a buscar", true);
                     libros = libroService.buscarPorIdioma(idioma);
                 }
+                case 6 -> libros = libroService.buscar(leerCriteriosBusqueda());
+                case 7 -> {
+                    String isbn = leerTexto("ISBN a buscar", true);
+                    Libro libro = libroService.getByIsbn(isbn);
+                    libros = libro != null ? List.of(libro) : List.of();
+                }
                 default -> {
                     System.out.println("Opcion invalida.");
                     return;
@@ -310,6 +337,79 @@ public class MenuHandler {
         }
     }
     
+    /**
+     * Lista todos los libros de a una página por vez.
+     * Cada página se obtiene bajo demanda a partir del último ID mostrado,
+     * por lo que nunca se carga el catálogo completo en memoria.
+     * 
+     * @throws Exception si hay error al consultar una página
+     */
+    private void listarPaginado() throws Exception {
+        long ultimoId = 0;
+        int numeroPagina = 1;
+        
+        while (true) {
+            List<Libro> pagina = libroService.getPage(ultimoId, TAMANIO_PAGINA);
+            if (pagina.isEmpty()) {
+                System.out.println(numeroPagina == 1 ? "\nNo se encontraron libros." : "\nNo hay mas libros.");
+                return;
+            }
+            
+            System.out.println("\n========= PAGINA " + numeroPagina + " (" + pagina.size() + " libros) =========");
+            for (Libro l : pagina) {
+                mostrarLibro(l);
+            }
+            
+            if (pagina.size() < TAMANIO_PAGINA) {
+                return;
+            }
+            
+            System.out.print("\nEnter para ver la siguiente pagina, 0 para volver: ");
+            if (scanner.nextLine().trim().equals("0")) {
+                return;
+            }
+            ultimoId = pagina.get(pagina.size() - 1).getId();
+            numeroPagina++;
+        }
+    }
+    
+    /**
+     * Pregunta el modo de una búsqueda de texto.
+     * LIKE encuentra cualquier parte de una palabra ("ana" encuentra "MARIANA");
+     * FULLTEXT busca palabras completas o prefijos de al menos 3 caracteres y
+     * ordena por relevancia, usando el índice.
+     * 
+     * @return modo elegido por el usuario
+     */
+    private ModoBusqueda leerModoBusqueda() {
+        System.out.println("Modo de busqueda: 1. Contiene el texto  2. Palabras, por relevancia");
+        System.out.print("Opcion: ");
+        return leerOpcionMenu(1, 2) == 1 ? ModoBusqueda.LIKE : ModoBusqueda.FULLTEXT;
+    }
+    
+    /**
+     * Captura los criterios de una búsqueda combinada.
+     * Todos los criterios son opcionales; los que se omiten no filtran.
+     * 
+     * @return criterios de búsqueda ingresados por el usuario
+     */
+    private LibroSearchCriteria leerCriteriosBusqueda() {
+        LibroSearchCriteria criterios = new LibroSearchCriteria();
+        criterios.setTitulo(leerTexto("Titulo contiene", false));
+        criterios.setAutor(leerTexto("Autor contiene", false));
+        criterios.setEditorial(leerTexto("Editorial contiene", false));
+        criterios.setIdioma(leerTexto("Idioma", false));
+        System.out.println("Desde el anio:");
+        criterios.setAnioDesde(leerAnioEdicion());
+        System.out.println("Hasta el anio:");
+        criterios.setAnioHasta(leerAnioEdicion());
+        
+        System.out.println("Ordenar por: 1. ID  2. Titulo  3. Autor  4. Anio de edicion");
+        System.out.print("Opcion: ");
+        criterios.setOrden(LibroSearchCriteria.Orden.values()[leerOpcionMenu(1, 4) - 1]);
+        return criterios;
+    }
+    
     /**
      * Muestra los resultados de una búsqueda de libros en formato legible.
      * Si no hay resultados, muestra un mensaje informativo.
@@ -325,20 +425,29 @@ public class MenuHandler {
         
         System.out.println("\n========= RESULTADOS (" + libros.size() + ") =========");
         for (Libro l : libros) {
-            System.out.println("\nID: " + l.getId());
-            System.out.println("  Titulo: " + l.getTitulo());
-            System.out.println("  Autor: " + l.getAutor());
-            System.out.println("  Editorial: " + (l.getEditorial() != null ? l.getEditorial() : "N/A"));
-            System.out.println("  Anio: " + (l.getAnioEdicion() != null ? l.getAnioEdicion() : "N/A"));
-            
-            FichaBibliografica f = l.getFichaBibliografica();
-            if (f != null) {
-                System.out.println("  FICHA:");
-                System.out.println("    - ISBN: " + (f.getIsbn() != null ? f.getIsbn() : "N/A"));
-                System.out.println("    - Dewey: " + (f.getClasificacionDewey() != null ? f.getClasificacionDewey() : "N/A"));
-                System.out.println("    - Estanteria: " + (f.getEstanteria() != null ? f.getEstanteria() : "N/A"));
-                System.out.println("    - Idioma: " + (f.getIdioma() != null ? f.getIdioma() : "N/A"));
-            }
+            mostrarLibro(l);
+        }
+    }
+    
+    /**
+     * Muestra un libro de una lista de resultados, con su ficha bibliográfica si existe.
+     * 
+     * @param l el libro a mostrar
+     */
+    private void mostrarLibro(Libro l) {
+        System.out.println("\nID: " + l.getId());
+        System.out.println("  Titulo: " + l.getTitulo());
+        System.out.println("  Autor: " + l.getAutor());
+        System.out.println("  Editorial: " + (l.getEditorial() != null ? l.getEditorial() : "N/A"));
+        System.out.println("  Anio: " + (l.getAnioEdicion() != null ? l.getAnioEdicion() : "N/A"));
+        
+        FichaBibliografica f = l.getFichaBibliografica();
+        if (f != null) {
+            System.out.println("  FICHA:");
+            System.out.println("    - ISBN: " + (f.getIsbn() != null ? f.getIsbn() : "N/A"));
+            System.out.println("    - Dewey: " + (f.getClasificacionDewey() != null ? f.getClasificacionDewey() : "N/A"));
+            System.out.println("    - Estanteria: " + (f.getEstanteria() != null ? f.getEstanteria() : "N/A"));
+            System.out.println("    - Idioma: " + (f.getIdioma() != null ? f.getIdioma() : "N/A"));
         }
     }
     
@@ -368,7 +477,7 @@ public class MenuHandler {
     public void eliminarLibro() {
         try {
             System.out.println("\n========= ELIMINAR LIBRO =========");
-            int id = leerIdPositivo("ID del libro a eliminar");
+            long id = leerIdPositivo("ID del libro a eliminar");
             
             Libro libro = libroService.getById(id);
             if (libro == null) {
@@ -433,7 +542,7 @@ public class MenuHandler {
      * @return ID válido mayor a cero
      * @throws RuntimeException si el usuario cancela ingresando 0
      */
-    private int leerIdPositivo(String mensaje) {
+    private long leerIdPositivo(String mensaje) {
         while (true) {
             try {
                 System.out.print(mensaje + " (0 para cancelar): ");
@@ -444,7 +553,7 @@ public class MenuHandler {
                     continue;
                 }
                 
-                int id = Integer.parseInt(input);
+                long id = Long.parseLong(input);
                 if (id == 0) {
                     throw new RuntimeException("Operacion cancelada por el usuario");
                 }
@@ -576,9 +685,10 @@ public class MenuHandler {
     }
     
     /**
-     * Lee un ISBN con validación de formato.
-     * Acepta ISBN-10 (10 dígitos) o ISBN-13 (13 dígitos) con o sin guiones.
+     * Lee un ISBN con validación de formato y dígito verificador.
+     * Acepta ISBN-10 (10 caracteres, el último puede ser X) o ISBN-13 (13 dígitos) con o sin guiones.
      * Ejemplos válidos: "978-3-16-148410-0", "9783161484100", "0123456789"
+     * Si el ISBN ya está registrado, lo informa y vuelve a solicitarlo.
      * 
      * @return ISBN válido o null si el usuario omite el campo
      */
@@ -591,13 +701,36 @@ public class MenuHandler {
                 return null;
             }
             
-            // Validación con regex
-            String isbnSinGuiones = isbn.replace("-", "");
-            if (isbnSinGuiones.matches("\\d{10}|\\d{13}")) {
+            if (!ISBNUtils.esValido(isbn)) {
+                System.out.println("ISBN invalido. Debe tener 10 o 13 digitos y un digito verificador correcto.");
+            } else if (isbnDisponible(isbn, 0)) {
                 return isbn;
             }
-            System.out.println("ISBN invalido. Debe tener 10 o 13 digitos.");
         }
     }
     
+    /**
+     * Verificación previa de ISBN para dar respuesta inmediata al usuario.
+     * Si la consulta falla no bloquea la carga: al guardar, la restricción
+     * UNIQUE de la base de datos rechaza igualmente un ISBN duplicado.
+     * 
+     * @param isbn ISBN ingresado
+     * @param idActual ID de la ficha que se edita (0 para una ficha nueva)
+     * @return true si ninguna otra ficha tiene ese ISBN
+     */
+    private boolean isbnDisponible(String isbn, long idActual) {
+        try {
+            boolean existe = idActual > 0
+                    ? fichaService.existeISBNExceptoId(isbn, idActual)
+                    : fichaService.existeISBN(isbn);
+            if (existe) {
+                System.out.println("Ya existe una ficha con el ISBN: " + isbn);
+                return false;
+            }
+        } catch (Exception e) {
+            System.err.println("No se pudo verificar el ISBN: " + e.getMessage());
+        }
+        return true;
+    }
+    
 }
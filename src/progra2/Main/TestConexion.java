@@ -1,9 +1,12 @@
 package progra2.Main;
 
+import progra2.Config.ConnectionPool;
 import progra2.Config.DatabaseConnection;
+import progra2.Config.ReplicaRouter;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
+import java.util.List;
 
 /**
  * Clase de prueba para verificar la conexión con la base de datos.
@@ -26,6 +29,23 @@ public class TestConexion {
                 System.out.println("- Base de datos: " + conn.getCatalog());
                 System.out.println("- URL: " + conn.getMetaData().getURL());
                 System.out.println("- Driver: " + meta.getDriverName() + " v" + meta.getDriverVersion());
+                
+                // Estado del pool y de la caché de statements
+                ConnectionPool pool = DatabaseConnection.getPool();
+                System.out.println("- Pool: " + pool.getActiveConnections() + " en uso, "
+                        + pool.getIdleConnections() + " disponibles");
+                System.out.println("- Cache de statements: " + pool.getStatementCacheHits() + " aciertos, "
+                        + pool.getStatementCacheMisses() + " fallos, "
+                        + pool.getStatementCacheEvictions() + " desalojos");
+                
+                // Réplicas de lectura (si hay configuradas)
+                List<ReplicaRouter.Stats> replicas = DatabaseConnection.getReplicaStats();
+                for (ReplicaRouter.Stats replica : replicas) {
+                    System.out.println("- Replica " + replica);
+                }
+                if (!replicas.isEmpty()) {
+                    System.out.println("- Lecturas en el primario: " + DatabaseConnection.getPrimaryReads());
+                }
             }
         } catch (SQLException e) {
             System.out.println("Resultado: No se pudo conectar a la base de datos.");
@@ -8,9 +8,11 @@ package progra2.Models;
 public abstract class BaseModel {
     
     /** Identificador único de la entidad en la base de datos. */
-    private int id;
+    private long id;
     /** Indica si la entidad fue eliminada lógicamente (soft delete). */
     private boolean eliminado;
+    /** Versión de la fila leída, usada para control de concurrencia optimista. */
+    private int version;
     
     /**
      * Constructor con parámetros para inicializar una entidad con ID.
@@ -18,7 +20,7 @@ public abstract class BaseModel {
      * @param id identificador de la entidad
      * @param eliminado estado de eliminación lógica
      */
-    protected BaseModel(int id, boolean eliminado) {
+    protected BaseModel(long id, boolean eliminado) {
         this.id = id;
         this.eliminado = eliminado;
     }
@@ -33,7 +35,7 @@ public abstract class BaseModel {
      * 
      * @return ID de la entidad
      */
-    public int getId() {
+    public long getId() {
         return id;
     }
     
@@ -42,7 +44,7 @@ public abstract class BaseModel {
      * 
      * @param id nuevo ID a asignar
      */
-    public void setId(int id) {
+    public void setId(long id) {
         this.id = id;
     }
     
@@ -64,4 +66,24 @@ public abstract class BaseModel {
         this.eliminado = eliminado;
     }
     
+    /**
+     * Obtiene la versión de la fila leída de la base de datos.
+     * Se incrementa en cada actualización; una actualización con una versión
+     * desactualizada es rechazada.
+     * 
+     * @return versión de la entidad
+     */
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Establece la versión de la entidad.
+     * 
+     * @param version versión leída de la base de datos
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+    
 }
@@ -27,7 +27,7 @@ public class FichaBibliografica extends BaseModel {
      * @param id identificador
      * @param eliminado estado de eliminación lógica
      */
-    public FichaBibliografica(String isbn, String clasificacionDewey, String estanteria, String idioma, int id, boolean eliminado) {
+    public FichaBibliografica(String isbn, String clasificacionDewey, String estanteria, String idioma, long id, boolean eliminado) {
         super(id, eliminado);
         this.isbn = isbn;
         this.clasificacion_dewey = clasificacionDewey;
@@ -40,6 +40,16 @@ public class FichaBibliografica extends BaseModel {
         super();
     }
     
+    /**
+     * Constructor de copia. Crea una ficha independiente con los mismos datos.
+     * 
+     * @param otra ficha a copiar
+     */
+    public FichaBibliografica(FichaBibliografica otra) {
+        this(otra.isbn, otra.clasificacion_dewey, otra.estanteria, otra.idioma, otra.getId(), otra.isEliminado());
+        setVersion(otra.getVersion());
+    }
+    
     /** Obtiene el ISBN de la ficha.
      * 
      * @return  ISBN de la ficha
@@ -121,6 +131,7 @@ public class FichaBibliografica extends BaseModel {
                 ", estanteria='" + estanteria + '\'' +
                 ", idioma='" + idioma + '\'' +
                 ", eliminado=" + isEliminado() +
+                ", version=" + getVersion() +
                 '}';
     }
     
@@ -0,0 +1,142 @@
+package progra2.Models;
+
+/**
+ * Utilidades para validar y canonizar códigos ISBN.
+ *
+ * Un ISBN se recorre una sola vez, carácter por carácter, sin expresiones
+ * regulares ni Strings intermedios: en la misma pasada se acumulan el valor
+ * numérico y las sumas de control de ISBN-10 y de ISBN-13, y al final se
+ * decide según la cantidad de dígitos.
+ *
+ * La forma canónica es el ISBN-13 como número (long): un ISBN-10 se convierte
+ * al ISBN-13 equivalente con prefijo 978 y dígito verificador recalculado.
+ * Así "0-306-40615-2", "0306406152" y "978-0-306-40615-7" tienen la misma
+ * forma canónica 9780306406157, apta para indexar y comparar.
+ */
+public final class ISBNUtils {
+
+    /** Valor devuelto por parse() cuando el ISBN no es válido. */
+    public static final long INVALIDO = -1L;
+
+    /** Prefijo EAN con el que se convierte un ISBN-10 a ISBN-13. */
+    private static final long PREFIJO_978 = 978L;
+
+    /** 10^10: separa el prefijo EAN (3 dígitos) del resto de un ISBN-13. */
+    private static final long DIEZ_A_LA_10 = 10_000_000_000L;
+
+    /** Suma de control ISBN-13 aportada por el prefijo 978 (9*1 + 7*3 + 8*1). */
+    private static final int SUMA_PREFIJO_978 = 38;
+
+    /**
+     * Constructor privado para prevenir instanciación.
+     *
+     * @throws UnsupportedOperationException siempre que se intente instanciar
+     */
+    private ISBNUtils() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * Valida un ISBN-10 o ISBN-13 y devuelve su forma canónica ISBN-13.
+     *
+     * Reglas:
+     * - Se ignoran guiones y espacios en cualquier posición.
+     * - ISBN-10: 10 caracteres significativos; el último puede ser 'X' (valor 10).
+     *   La suma ponderada (pesos 10 a 1) debe ser múltiplo de 11.
+     * - ISBN-13: 13 dígitos con prefijo 978 o 979. La suma ponderada
+     *   (pesos alternados 1 y 3) debe ser múltiplo de 10.
+     *
+     * @param isbn texto del ISBN (puede ser null)
+     * @return ISBN-13 canónico como número, o INVALIDO si el ISBN no es válido
+     */
+    public static long parse(CharSequence isbn) {
+        if (isbn == null) {
+            return INVALIDO;
+        }
+
+        int digitos = 0;
+        long valor = 0;          // dígitos acumulados (hasta 13)
+        long primeros9 = 0;      // primeros 9 dígitos, para convertir ISBN-10 a ISBN-13
+        int suma10 = 0;          // suma de control ISBN-10 (pesos 10..1)
+        int suma13 = 0;          // suma de control ISBN-13 (pesos 1,3,1,3...)
+        int suma10a13 = 0;       // suma ISBN-13 de los primeros 9 dígitos desplazados tras el 978
+        boolean terminaEnX = false;
+
+        for (int i = 0, n = isbn.length(); i < n; i++) {
+            char c = isbn.charAt(i);
+            if (c == '-' || c == ' ') {
+                continue;
+            }
+            if (terminaEnX) {
+                return INVALIDO; // la X solo puede ser el último carácter
+            }
+
+            int d;
+            if (c >= '0' && c <= '9') {
+                d = c - '0';
+            } else if ((c == 'X' || c == 'x') && digitos == 9) {
+                d = 10;
+                terminaEnX = true;
+            } else {
+                return INVALIDO;
+            }
+
+            if (digitos == 13) {
+                return INVALIDO;
+            }
+            if (digitos < 10) {
+                suma10 += d * (10 - digitos);
+            }
+            if (digitos < 9) {
+                primeros9 = primeros9 * 10 + d;
+                // Tras el prefijo 978, el dígito i ocupa la posición i+3 del ISBN-13
+                suma10a13 += (digitos & 1) == 0 ? d * 3 : d;
+            }
+            suma13 += (digitos & 1) == 0 ? d : d * 3;
+            valor = valor * 10 + d;
+            digitos++;
+        }
+
+        if (digitos == 10) {
+            if (suma10 % 11 != 0) {
+                return INVALIDO;
+            }
+            int verificador = (10 - (SUMA_PREFIJO_978 + suma10a13) % 10) % 10;
+            return PREFIJO_978 * DIEZ_A_LA_10 + primeros9 * 10 + verificador;
+        }
+        if (digitos == 13 && !terminaEnX) {
+            long prefijo = valor / DIEZ_A_LA_10;
+            if ((prefijo != 978 && prefijo != 979) || suma13 % 10 != 0) {
+                return INVALIDO;
+            }
+            return valor;
+        }
+        return INVALIDO;
+    }
+
+    /**
+     * Verifica si un texto es un ISBN-10 o ISBN-13 válido, incluyendo el dígito verificador.
+     *
+     * @param isbn texto del ISBN
+     * @return true si es válido
+     */
+    public static boolean esValido(CharSequence isbn) {
+        return parse(isbn) != INVALIDO;
+    }
+
+    /**
+     * Obtiene la representación en texto (13 dígitos, sin guiones) de un ISBN-13 canónico.
+     *
+     * @param isbn13 ISBN-13 canónico devuelto por parse()
+     * @return los 13 dígitos del ISBN
+     * @throws IllegalArgumentException si el valor no es un ISBN-13 canónico
+     */
+    public static String formatear(long isbn13) {
+        long prefijo = isbn13 / DIEZ_A_LA_10;
+        if (prefijo != 978 && prefijo != 979) {
+            throw new IllegalArgumentException("No es un ISBN-13 canonico: " + isbn13);
+        }
+        return Long.toString(isbn13);
+    }
+
+}
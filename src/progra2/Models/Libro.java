@@ -1,9 +1,14 @@
 package progra2.Models;
 
+import java.util.function.LongFunction;
+
 /**
  * Modelo de dominio que representa un libro en el sistema de biblioteca.
  * Contiene información básica del libro y puede tener asociada una ficha bibliográfica.
  * Los campos obligatorios son título y autor; el resto son opcionales.
+ *
+ * La ficha puede cargarse de forma diferida: un libro leído sin su ficha conoce
+ * solo el ID de la ficha y la obtiene con su cargador la primera vez que se accede.
  */
 public class Libro extends BaseModel {
     
@@ -17,6 +22,10 @@ public class Libro extends BaseModel {
     private Integer anioEdicion;
     /** Ficha bibliográfica asociada al libro (opcional). */
     private FichaBibliografica fichaBibliografica;
+    /** ID de la ficha asociada cuando todavía no fue cargada (0 si no tiene ficha). */
+    private long fichaId;
+    /** Función que carga la ficha a partir de su ID en el primer acceso (opcional). */
+    private LongFunction<FichaBibliografica> cargadorFicha;
     
     /** 
      * Constructor completo para crear un libro con todos sus datos.
@@ -28,7 +37,7 @@ public class Libro extends BaseModel {
      * @param anioEdicion año de edición (opcional, puede ser null)
      * @param fichaBibliografica ficha bibliográfica asociada (opcional)
      */
-    public Libro(int id, String titulo, String autor, String editorial, Integer anioEdicion, FichaBibliografica fichaBibliografica) {
+    public Libro(long id, String titulo, String autor, String editorial, Integer anioEdicion, FichaBibliografica fichaBibliografica) {
         super(id, false);
         this.titulo = titulo;
         this.autor = autor;
@@ -42,6 +51,25 @@ public class Libro extends BaseModel {
         super();
     }
     
+    /**
+     * Constructor de copia. Crea un libro independiente con los mismos datos,
+     * incluyendo una copia de su ficha bibliográfica.
+     * 
+     * @param otro libro a copiar
+     */
+    public Libro(Libro otro) {
+        super(otro.getId(), otro.isEliminado());
+        this.titulo = otro.titulo;
+        this.autor = otro.autor;
+        this.editorial = otro.editorial;
+        this.anioEdicion = otro.anioEdicion;
+        this.fichaBibliografica = otro.fichaBibliografica != null
+                ? new FichaBibliografica(otro.fichaBibliografica) : null;
+        this.fichaId = otro.fichaId;
+        this.cargadorFicha = otro.cargadorFicha;
+        setVersion(otro.getVersion());
+    }
+    
     /** Obtiene el título del libro.
      * @return  Título del libro
      */
@@ -107,9 +135,14 @@ public class Libro extends BaseModel {
     }
     
     /** Obtiene la ficha bibliográfica de un libro.
-     * @return  Ficha bibliografica de un libro
+     * Si la ficha no fue cargada y el libro tiene un cargador, la carga en este momento.
+     * @return  Ficha bibliografica de un libro (null si no tiene o no pudo cargarse)
      */
     public FichaBibliografica getFichaBibliografica() {
+        if (fichaBibliografica == null && fichaId > 0 && cargadorFicha != null) {
+            fichaBibliografica = cargadorFicha.apply(fichaId);
+            cargadorFicha = null;
+        }
         return fichaBibliografica;
     }
     
@@ -120,6 +153,43 @@ public class Libro extends BaseModel {
      */
     public void setFichaBibliografica(FichaBibliografica fichaBibliografica) {
         this.fichaBibliografica = fichaBibliografica;
+        this.fichaId = 0;
+        this.cargadorFicha = null;
+    }
+    
+    /** Obtiene el ID de la ficha asociada sin cargarla.
+     * @return  ID de la ficha bibliográfica (0 si no tiene)
+     */
+    public long getFichaId() {
+        return fichaBibliografica != null ? fichaBibliografica.getId() : fichaId;
+    }
+    
+    /**
+     * Asocia la ficha al libro solo por su ID, sin cargarla.
+     * 
+     * @param fichaId ID de la ficha bibliográfica (0 si no tiene)
+     */
+    public void setFichaId(long fichaId) {
+        this.fichaBibliografica = null;
+        this.fichaId = fichaId;
+    }
+    
+    /**
+     * Indica si la ficha ya está disponible en memoria (o si el libro no tiene ficha).
+     * 
+     * @return true si getFichaBibliografica() no necesita consultar la base de datos
+     */
+    public boolean isFichaCargada() {
+        return fichaBibliografica != null || fichaId <= 0;
+    }
+    
+    /**
+     * Establece la función que carga la ficha diferida en el primer acceso.
+     * 
+     * @param cargadorFicha función que recibe el ID de la ficha y la devuelve
+     */
+    public void setCargadorFicha(LongFunction<FichaBibliografica> cargadorFicha) {
+        this.cargadorFicha = cargadorFicha;
     }
     
     /**
@@ -136,8 +206,9 @@ public class Libro extends BaseModel {
                 ", autor='" + autor + '\'' +
                 ", editorial='" + editorial + '\'' +
                 ", anioEdicion=" + anioEdicion +
-                ", fichaBibliografica=" + fichaBibliografica +
+                ", fichaBibliografica=" + (isFichaCargada() ? fichaBibliografica : "(sin cargar, id=" + fichaId + ")") +
                 ", eliminado=" + isEliminado() +
+                ", version=" + getVersion() +
                 '}';
     }
     
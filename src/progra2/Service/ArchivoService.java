@@ -0,0 +1,299 @@
+package progra2.Service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import progra2.Config.DatabaseConnection;
+import progra2.Config.RetryPolicy;
+import progra2.Config.TransactionManager;
+import progra2.DAO.ArchivoDAO;
+
+/**
+ * Servicio de archivado de filas eliminadas (separación de datos vivos y fríos).
+ *
+ * Los libros y fichas eliminados lógicamente hace más que el período de
+ * retención se mueven a las tablas *_archivo, de modo que las tablas vivas,
+ * sus índices y el buffer pool contienen solo filas en uso.
+ *
+ * El archivado trabaja por lotes acotados, cada uno en su propia transacción
+ * corta: bloquea un lote, lo copia al archivo, lo borra y confirma. Así nunca
+ * retiene locks sobre muchas filas ni por mucho tiempo, y si se interrumpe
+ * los lotes ya confirmados quedan archivados. Entre lotes hace una pausa
+ * breve para no competir con la carga de la aplicación.
+ *
+ * La configuración por defecto puede sobrescribirse mediante propiedades del sistema:
+ * - Darchivo.retencionDias: días que una fila eliminada permanece en la tabla viva
+ * - Darchivo.loteSize: filas por lote (por transacción)
+ * - Darchivo.pausaMs: pausa entre lotes en milisegundos
+ */
+public class ArchivoService {
+
+    /** Retención por defecto (días). Configurable via -Darchivo.retencionDias */
+    private static final int RETENCION_DIAS_DEFAULT = Integer.getInteger("archivo.retencionDias", 90);
+
+    /** Filas por lote por defecto. Configurable via -Darchivo.loteSize */
+    private static final int LOTE_SIZE_DEFAULT = Integer.getInteger("archivo.loteSize", 200);
+
+    /** Pausa entre lotes (ms). Configurable via -Darchivo.pausaMs */
+    private static final long PAUSA_MS = Long.getLong("archivo.pausaMs", 50L);
+
+    /** Tamaño máximo de lote admitido. */
+    private static final int MAX_LOTE_SIZE = 5000;
+
+    /** DAO para mover filas entre las tablas vivas y las de archivo. */
+    private final ArchivoDAO archivoDAO;
+
+    /** Política de reintento de los lotes ante deadlocks y esperas de lock agotadas. */
+    private final RetryPolicy retryPolicy = RetryPolicy.getDefault();
+
+    /**
+     * Constructor que recibe el DAO de archivo.
+     *
+     * @param archivoDAO DAO para operaciones de archivo
+     */
+    public ArchivoService(ArchivoDAO archivoDAO) {
+        if (archivoDAO == null) {
+            throw new IllegalArgumentException("ArchivoDAO no puede ser null");
+        }
+        this.archivoDAO = archivoDAO;
+    }
+
+    /**
+     * Obtiene la retención configurada por defecto.
+     *
+     * @return días de retención
+     */
+    public int getRetencionDiasDefault() {
+        return RETENCION_DIAS_DEFAULT;
+    }
+
+    /**
+     * Informa qué se archivaría con la retención indicada, sin modificar datos.
+     *
+     * @param retencionDias días que una fila eliminada permanece en la tabla viva
+     * @return resultado con las cantidades que se moverían
+     * @throws Exception si la retención es inválida o hay error en la consulta
+     */
+    public Resultado simular(int retencionDias) throws Exception {
+        Timestamp limite = calcularLimite(retencionDias);
+        long inicio = System.currentTimeMillis();
+
+        try (Connection conn = DatabaseConnection.getConnection()) {
+            int libros = archivoDAO.contarLibrosArchivables(limite, conn);
+            int fichas = archivoDAO.contarFichasArchivables(limite, conn);
+            return new Resultado(true, limite, libros, fichas, 0, System.currentTimeMillis() - inicio);
+        }
+    }
+
+    /**
+     * Archiva las filas eliminadas antes del período de retención por defecto,
+     * en lotes del tamaño por defecto.
+     *
+     * @return resultado con las cantidades movidas
+     * @throws Exception si hay error en algún lote
+     */
+    public Resultado archivar() throws Exception {
+        return archivar(RETENCION_DIAS_DEFAULT);
+    }
+
+    /**
+     * Archiva las filas eliminadas antes del período de retención indicado,
+     * en lotes del tamaño por defecto.
+     *
+     * @param retencionDias días que una fila eliminada permanece en la tabla viva
+     * @return resultado con las cantidades movidas
+     * @throws Exception si la retención es inválida o hay error en algún lote
+     */
+    public Resultado archivar(int retencionDias) throws Exception {
+        return archivar(retencionDias, LOTE_SIZE_DEFAULT);
+    }
+
+    /**
+     * Archiva las filas eliminadas antes del período de retención.
+     * Primero los libros y luego las fichas, que solo se archivan cuando
+     * ningún libro vivo las referencia.
+     * Si un lote falla, se revierte solo ese lote y se propaga el error.
+     *
+     * @param retencionDias días que una fila eliminada permanece en la tabla viva
+     * @param tamanioLote filas por lote (por transacción)
+     * @return resultado con las cantidades movidas
+     * @throws Exception si los parámetros son inválidos o hay error en algún lote
+     */
+    public Resultado archivar(int retencionDias, int tamanioLote) throws Exception {
+        Timestamp limite = calcularLimite(retencionDias);
+        if (tamanioLote <= 0 || tamanioLote > MAX_LOTE_SIZE) {
+            throw new IllegalArgumentException("El tamanio de lote debe estar entre 1 y " + MAX_LOTE_SIZE);
+        }
+        long inicio = System.currentTimeMillis();
+        int[] lotes = new int[1];
+
+        int libros = procesarLotes("archivarLibros", tamanioLote, lotes,
+                conn -> archivoDAO.archivarLibros(archivoDAO.bloquearLoteLibros(limite, tamanioLote, conn), conn));
+        int fichas = procesarLotes("archivarFichas", tamanioLote, lotes,
+                conn -> archivoDAO.archivarFichas(archivoDAO.bloquearLoteFichas(limite, tamanioLote, conn), conn));
+
+        return new Resultado(false, limite, libros, fichas, lotes[0], System.currentTimeMillis() - inicio);
+    }
+
+    /**
+     * Devuelve un libro archivado a la tabla viva, como no eliminado.
+     * Si su ficha también estaba archivada, la restaura en la misma TRANSACCIÓN.
+     *
+     * @param id ID del libro archivado
+     * @return true si se restauró, false si el libro no está en el archivo
+     * @throws Exception si el ID es inválido o hay error (por ejemplo, ISBN ya en uso)
+     */
+    public boolean restaurarLibro(long id) throws Exception {
+        if (id <= 0) {
+            throw new IllegalArgumentException("El ID debe ser un numero positivo mayor a cero");
+        }
+        return enTransaccion("restaurarLibro", conn -> archivoDAO.restaurarLibro(id, conn) ? 1 : 0) == 1;
+    }
+
+    /**
+     * Devuelve una ficha archivada a la tabla viva, como no eliminada.
+     *
+     * @param id ID de la ficha archivada
+     * @return true si se restauró, false si la ficha no está en el archivo
+     * @throws Exception si el ID es inválido o hay error (por ejemplo, ISBN ya en uso)
+     */
+    public boolean restaurarFicha(long id) throws Exception {
+        if (id <= 0) {
+            throw new IllegalArgumentException("El ID debe ser un numero positivo mayor a cero");
+        }
+        return enTransaccion("restaurarFicha", conn -> archivoDAO.restaurarFicha(id, conn) ? 1 : 0) == 1;
+    }
+
+
+    // ===================== Métodos auxiliares privados =====================
+
+    /**
+     * Calcula el instante límite: se archivan las filas eliminadas antes de él.
+     *
+     * @param retencionDias días de retención (no negativo)
+     * @return instante actual menos la retención
+     */
+    private Timestamp calcularLimite(int retencionDias) {
+        if (retencionDias < 0) {
+            throw new IllegalArgumentException("La retencion no puede ser negativa");
+        }
+        return Timestamp.from(Instant.now().minus(Duration.ofDays(retencionDias)));
+    }
+
+    /**
+     * Ejecuta un paso de archivado en transacciones sucesivas hasta que un lote
+     * venga incompleto (no quedan más filas archivables).
+     *
+     * @param operacion nombre de la operación (para los contadores de reintentos)
+     * @param tamanioLote filas por lote
+     * @param lotes contador de lotes confirmados (posición 0), acumulativo
+     * @param paso operación de un lote; devuelve las filas movidas
+     * @return total de filas movidas
+     * @throws Exception si un lote falla
+     */
+    private int procesarLotes(String operacion, int tamanioLote, int[] lotes, Paso paso) throws Exception {
+        int total = 0;
+        int movidas;
+        do {
+            movidas = enTransaccion(operacion, paso);
+            if (movidas > 0) {
+                total += movidas;
+                lotes[0]++;
+            }
+            if (movidas == tamanioLote && PAUSA_MS > 0) {
+                Thread.sleep(PAUSA_MS);
+            }
+        } while (movidas == tamanioLote);
+        return total;
+    }
+
+    /**
+     * Ejecuta una operación en una TRANSACCIÓN propia.
+     * Si falla, TransactionManager hace rollback al cerrarse; si abortó por
+     * deadlock o espera de lock agotada, se repite (ver RetryPolicy).
+     *
+     * @param operacion nombre de la operación (para los contadores de reintentos)
+     * @param paso operación a ejecutar
+     * @return resultado de la operación
+     * @throws Exception si la operación o el commit fallan
+     */
+    private int enTransaccion(String operacion, Paso paso) throws Exception {
+        return retryPolicy.execute(operacion, () -> {
+            try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
+                tm.startTransaction();
+                int resultado = paso.ejecutar(tm.getConnection());
+                tm.commit();
+                return resultado;
+            }
+        });
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /** Operación de archivo ejecutada dentro de una transacción. */
+    @FunctionalInterface
+    private interface Paso {
+        int ejecutar(Connection conn) throws SQLException;
+    }
+
+    /**
+     * Resultado de un archivado o de su simulación.
+     */
+    public static final class Resultado {
+
+        private final boolean simulacion;
+        private final Timestamp limite;
+        private final int libros;
+        private final int fichas;
+        private final int lotes;
+        private final long duracionMs;
+
+        private Resultado(boolean simulacion, Timestamp limite, int libros, int fichas, int lotes, long duracionMs) {
+            this.simulacion = simulacion;
+            this.limite = limite;
+            this.libros = libros;
+            this.fichas = fichas;
+            this.lotes = lotes;
+            this.duracionMs = duracionMs;
+        }
+
+        /** @return true si es una simulación (no se movieron filas) */
+        public boolean isSimulacion() {
+            return simulacion;
+        }
+
+        /** @return libros archivados (o que se archivarían) */
+        public int getLibros() {
+            return libros;
+        }
+
+        /** @return fichas archivadas (o que se archivarían) */
+        public int getFichas() {
+            return fichas;
+        }
+
+        /** @return transacciones confirmadas */
+        public int getLotes() {
+            return lotes;
+        }
+
+        /**
+         * Representación en texto del resultado.
+         *
+         * @return String con las cantidades y el límite usado
+         */
+        @Override
+        public String toString() {
+            if (simulacion) {
+                return String.format("Simulacion: se archivarian %d libros y %d fichas eliminados antes de %s (%d ms)",
+                        libros, fichas, limite, duracionMs);
+            }
+            return String.format("Archivados %d libros y %d fichas eliminados antes de %s en %d lotes (%d ms)",
+                    libros, fichas, limite, lotes, duracionMs);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package progra2.Service;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongFunction;
+import progra2.Models.FichaBibliografica;
+import progra2.Models.Libro;
+
+/**
+ * Cargador de fichas diferidas compartido por todos los libros de un mismo resultado.
+ *
+ * El primer acceso a la ficha de cualquiera de esos libros carga, en una sola
+ * operación (FichaBibliograficaService.getByIds), las fichas de todos ellos.
+ * Así, recorrer una lista leída con PlanCarga.SIN_FICHA y acceder a cada ficha
+ * cuesta una consulta por lote en lugar de una consulta por libro.
+ *
+ * Una ficha eliminada lógicamente se considera ausente (el libro queda sin ficha).
+ */
+final class CargaDiferidaFichas implements LongFunction<FichaBibliografica> {
+
+    /** Servicio con el que se cargan las fichas (usa su caché por ID). */
+    private final FichaBibliograficaService fichaService;
+    /** IDs de las fichas de todos los libros del resultado. */
+    private final Set<Long> fichaIds;
+    /** Fichas cargadas por ID; null hasta el primer acceso. Protegido por this. */
+    private Map<Long, FichaBibliografica> fichas;
+
+    private CargaDiferidaFichas(FichaBibliograficaService fichaService, Set<Long> fichaIds) {
+        this.fichaService = fichaService;
+        this.fichaIds = fichaIds;
+    }
+
+    /**
+     * Asocia un cargador común a los libros de la lista cuya ficha no está cargada.
+     * No consulta la base de datos: la carga ocurre en el primer acceso a una ficha.
+     *
+     * @param libros libros de un mismo resultado
+     * @param fichaService servicio con el que se cargarán las fichas
+     * @return la misma lista, para encadenar
+     */
+    static List<Libro> asociar(List<Libro> libros, FichaBibliograficaService fichaService) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Libro libro : libros) {
+            if (!libro.isFichaCargada()) {
+                ids.add(libro.getFichaId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return libros;
+        }
+
+        CargaDiferidaFichas carga = new CargaDiferidaFichas(fichaService, ids);
+        for (Libro libro : libros) {
+            if (!libro.isFichaCargada()) {
+                libro.setCargadorFicha(carga);
+            }
+        }
+        return libros;
+    }
+
+    /**
+     * Obtiene la ficha con el ID indicado, cargando todas las del lote en el primer llamado.
+     *
+     * @param fichaId ID de la ficha
+     * @return la ficha o null si no existe o está eliminada
+     * @throws IllegalStateException si hay error al consultar la base de datos
+     */
+    @Override
+    public synchronized FichaBibliografica apply(long fichaId) {
+        if (fichas == null) {
+            try {
+                fichas = fichaService.getByIds(fichaIds);
+            } catch (Exception e) {
+                throw new IllegalStateException("Error al cargar las fichas bibliograficas: " + e.getMessage(), e);
+            }
+        }
+        return fichas.get(fichaId);
+    }
+
+}
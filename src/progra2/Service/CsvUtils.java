@@ -0,0 +1,216 @@
+package progra2.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utilidades para leer y escribir CSV (RFC 4180).
+ *
+ * Los campos pueden ir entre comillas dobles; dentro de ellas, el separador y
+ * los saltos de línea son parte del valor y una comilla se escribe duplicada ("").
+ * La lectura se divide en dos pasos para poder paralelizarla: LectorRegistros
+ * separa el texto de cada registro (secuencial y barato: solo sigue las
+ * comillas) y dividir() lo descompone en campos.
+ */
+public final class CsvUtils {
+
+    /**
+     * Constructor privado para prevenir instanciación.
+     *
+     * @throws UnsupportedOperationException siempre que se intente instanciar
+     */
+    private CsvUtils() {
+        throw new UnsupportedOperationException("Esta es una clase utilitaria y no debe ser instanciada");
+    }
+
+    /**
+     * Detecta el separador de un archivo a partir de su encabezado:
+     * punto y coma (planillas en configuración regional española) o coma.
+     *
+     * @param encabezado primera línea del archivo
+     * @return ';' si el encabezado lo usa y no tiene comas, ',' en otro caso
+     */
+    public static char detectarSeparador(String encabezado) {
+        return encabezado.indexOf(';') >= 0 && encabezado.indexOf(',') < 0 ? ';' : ',';
+    }
+
+    /**
+     * Divide el texto de un registro en sus campos.
+     *
+     * @param registro texto del registro, sin el salto de línea final
+     * @param separador separador de campos
+     * @return valores de los campos, sin comillas envolventes
+     * @throws IllegalArgumentException si hay comillas sin cerrar o texto tras una comilla de cierre
+     */
+    public static List<String> dividir(String registro, char separador) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        int i = 0;
+        int largo = registro.length();
+
+        while (true) {
+            if (i < largo && registro.charAt(i) == '"') {
+                // Campo entre comillas
+                i++;
+                while (true) {
+                    if (i >= largo) {
+                        throw new IllegalArgumentException("Comillas sin cerrar");
+                    }
+                    char c = registro.charAt(i++);
+                    if (c == '"') {
+                        if (i < largo && registro.charAt(i) == '"') {
+                            campo.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        campo.append(c);
+                    }
+                }
+                if (i < largo && registro.charAt(i) != separador) {
+                    throw new IllegalArgumentException("Texto inesperado despues de las comillas en la columna " + (campos.size() + 1));
+                }
+            } else {
+                int fin = registro.indexOf(separador, i);
+                fin = fin < 0 ? largo : fin;
+                campo.append(registro, i, fin);
+                i = fin;
+            }
+
+            campos.add(campo.toString());
+            campo.setLength(0);
+            if (i >= largo) {
+                return campos;
+            }
+            i++; // saltear el separador
+        }
+    }
+
+    /**
+     * Escribe un valor como campo CSV, entre comillas solo si lo necesita.
+     * Un valor null se escribe como campo vacío.
+     *
+     * @param out destino
+     * @param valor valor del campo
+     * @param separador separador de campos
+     * @throws IOException si hay error de escritura
+     */
+    public static void escribirCampo(Appendable out, String valor, char separador) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        if (!requiereComillas(valor, separador)) {
+            out.append(valor);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    /**
+     * Verifica si un valor debe ir entre comillas.
+     *
+     * @param valor valor del campo
+     * @param separador separador de campos
+     * @return true si contiene el separador, comillas o saltos de línea
+     */
+    private static boolean requiereComillas(String valor, char separador) {
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == separador || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /**
+     * Lector secuencial de registros CSV.
+     * Un registro ocupa una línea, salvo que un campo entre comillas contenga
+     * saltos de línea: en ese caso se unen las líneas hasta cerrar las comillas.
+     */
+    public static final class LectorRegistros {
+
+        /** Origen del texto. */
+        private final BufferedReader reader;
+        /** Líneas físicas leídas hasta el momento. */
+        private long lineasLeidas;
+        /** Línea física (base 1) donde empieza el último registro leído. */
+        private long lineaRegistro;
+
+        /**
+         * Crea un lector sobre un origen ya abierto (no lo cierra).
+         *
+         * @param reader origen del texto
+         */
+        public LectorRegistros(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        /**
+         * Lee el próximo registro.
+         *
+         * @return texto del registro o null al final del archivo
+         * @throws IOException si hay error de lectura
+         */
+        public String siguiente() throws IOException {
+            String linea = reader.readLine();
+            if (linea == null) {
+                return null;
+            }
+            lineaRegistro = ++lineasLeidas;
+            if (comillasBalanceadas(linea)) {
+                return linea;
+            }
+
+            StringBuilder registro = new StringBuilder(linea);
+            // Una línea con cantidad impar de comillas cierra el campo abierto
+            boolean abiertas = true;
+            while (abiertas && (linea = reader.readLine()) != null) {
+                lineasLeidas++;
+                registro.append('\n').append(linea);
+                abiertas = comillasBalanceadas(linea);
+            }
+            return registro.toString();
+        }
+
+        /**
+         * Obtiene la línea física donde empieza el último registro leído.
+         *
+         * @return número de línea (base 1)
+         */
+        public long getLineaRegistro() {
+            return lineaRegistro;
+        }
+
+        /**
+         * Indica si un texto tiene una cantidad par de comillas.
+         *
+         * @param texto texto a revisar
+         * @return true si las comillas quedan cerradas al final del texto
+         */
+        private static boolean comillasBalanceadas(String texto) {
+            boolean balanceadas = true;
+            for (int i = 0; i < texto.length(); i++) {
+                if (texto.charAt(i) == '"') {
+                    balanceadas = !balanceadas;
+                }
+            }
+            return balanceadas;
+        }
+    }
+
+}
@@ -0,0 +1,336 @@
+package progra2.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.zip.GZIPOutputStream;
+import progra2.Config.DatabaseConnection;
+import progra2.Config.TransactionManager;
+import progra2.DAO.LibroDAO;
+import progra2.DAO.RowHandler;
+
+/**
+ * Servicio de exportación del catálogo (libros con su ficha) a CSV o JSON Lines.
+ *
+ * Las filas pasan del ResultSet al archivo sin crear objetos Libro ni listas
+ * intermedias: la memoria usada es constante sin importar el tamaño del catálogo.
+ * La consulta corre en una transacción de solo lectura con snapshot consistente,
+ * de modo que el archivo refleja el catálogo en un único instante aunque otras
+ * sesiones lo modifiquen durante la exportación.
+ *
+ * Se escribe primero un archivo temporal que se renombra al terminar:
+ * una exportación interrumpida no deja un archivo incompleto con el nombre final.
+ *
+ * La configuración por defecto puede sobrescribirse mediante propiedades del sistema:
+ * - Dexportacion.fetchSize: filas por viaje al servidor (0 para streaming fila por fila)
+ */
+public class ExportacionService {
+
+    /** Filas por viaje al servidor. Configurable via -Dexportacion.fetchSize */
+    private static final int FETCH_SIZE = Integer.getInteger("exportacion.fetchSize", 0);
+
+    /** Tamaño de los buffers de escritura (bytes y caracteres). */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Intervalo mínimo entre dos informes de progreso (ms). */
+    private static final long INTERVALO_PROGRESO_MS = 2000;
+
+    /** Formatos de exportación soportados. */
+    public enum Formato {
+        /** Valores separados por coma con encabezado (RFC 4180). */
+        CSV("csv"),
+        /** Un objeto JSON por línea. */
+        JSONL("jsonl");
+
+        private final String extension;
+
+        Formato(String extension) {
+            this.extension = extension;
+        }
+
+        /** @return extensión de archivo habitual del formato (sin punto) */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /** DAO de libros con la consulta de exportación. */
+    private final LibroDAO libroDAO;
+
+    /**
+     * Constructor que recibe el DAO de libros.
+     *
+     * @param libroDAO DAO para la consulta de exportación
+     */
+    public ExportacionService(LibroDAO libroDAO) {
+        if (libroDAO == null) {
+            throw new IllegalArgumentException("LibroDAO no puede ser null");
+        }
+        this.libroDAO = libroDAO;
+    }
+
+    /**
+     * Exporta los libros no eliminados con su ficha, ordenados por ID.
+     *
+     * @param destino archivo a generar (se reemplaza si existe)
+     * @param formato CSV o JSONL
+     * @param gzip true para comprimir la salida con gzip
+     * @return resultado con las filas y bytes escritos
+     * @throws Exception si los parámetros son inválidos o hay error en la consulta o la escritura
+     */
+    public Resultado exportar(Path destino, Formato formato, boolean gzip) throws Exception {
+        if (destino == null) {
+            throw new IllegalArgumentException("El archivo destino no puede ser null");
+        }
+        if (formato == null) {
+            throw new IllegalArgumentException("El formato no puede ser null");
+        }
+        Path absoluto = destino.toAbsolutePath();
+        if (Files.isDirectory(absoluto)) {
+            throw new IllegalArgumentException("El destino es un directorio: " + absoluto);
+        }
+        Path temporal = absoluto.resolveSibling(absoluto.getFileName() + ".tmp");
+        long inicio = System.currentTimeMillis();
+        long filas;
+
+        try {
+            try (Writer out = abrir(temporal, gzip);
+                 TransactionManager tm = new TransactionManager(DatabaseConnection.getReadConnection())) {
+                Connection conn = tm.getConnection();
+                tm.startReadOnlyTransaction(TransactionManager.Isolation.CONSISTENT_SNAPSHOT);
+
+                Escritor escritor = formato == Formato.CSV ? new EscritorCsv(out) : new EscritorJsonl(out);
+                escritor.escribirEncabezado();
+                filas = libroDAO.exportar(FETCH_SIZE, escritor, conn);
+                tm.commit();
+            }
+            Files.move(temporal, absoluto, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+
+        Resultado resultado = new Resultado(absoluto, formato, gzip, filas, Files.size(absoluto),
+                System.currentTimeMillis() - inicio);
+        System.out.println(resultado);
+        return resultado;
+    }
+
+
+    // ===================== Métodos auxiliares privados =====================
+
+    /**
+     * Abre el archivo de salida con buffers y, opcionalmente, compresión gzip.
+     *
+     * @param archivo archivo a crear (se reemplaza si existe)
+     * @param gzip true para comprimir
+     * @return escritor UTF-8 con buffer
+     * @throws IOException si el archivo no puede crearse
+     */
+    private static Writer abrir(Path archivo, boolean gzip) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(archivo), BUFFER_SIZE);
+        if (gzip) {
+            out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /**
+     * Escribe cada fila del ResultSet en la salida e informa el progreso.
+     * Lee las columnas por posición, en el orden de LibroDAO.COLUMNAS_EXPORTACION.
+     */
+    private abstract static class Escritor implements RowHandler {
+
+        protected final Writer out;
+        private final long inicio = System.currentTimeMillis();
+        private long filas;
+        private long ultimoInforme = inicio;
+
+        protected Escritor(Writer out) {
+            this.out = out;
+        }
+
+        /** Escribe lo que precede a las filas (por ejemplo, el encabezado CSV). */
+        void escribirEncabezado() throws IOException {
+        }
+
+        /** Escribe la fila actual del ResultSet. */
+        protected abstract void escribirFila(ResultSet rs) throws Exception;
+
+        @Override
+        public void procesar(ResultSet rs) throws Exception {
+            escribirFila(rs);
+            if ((++filas & 0x3FF) == 0) {
+                informarProgreso();
+            }
+        }
+
+        private void informarProgreso() {
+            long ahora = System.currentTimeMillis();
+            if (ahora - ultimoInforme < INTERVALO_PROGRESO_MS) {
+                return;
+            }
+            ultimoInforme = ahora;
+            System.out.printf("  %,d filas exportadas - %,.0f filas/s%n",
+                    filas, filas * 1000.0 / Math.max(1, ahora - inicio));
+        }
+    }
+
+    /** Escritor CSV: encabezado con los nombres de columna y una línea por libro. */
+    private static final class EscritorCsv extends Escritor {
+
+        private EscritorCsv(Writer out) {
+            super(out);
+        }
+
+        @Override
+        void escribirEncabezado() throws IOException {
+            out.write(String.join(",", LibroDAO.COLUMNAS_EXPORTACION));
+            out.write('\n');
+        }
+
+        @Override
+        protected void escribirFila(ResultSet rs) throws Exception {
+            for (int i = 1; i <= LibroDAO.COLUMNAS_EXPORTACION.length; i++) {
+                if (i > 1) {
+                    out.write(',');
+                }
+                CsvUtils.escribirCampo(out, rs.getString(i), ',');
+            }
+            out.write('\n');
+        }
+    }
+
+    /** Escritor JSON Lines: un objeto por libro; los números sin comillas y los nulos como null. */
+    private static final class EscritorJsonl extends Escritor {
+
+        /** Indica por columna si su valor es numérico (se calcula con la primera fila). */
+        private boolean[] numerica;
+
+        private EscritorJsonl(Writer out) {
+            super(out);
+        }
+
+        @Override
+        protected void escribirFila(ResultSet rs) throws Exception {
+            if (numerica == null) {
+                numerica = columnasNumericas(rs.getMetaData());
+            }
+            out.write('{');
+            for (int i = 1; i <= LibroDAO.COLUMNAS_EXPORTACION.length; i++) {
+                if (i > 1) {
+                    out.write(',');
+                }
+                out.write('"');
+                out.write(LibroDAO.COLUMNAS_EXPORTACION[i - 1]);
+                out.write("\":");
+                String valor = rs.getString(i);
+                if (valor == null) {
+                    out.write("null");
+                } else if (numerica[i - 1]) {
+                    out.write(valor);
+                } else {
+                    escribirTextoJson(valor);
+                }
+            }
+            out.write("}\n");
+        }
+
+        /** Escribe un texto JSON entre comillas, escapando comillas, barras y caracteres de control. */
+        private void escribirTextoJson(String valor) throws IOException {
+            out.write('"');
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                switch (c) {
+                    case '"' -> out.write("\\\"");
+                    case '\\' -> out.write("\\\\");
+                    case '\n' -> out.write("\\n");
+                    case '\r' -> out.write("\\r");
+                    case '\t' -> out.write("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            out.write(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.write(c);
+                        }
+                    }
+                }
+            }
+            out.write('"');
+        }
+
+        private static boolean[] columnasNumericas(ResultSetMetaData md) throws Exception {
+            boolean[] numerica = new boolean[LibroDAO.COLUMNAS_EXPORTACION.length];
+            for (int i = 0; i < numerica.length; i++) {
+                int tipo = md.getColumnType(i + 1);
+                numerica[i] = tipo == Types.BIGINT || tipo == Types.INTEGER || tipo == Types.SMALLINT
+                        || tipo == Types.TINYINT;
+            }
+            return numerica;
+        }
+    }
+
+    /**
+     * Resultado de una exportación.
+     */
+    public static final class Resultado {
+
+        private final Path archivo;
+        private final Formato formato;
+        private final boolean gzip;
+        private final long filas;
+        private final long bytes;
+        private final long duracionMs;
+
+        private Resultado(Path archivo, Formato formato, boolean gzip, long filas, long bytes, long duracionMs) {
+            this.archivo = archivo;
+            this.formato = formato;
+            this.gzip = gzip;
+            this.filas = filas;
+            this.bytes = bytes;
+            this.duracionMs = duracionMs;
+        }
+
+        /** @return archivo generado */
+        public Path getArchivo() {
+            return archivo;
+        }
+
+        /** @return libros exportados */
+        public long getFilas() {
+            return filas;
+        }
+
+        /** @return tamaño del archivo generado en bytes */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Representación en texto del resultado.
+         *
+         * @return String con el archivo, las cantidades y el rendimiento
+         */
+        @Override
+        public String toString() {
+            return String.format("Exportados %,d libros a %s (%s%s, %,d bytes) en %,d ms (%,.0f filas/s)",
+                    filas, archivo, formato, gzip ? " + gzip" : "", bytes, duracionMs,
+                    filas * 1000.0 / Math.max(1, duracionMs));
+        }
+    }
+
+}
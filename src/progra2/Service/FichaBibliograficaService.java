@@ -1,19 +1,39 @@
 package progra2.Service;
 
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongConsumer;
+import progra2.Config.EntityCache;
 import progra2.DAO.FichaBibliograficaDAO;
 import progra2.Models.FichaBibliografica;
+import progra2.Models.ISBNUtils;
 
 /**
  * Servicio de negocio para la gestión de fichas bibliográficas.
  * Encapsula validaciones de reglas de negocio antes de delegar al DAO.
  * Soporta transacciones mediante conexiones externas.
+ * Las lecturas por ID pasan por una caché en memoria que se invalida
+ * en cada actualización o eliminación.
  */
 public class FichaBibliograficaService implements GenericService<FichaBibliografica> {
     
     /** DAO para operaciones de persistencia de fichas bibliográficas. */
     private final FichaBibliograficaDAO fichaDAO;
+    /** Tamaño máximo de página admitido en las consultas paginadas. */
+    private static final int MAX_PAGE_SIZE = 500;
+    /** Código de error de MySQL para una clave única duplicada. */
+    private static final int ER_DUP_ENTRY = 1062;
+    /** Caché de lectura de fichas por ID. */
+    private final EntityCache<Long, FichaBibliografica> cache =
+            new EntityCache<>("fichas", FichaBibliografica::new);
+    /** Listeners notificados con el ID de cada ficha modificada o eliminada. */
+    private final List<LongConsumer> listenersModificacion = new CopyOnWriteArrayList<>();
     
     /**
      * Constructor que recibe el DAO necesario para operaciones de persistencia.
@@ -42,7 +62,11 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
     public void insertar(FichaBibliografica ficha) throws Exception {
         validarFichaParaInsercion(ficha);
         normalizarFicha(ficha);
-        fichaDAO.insertar(ficha);
+        try {
+            fichaDAO.insertar(ficha);
+        } catch (SQLException e) {
+            throw traducirISBNDuplicado(e, ficha.getIsbn());
+        }
     }
     
     /**
@@ -57,7 +81,13 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
     public void actualizar(FichaBibliografica ficha) throws Exception {
         validarFichaParaActualizacion(ficha);
         normalizarFicha(ficha);
-        fichaDAO.actualizar(ficha);
+        try {
+            fichaDAO.actualizar(ficha);
+        } catch (SQLException e) {
+            throw traducirISBNDuplicado(e, ficha.getIsbn());
+        } finally {
+            invalidarCache(ficha.getId());
+        }
     }
     
     /**
@@ -69,16 +99,21 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
      * @throws Exception si hay error en la eliminación
      */
     @Override
-    public void eliminar(int id) throws Exception {
+    public void eliminar(long id) throws Exception {
         if (id <= 0) {
             throw new IllegalArgumentException("El ID debe ser un numero positivo mayor a cero");
         }
-        fichaDAO.eliminar(id);
+        try {
+            fichaDAO.eliminar(id);
+        } finally {
+            invalidarCache(id);
+        }
     }
     
     /**
      * Obtiene una ficha bibliográfica por su ID.
-     * Crea su propia conexión y la cierra automáticamente.
+     * Se resuelve desde la caché si la ficha fue leída recientemente;
+     * si no, crea su propia conexión y la cierra automáticamente.
      * 
      * @param id identificador de la ficha
      * @return la ficha encontrada o null si no existe
@@ -86,11 +121,40 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
      * @throws Exception si hay error en la consulta
      */
     @Override
-    public FichaBibliografica getById(int id) throws Exception {
+    public FichaBibliografica getById(long id) throws Exception {
         if (id <= 0) {
             throw new IllegalArgumentException("El ID debe ser un numero positivo mayor a cero");
         }
-        return fichaDAO.getById(id);
+        return cache.get(id, fichaDAO::getById);
+    }
+    
+    /**
+     * Obtiene varias fichas bibliográficas por sus IDs.
+     * Las fichas cacheadas se resuelven en memoria y las restantes se leen
+     * todas juntas con consultas IN (...) por bloques, evitando una consulta por ficha.
+     * 
+     * @param ids identificadores de las fichas (los repetidos se ignoran)
+     * @return fichas encontradas indexadas por ID, en el orden solicitado (las inexistentes se omiten)
+     * @throws IllegalArgumentException si la colección es null o contiene un ID inválido
+     * @throws Exception si hay error en la consulta
+     */
+    public Map<Long, FichaBibliografica> getByIds(Collection<Long> ids) throws Exception {
+        validarIds(ids);
+        return cache.getAll(ids, fichaDAO::getByIds);
+    }
+    
+    /**
+     * Obtiene una ficha bibliográfica por su ISBN.
+     * El ISBN se convierte a su forma canónica, por lo que se encuentra la ficha
+     * sin importar los guiones ni si se ingresa como ISBN-10 o ISBN-13.
+     * 
+     * @param isbn ISBN-10 o ISBN-13, con o sin guiones
+     * @return la ficha encontrada o null si no existe
+     * @throws IllegalArgumentException si el ISBN está vacío o no es válido
+     * @throws Exception si hay error en la consulta
+     */
+    public FichaBibliografica getByIsbn(String isbn) throws Exception {
+        return fichaDAO.getByIsbn(parseISBNBusqueda(isbn));
     }
     
     /**
@@ -105,6 +169,25 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
         return fichaDAO.getAll();
     }
     
+    /**
+     * Obtiene una página de fichas no eliminadas ordenadas por ID.
+     * 
+     * @param afterId último ID de la página anterior (0 para la primera página)
+     * @param pageSize cantidad de fichas por página (entre 1 y 500)
+     * @return página de fichas (vacía si no hay más)
+     * @throws IllegalArgumentException si los parámetros son inválidos
+     * @throws Exception si hay error en la consulta
+     */
+    public List<FichaBibliografica> getPage(long afterId, int pageSize) throws Exception {
+        if (afterId < 0) {
+            throw new IllegalArgumentException("El ID de inicio de pagina no puede ser negativo");
+        }
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("El tamanio de pagina debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+        return fichaDAO.getPage(afterId, pageSize);
+    }
+    
     
     // ======================= Métodos con transaccion =======================
     
@@ -120,7 +203,80 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
     public void insertar(FichaBibliografica ficha, Connection conn) throws Exception {
         validarFichaParaInsercion(ficha);
         normalizarFicha(ficha);
-        fichaDAO.insertar(ficha, conn);
+        try {
+            fichaDAO.insertar(ficha, conn);
+        } catch (SQLException e) {
+            throw traducirISBNDuplicado(e, ficha.getIsbn());
+        }
+    }
+    
+    
+    /**
+     * Valida y normaliza una ficha nueva sin consultar la base de datos.
+     * No modifica estado compartido: puede invocarse desde varios hilos sobre
+     * fichas distintas. La unicidad del ISBN la verifica la restricción UNIQUE
+     * al insertar.
+     * 
+     * @param ficha la ficha a validar
+     * @throws IllegalArgumentException si alguna validación falla
+     */
+    public void prepararParaInsercion(FichaBibliografica ficha) {
+        validarFichaParaInsercion(ficha);
+        normalizarFicha(ficha);
+    }
+    
+    /**
+     * Inserta varias fichas por lotes dentro de una transacción existente.
+     * Valida el formato de cada ficha y que no haya ISBN repetidos dentro de la lista
+     * (comparando su forma canónica ISBN-13, de modo que un ISBN-10 y su ISBN-13
+     * equivalente cuentan como repetidos);
+     * la unicidad contra la base de datos la garantiza la restricción UNIQUE del ISBN
+     * (un duplicado hace fallar el lote con IllegalArgumentException y la transacción
+     * debe revertirse).
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param fichas las fichas a insertar
+     * @param conn la conexión con transacción activa
+     * @throws IllegalArgumentException si alguna ficha es inválida o hay ISBN repetidos en la lista
+     * @throws Exception si hay error en la inserción
+     */
+    public void insertarBatch(List<FichaBibliografica> fichas, Connection conn) throws Exception {
+        if (fichas == null) {
+            throw new IllegalArgumentException("La lista de fichas no puede ser null");
+        }
+        
+        for (FichaBibliografica ficha : fichas) {
+            validarCamposFicha(ficha);
+            normalizarFicha(ficha);
+        }
+        insertarBatchPreparadas(fichas, conn);
+    }
+    
+    /**
+     * Inserta por lotes fichas ya validadas y normalizadas con prepararParaInsercion
+     * (por ejemplo, en los hilos de validación de ImportacionService), sin volver a
+     * validarlas. Solo verifica que no haya ISBN repetidos dentro de la lista, que
+     * depende del conjunto y no de cada ficha.
+     * No cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param fichas las fichas a insertar, ya preparadas
+     * @param conn la conexión con transacción activa
+     * @throws IllegalArgumentException si hay ISBN repetidos en la lista
+     * @throws Exception si hay error en la inserción
+     */
+    void insertarBatchPreparadas(List<FichaBibliografica> fichas, Connection conn) throws Exception {
+        Set<Long> isbnsVistos = new HashSet<>();
+        for (FichaBibliografica ficha : fichas) {
+            if (ficha.getIsbn() != null && !ficha.getIsbn().isEmpty()
+                    && !isbnsVistos.add(ISBNUtils.parse(ficha.getIsbn()))) {
+                throw new IllegalArgumentException("El ISBN " + ficha.getIsbn() + " esta repetido en el lote");
+            }
+        }
+        try {
+            fichaDAO.insertarBatch(fichas, conn);
+        } catch (SQLException e) {
+            throw traducirISBNDuplicado(e, null);
+        }
     }
     
     
@@ -136,7 +292,13 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
     public void actualizar(FichaBibliografica ficha, Connection conn) throws Exception {
         validarFichaParaActualizacion(ficha);
         normalizarFicha(ficha);
-        fichaDAO.actualizar(ficha, conn);
+        try {
+            fichaDAO.actualizar(ficha, conn);
+        } catch (SQLException e) {
+            throw traducirISBNDuplicado(e, ficha.getIsbn());
+        } finally {
+            invalidarCache(ficha.getId());
+        }
     }
     
     
@@ -149,11 +311,15 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
      * @throws IllegalArgumentException si el ID es inválido
      * @throws Exception si hay error en la eliminación
      */
-    public void eliminar(int id, Connection conn) throws Exception {
+    public void eliminar(long id, Connection conn) throws Exception {
         if (id <= 0) {
             throw new IllegalArgumentException("El ID debe ser un numero positivo o mayor a cero");
         }
-        fichaDAO.eliminar(id, conn);
+        try {
+            fichaDAO.eliminar(id, conn);
+        } finally {
+            invalidarCache(id);
+        }
     }
     
     
@@ -167,13 +333,98 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
      * @throws IllegalArgumentException si el ID es inválido
      * @throws Exception si hay error en la consulta
      */
-    public FichaBibliografica getById(int id, Connection conn) throws Exception {
+    public FichaBibliografica getById(long id, Connection conn) throws Exception {
         if (id <= 0) {
             throw new IllegalArgumentException("El ID deber ser un numero positivo mayor o cero");
         }
         return fichaDAO.getById(id, conn);
     }
     
+    /**
+     * Obtiene varias fichas por sus IDs dentro de una transacción existente.
+     * No usa la caché ni cierra la conexión (debe ser manejada por el llamador).
+     * 
+     * @param ids identificadores de las fichas (los repetidos se ignoran)
+     * @param conn la conexión con transacción activa
+     * @return fichas encontradas indexadas por ID, en el orden solicitado
+     * @throws IllegalArgumentException si la colección es null o contiene un ID inválido
+     * @throws Exception si hay error en la consulta
+     */
+    public Map<Long, FichaBibliografica> getByIds(Collection<Long> ids, Connection conn) throws Exception {
+        validarIds(ids);
+        return fichaDAO.getByIds(ids, conn);
+    }    
+    
+    // ===================== Verificaciones interactivas =====================
+    
+    /**
+     * Verifica si ya existe una ficha con el ISBN dado.
+     * Es solo una verificación previa opcional para dar respuesta inmediata en
+     * la interfaz: insertar y actualizar no la usan, la unicidad la garantiza
+     * la restricción UNIQUE del ISBN.
+     * 
+     * @param isbn el ISBN a verificar
+     * @return true si existe, false en caso contrario
+     * @throws Exception si hay error en la consulta
+     */
+    public boolean existeISBN(String isbn) throws Exception {
+        return fichaDAO.existeISBN(isbn);
+    }
+    
+    /**
+     * Verifica si existe otra ficha (distinta de idActual) con el ISBN dado.
+     * Verificación previa opcional para la interfaz, al igual que existeISBN.
+     * 
+     * @param isbn el ISBN a verificar
+     * @param idActual ID de la ficha que se está editando
+     * @return true si otra ficha tiene ese ISBN, false en caso contrario
+     * @throws Exception si hay error en la consulta
+     */
+    public boolean existeISBNExceptoId(String isbn, long idActual) throws Exception {
+        return fichaDAO.existeISBNExceptoId(isbn, idActual);
+    }
+    
+    
+    // ============================ Caché por ID ============================
+    
+    /**
+     * Invalida la ficha cacheada con el ID indicado y notifica a los listeners.
+     * Los métodos transaccionales invalidan al modificar, pero como otro hilo
+     * puede volver a leer la versión anterior antes del commit, quien confirma
+     * la transacción debe invalidar de nuevo luego del commit o rollback.
+     * 
+     * @param id identificador de la ficha modificada
+     */
+    public void invalidarCache(long id) {
+        cache.invalidate(id);
+        for (LongConsumer listener : listenersModificacion) {
+            listener.accept(id);
+        }
+    }
+    
+    /**
+     * Registra un listener que recibe el ID de cada ficha modificada o eliminada.
+     * Permite a otros servicios invalidar sus propias cachés que contienen la ficha
+     * (por ejemplo, los libros cacheados con su ficha asociada).
+     * 
+     * @param listener función que recibe el ID de la ficha
+     */
+    public void agregarListenerModificacion(LongConsumer listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("El listener no puede ser null");
+        }
+        listenersModificacion.add(listener);
+    }
+    
+    /**
+     * Obtiene las estadísticas de la caché de fichas.
+     * 
+     * @return aciertos, fallos, desalojos y tiempo de carga acumulados
+     */
+    public EntityCache.Stats getCacheStats() {
+        return cache.getStats();
+    }
+    
     
     // ==================== Métodos de Validación Privados ====================
     
@@ -201,19 +452,95 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
     
     /**
      * Valida todas las reglas de negocio para insertar una ficha nueva.
+     * La ficha debe tener campos válidos (ver validarCamposFicha).
+     * La unicidad del ISBN no se consulta aquí: la verifica la restricción UNIQUE
+     * al insertar (ver traducirISBNDuplicado).
+     * 
+     * @param ficha la ficha a validar
+     * @throws IllegalArgumentException si alguna validación falla
+     */
+    private void validarFichaParaInsercion(FichaBibliografica ficha) {
+        validarCamposFicha(ficha);
+    }
+    
+    /**
+     * Convierte el ISBN de una búsqueda a su forma canónica.
+     * 
+     * @param isbn ISBN ingresado
+     * @return ISBN-13 canónico
+     * @throws IllegalArgumentException si el ISBN está vacío o no es válido
+     */
+    static long parseISBNBusqueda(String isbn) {
+        if (isbn == null || isbn.trim().isEmpty()) {
+            throw new IllegalArgumentException("El ISBN de busqueda no puede estar vacio");
+        }
+        long isbn13 = ISBNUtils.parse(isbn);
+        if (isbn13 == ISBNUtils.INVALIDO) {
+            throw new IllegalArgumentException("El ISBN " + isbn.trim() + " no es un ISBN-10 o ISBN-13 valido");
+        }
+        return isbn13;
+    }
+    
+    /**
+     * Valida una colección de IDs para una búsqueda por lotes.
+     * 
+     * @param ids IDs solicitados
+     * @throws IllegalArgumentException si la colección es null o algún ID es null o no positivo
+     */
+    static void validarIds(Collection<Long> ids) {
+        if (ids == null) {
+            throw new IllegalArgumentException("La coleccion de IDs no puede ser null");
+        }
+        for (Long id : ids) {
+            if (id == null || id <= 0) {
+                throw new IllegalArgumentException("Todos los IDs deben ser numeros positivos mayores a cero");
+            }
+        }
+    }
+    
+    /**
+     * Traduce la violación de la restricción UNIQUE del ISBN a la excepción de dominio.
+     * Cualquier otro error se devuelve sin cambios.
+     * Recorre la cadena de causas porque en los lotes el error de clave
+     * duplicada llega envuelto en un BatchUpdateException.
+     * 
+     * @param e error de la sentencia
+     * @param isbn ISBN de la ficha (null si no se conoce, por ejemplo en un lote)
+     * @return IllegalArgumentException si es un ISBN duplicado, o el mismo error en otro caso
+     */
+    private static Exception traducirISBNDuplicado(SQLException e, String isbn) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLException) {
+                SQLException sqlEx = (SQLException) t;
+                String mensaje = sqlEx.getMessage();
+                if (sqlEx.getErrorCode() == ER_DUP_ENTRY && mensaje != null && mensaje.contains("isbn")) {
+                    if (isbn == null) {
+                        // Mensaje de MySQL: Duplicate entry '<valor>' for key '<indice>'
+                        int inicio = mensaje.indexOf('\'');
+                        int fin = inicio >= 0 ? mensaje.indexOf('\'', inicio + 1) : -1;
+                        isbn = fin > inicio ? mensaje.substring(inicio + 1, fin) : "(desconocido)";
+                    }
+                    return new IllegalArgumentException("Ya existe una ficha con el ISBN: " + isbn.trim(), e);
+                }
+            }
+        }
+        return e;
+    }
+    
+    /**
+     * Valida el formato de los campos de una ficha sin consultar la base de datos.
      * 
      * Verifica que:
      * - La ficha no sea null.
-     * - El ISBN tenga formato válido (10 o 13 dígitos) y no exista ya.
+     * - El ISBN sea un ISBN-10 o ISBN-13 válido, con dígito verificador correcto.
      * - La clasificación Dewey no exceda 20 caracteres.
      * - La estantería no exceda 20 caracteres.
      * - El idioma no exceda 30 caracteres.
      * 
      * @param ficha la ficha a validar
      * @throws IllegalArgumentException si alguna validación falla
-     * @throws Exception si hay error en la validación
      */
-    private void validarFichaParaInsercion(FichaBibliografica ficha) throws Exception {
+    private void validarCamposFicha(FichaBibliografica ficha) {
         if (ficha == null) {
             throw new IllegalArgumentException("La ficha bibliografica no puede ser null");
         }
@@ -226,18 +553,12 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
                 throw new IllegalArgumentException("El ISBN no puede exceder 17 caracteres");
             }
             
-            // Validar que sean dígitos (con o sin guiones)
-            String isbnSinGuiones = isbn.replace("-", "");
-            if (!isbnSinGuiones.matches("\\d{10}|\\d{13}")) {
+            // Validar dígitos (con o sin guiones) y dígito verificador en una sola pasada
+            if (!ISBNUtils.esValido(isbn)) {
                 throw new IllegalArgumentException(
-                    "El ISBN debe tener 10 o 13 digitos (sin contar guiones). Ejemplo: 978-3-16-148410-0"
+                    "El ISBN debe tener 10 o 13 digitos (sin contar guiones) y un digito verificador correcto. Ejemplo: 978-3-16-148410-0"
                 );
             }
-            
-            // Validar que no exista ya ese ISBN
-            if (fichaDAO.existeISBN(isbn)) {
-                throw new IllegalArgumentException("Ya existe una ficha con el ISBN: "+ isbn);
-            }
         }
         
         // Validar clasificación Dewey (opcional pero con longitud máxima)
@@ -258,15 +579,15 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
     
     /**
      * Valida todas las reglas de negocio para actualizar una ficha existente.
-     * Primero verifica que la ficha exista en la base de datos,
-     * luego valida el formato del ISBN asegurándose de que no exista en otra ficha,
-     * y finalmente valida las longitudes de los demás campos.
+     * Valida el formato del ISBN y luego las longitudes de los demás campos.
+     * La existencia de la ficha no se consulta aquí: la verifica el propio UPDATE
+     * junto con la versión (ver FichaBibliograficaDAO.actualizar); la unicidad del
+     * ISBN la verifica la restricción UNIQUE (ver traducirISBNDuplicado).
      * 
      * @param ficha la ficha a validar
-     * @throws IllegalArgumentException si el ID es inválido o no existe
-     * @throws Exception si alguna validación falla
+     * @throws IllegalArgumentException si alguna validación falla
      */
-    private void validarFichaParaActualizacion(FichaBibliografica ficha) throws Exception {
+    private void validarFichaParaActualizacion(FichaBibliografica ficha) {
         if (ficha == null) {
             throw new IllegalArgumentException("La ficha bibliografica no puede ser null");
         }
@@ -276,12 +597,6 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
             throw new IllegalArgumentException("El ID de la ficha debe ser un numero positivo mayor a cero");
         }
         
-        // Verificar que la ficha existe
-        FichaBibliografica fichaExistente = fichaDAO.getById(ficha.getId());
-        if (fichaExistente == null) {
-            throw new IllegalArgumentException("No existe una ficha bibliografica con ID: " + ficha.getId());
-        }
-        
         // Validar ISBN si se esta actualizando
         if (ficha.getIsbn() != null && !ficha.getIsbn().trim().isEmpty()) {
             String isbn = ficha.getIsbn().trim();
@@ -290,16 +605,9 @@ public class FichaBibliograficaService implements GenericService<FichaBibliograf
                 throw new IllegalArgumentException("El ISBN no puede exceder 17 caracteres");
             }
             
-            String isbnGuiones = isbn.replace("-", "");
-            if (!isbnGuiones.matches("\\d{10}|\\d{13}")) {
-                throw new IllegalArgumentException("El ISBN debe tener 10 o 13 digitos (sin contar guiones). Ejemplo: 978-3-16-148410-0");
-            }
-            
-            // Validar que no exista ese ISBN en OTRA ficha
-            if (fichaDAO.existeISBNExceptoId(isbn, ficha.getId())) {
-                throw new IllegalArgumentException("Ya existe otra ficha con el ISBN: "+ isbn);
+            if (!ISBNUtils.esValido(isbn)) {
+                throw new IllegalArgumentException("El ISBN debe tener 10 o 13 digitos (sin contar guiones) y un digito verificador correcto. Ejemplo: 978-3-16-148410-0");
             }
-            
         }
         
         // Aplicar las mismas validaciones que en inserción
@@ -0,0 +1,666 @@
+package progra2.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import progra2.Config.DatabaseConnection;
+import progra2.Config.RetryPolicy;
+import progra2.Config.TransactionManager;
+import progra2.DAO.ImportacionCheckpointDAO;
+import progra2.DAO.ImportacionCheckpointDAO.Checkpoint;
+import progra2.Models.FichaBibliografica;
+import progra2.Models.Libro;
+
+/**
+ * Servicio de importación masiva de libros desde archivos CSV.
+ *
+ * El archivo se recorre en streaming (nunca se carga completo en memoria):
+ * - El hilo que importa lee los registros y los agrupa en lotes.
+ * - Un pool de hilos convierte y valida cada lote en paralelo, con las mismas
+ *   reglas que el alta interactiva (LibroService.prepararParaInsercion).
+ * - Los lotes validados se escriben en orden, sin volver a validarlos, cada uno
+ *   en su propia transacción (inserción por lotes JDBC de fichas y libros). El
+ *   hilo escritor solo verifica los ISBN repetidos entre registros, que dependen
+ *   del conjunto y no pueden validarse por separado. Hay como máximo 2 lotes
+ *   por hilo en vuelo, lo que acota la memoria usada.
+ *
+ * Cada transacción registra además el avance en importacion_checkpoint, de modo
+ * que si la importación se interrumpe, al volver a importar el mismo archivo se
+ * reanuda desde el último lote confirmado sin duplicar libros.
+ *
+ * Los registros rechazados (formato inválido, validación o ISBN duplicado) se
+ * escriben en un archivo junto al original (nombre.csv.rechazados.csv) con su
+ * número de línea y el motivo. Los registros que la base de datos no acepta
+ * se revierten con savepoints dentro de la transacción del lote, de modo que
+ * no obligan a revertir ni reintentar el lote completo.
+ *
+ * Columnas reconocidas en el encabezado (en cualquier orden; titulo y autor
+ * obligatorias): titulo, autor, editorial, anio_edicion, isbn,
+ * clasificacion_dewey, estanteria, idioma. El separador puede ser coma o
+ * punto y coma. Si alguna de las columnas de la ficha tiene valor, el libro
+ * se importa con su ficha bibliográfica.
+ *
+ * La configuración por defecto puede sobrescribirse mediante propiedades del sistema:
+ * - Dimportacion.loteSize: registros por lote (por transacción)
+ * - Dimportacion.hilos: hilos de conversión y validación
+ */
+public class ImportacionService {
+
+    /** Registros por lote por defecto. Configurable via -Dimportacion.loteSize */
+    private static final int LOTE_SIZE_DEFAULT = Integer.getInteger("importacion.loteSize", 1000);
+
+    /** Hilos de validación por defecto. Configurable via -Dimportacion.hilos */
+    private static final int HILOS_DEFAULT = Integer.getInteger("importacion.hilos",
+            Runtime.getRuntime().availableProcessors());
+
+    /** Tamaño máximo de lote admitido. */
+    private static final int MAX_LOTE_SIZE = 10_000;
+
+    /** Cantidad máxima de hilos admitida. */
+    private static final int MAX_HILOS = 64;
+
+    /** Lotes en vuelo (leídos y no escritos) por cada hilo de validación. */
+    private static final int LOTES_POR_HILO = 2;
+
+    /** Intervalo mínimo entre dos informes de progreso (ms). */
+    private static final long INTERVALO_PROGRESO_MS = 2000;
+
+    /** Bytes del inicio del archivo que forman parte de su clave. */
+    private static final int BYTES_CLAVE = 64 * 1024;
+
+    /** Sufijo del archivo de registros rechazados. */
+    private static final String SUFIJO_RECHAZADOS = ".rechazados.csv";
+
+    /** Columnas reconocidas, en el orden de las constantes de posición. */
+    private static final String[] COLUMNAS = {
+        "titulo", "autor", "editorial", "anio_edicion", "isbn", "clasificacion_dewey", "estanteria", "idioma"
+    };
+    private static final int TITULO = 0;
+    private static final int AUTOR = 1;
+    private static final int EDITORIAL = 2;
+    private static final int ANIO_EDICION = 3;
+    private static final int ISBN = 4;
+    private static final int CLASIFICACION_DEWEY = 5;
+    private static final int ESTANTERIA = 6;
+    private static final int IDIOMA = 7;
+
+    /** Servicio de libros: reglas de validación e inserción por lotes. */
+    private final LibroService libroService;
+    /** DAO del avance de las importaciones. */
+    private final ImportacionCheckpointDAO checkpointDAO;
+    /** Política de reintento de los lotes ante deadlocks y esperas de lock agotadas. */
+    private final RetryPolicy retryPolicy = RetryPolicy.getDefault();
+
+    /**
+     * Constructor que recibe las dependencias necesarias.
+     *
+     * @param libroService servicio de libros (con servicio de fichas)
+     * @param checkpointDAO DAO del avance de las importaciones
+     */
+    public ImportacionService(LibroService libroService, ImportacionCheckpointDAO checkpointDAO) {
+        if (libroService == null) {
+            throw new IllegalArgumentException("LibroService no puede ser null");
+        }
+        if (checkpointDAO == null) {
+            throw new IllegalArgumentException("ImportacionCheckpointDAO no puede ser null");
+        }
+        this.libroService = libroService;
+        this.checkpointDAO = checkpointDAO;
+    }
+
+    /**
+     * Obtiene el avance registrado de un archivo.
+     *
+     * @param archivo archivo CSV
+     * @return avance confirmado o null si el archivo nunca se importó
+     * @throws Exception si el archivo no puede leerse o hay error en la consulta
+     */
+    public Checkpoint getAvance(Path archivo) throws Exception {
+        return checkpointDAO.obtener(calcularClave(archivo));
+    }
+
+    /**
+     * Descarta el avance registrado de un archivo, para importarlo de nuevo desde el principio.
+     *
+     * @param archivo archivo CSV
+     * @throws Exception si el archivo no puede leerse o hay error al eliminar
+     */
+    public void reiniciar(Path archivo) throws Exception {
+        checkpointDAO.eliminar(calcularClave(archivo));
+    }
+
+    /**
+     * Importa un archivo con el tamaño de lote y la cantidad de hilos por defecto.
+     *
+     * @param archivo archivo CSV
+     * @return resultado de la importación
+     * @throws Exception si el archivo es inválido o hay un error que impide continuar
+     */
+    public Resultado importar(Path archivo) throws Exception {
+        return importar(archivo, LOTE_SIZE_DEFAULT, HILOS_DEFAULT);
+    }
+
+    /**
+     * Importa un archivo CSV, reanudando desde el último lote confirmado si
+     * una importación anterior del mismo archivo quedó incompleta.
+     * Un error que no se debe a los datos de un registro (por ejemplo, se pierde
+     * la conexión) detiene la importación; los lotes ya confirmados se conservan.
+     *
+     * @param archivo archivo CSV
+     * @param tamanioLote registros por lote (por transacción)
+     * @param hilos hilos de conversión y validación
+     * @return resultado de la importación
+     * @throws IllegalStateException si el archivo ya fue importado por completo
+     * @throws Exception si los parámetros o el encabezado son inválidos, o hay un error que impide continuar
+     */
+    public Resultado importar(Path archivo, int tamanioLote, int hilos) throws Exception {
+        if (archivo == null || !Files.isRegularFile(archivo)) {
+            throw new IllegalArgumentException("El archivo a importar no existe: " + archivo);
+        }
+        if (tamanioLote <= 0 || tamanioLote > MAX_LOTE_SIZE) {
+            throw new IllegalArgumentException("El tamanio de lote debe estar entre 1 y " + MAX_LOTE_SIZE);
+        }
+        if (hilos <= 0 || hilos > MAX_HILOS) {
+            throw new IllegalArgumentException("La cantidad de hilos debe estar entre 1 y " + MAX_HILOS);
+        }
+
+        String clave = calcularClave(archivo);
+        Checkpoint avance = checkpointDAO.obtener(clave);
+        if (avance != null && avance.isCompletada()) {
+            throw new IllegalStateException("El archivo ya fue importado por completo ("
+                    + avance.getImportados() + " libros)");
+        }
+
+        Path rechazos = archivo.resolveSibling(archivo.getFileName() + SUFIJO_RECHAZADOS);
+        Importacion importacion = new Importacion(clave, archivo.getFileName().toString(), avance);
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+
+        try (BufferedReader reader = Files.newBufferedReader(archivo, StandardCharsets.UTF_8);
+             BufferedWriter salidaRechazos = abrirRechazos(rechazos)) {
+
+            CsvUtils.LectorRegistros lector = new CsvUtils.LectorRegistros(reader);
+            String encabezado = lector.siguiente();
+            if (encabezado == null) {
+                throw new IllegalArgumentException("El archivo esta vacio");
+            }
+            // Quitar la marca de orden de bytes (BOM) que agregan algunas planillas
+            if (!encabezado.isEmpty() && encabezado.charAt(0) == '\uFEFF') {
+                encabezado = encabezado.substring(1);
+            }
+            char separador = CsvUtils.detectarSeparador(encabezado);
+            int[] posiciones = mapearColumnas(CsvUtils.dividir(encabezado, separador));
+            importacion.salidaRechazos = salidaRechazos;
+
+            if (importacion.registrosProcesados > 0) {
+                System.out.println("Reanudando importacion desde el registro " + (importacion.registrosProcesados + 1));
+            }
+
+            Deque<Future<Lote>> enVuelo = new ArrayDeque<>();
+            long registro = 0;
+            List<String> textos = new ArrayList<>(tamanioLote);
+            long[] lineas = new long[tamanioLote];
+            String texto;
+
+            while ((texto = lector.siguiente()) != null) {
+                if (++registro <= importacion.registrosProcesados) {
+                    continue; // ya confirmado en una ejecución anterior
+                }
+                lineas[textos.size()] = lector.getLineaRegistro();
+                textos.add(texto);
+
+                if (textos.size() == tamanioLote) {
+                    enVuelo.add(enviar(pool, registro - textos.size() + 1, textos, lineas, separador, posiciones));
+                    textos = new ArrayList<>(tamanioLote);
+                    lineas = new long[tamanioLote];
+                    if (enVuelo.size() >= hilos * LOTES_POR_HILO) {
+                        escribirLote(esperar(enVuelo.poll()), importacion);
+                    }
+                }
+            }
+            if (!textos.isEmpty()) {
+                enVuelo.add(enviar(pool, registro - textos.size() + 1, textos, lineas, separador, posiciones));
+            }
+            while (!enVuelo.isEmpty()) {
+                escribirLote(esperar(enVuelo.poll()), importacion);
+            }
+
+            // Marcar la importación como completa
+            importacion.registrosProcesados = registro;
+            guardarAvance(importacion, true);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Resultado resultado = importacion.resultado(rechazos);
+        System.out.println(resultado);
+        return resultado;
+    }
+
+
+    // ===================== Métodos auxiliares privados =====================
+
+    /**
+     * Envía un lote de registros a convertir y validar en el pool.
+     *
+     * @param pool pool de hilos de validación
+     * @param primerRegistro número (base 1) del primer registro de datos del lote
+     * @param textos texto de cada registro
+     * @param lineas línea física donde empieza cada registro
+     * @param separador separador de campos
+     * @param posiciones posición de cada columna reconocida (-1 si no está)
+     * @return lote validado (futuro)
+     */
+    private Future<Lote> enviar(ExecutorService pool, long primerRegistro, List<String> textos, long[] lineas,
+                                char separador, int[] posiciones) {
+        return pool.submit(() -> {
+            List<Fila> filas = new ArrayList<>(textos.size());
+            for (int i = 0; i < textos.size(); i++) {
+                filas.add(convertir(primerRegistro + i, lineas[i], textos.get(i), separador, posiciones));
+            }
+            return new Lote(filas, primerRegistro + textos.size() - 1);
+        });
+    }
+
+    /**
+     * Espera un lote validado, propagando los errores inesperados de la validación.
+     *
+     * @param futuro lote enviado al pool
+     * @return lote validado
+     * @throws Exception si la validación falló de forma inesperada o se interrumpió
+     */
+    private Lote esperar(Future<Lote> futuro) throws Exception {
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            throw causa instanceof Exception ? (Exception) causa : e;
+        }
+    }
+
+    /**
+     * Convierte un registro en un libro validado y normalizado, o en un rechazo.
+     * Se ejecuta en los hilos del pool.
+     *
+     * @param registro número del registro de datos (base 1)
+     * @param linea línea física donde empieza el registro
+     * @param texto texto del registro
+     * @param separador separador de campos
+     * @param posiciones posición de cada columna reconocida (-1 si no está)
+     * @return fila aceptada, rechazada o vacía
+     */
+    private Fila convertir(long registro, long linea, String texto, char separador, int[] posiciones) {
+        if (texto.trim().isEmpty()) {
+            return new Fila(registro, linea, texto, null, null);
+        }
+        try {
+            List<String> campos = CsvUtils.dividir(texto, separador);
+
+            Integer anioEdicion = null;
+            String anio = campo(campos, posiciones[ANIO_EDICION]);
+            if (anio != null) {
+                try {
+                    anioEdicion = Integer.valueOf(anio);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Anio de edicion invalido: " + anio);
+                }
+            }
+
+            String isbn = campo(campos, posiciones[ISBN]);
+            String dewey = campo(campos, posiciones[CLASIFICACION_DEWEY]);
+            String estanteria = campo(campos, posiciones[ESTANTERIA]);
+            String idioma = campo(campos, posiciones[IDIOMA]);
+            FichaBibliografica ficha = isbn != null || dewey != null || estanteria != null || idioma != null
+                    ? new FichaBibliografica(isbn, dewey, estanteria, idioma, 0, false)
+                    : null;
+
+            Libro libro = new Libro(0, campo(campos, posiciones[TITULO]), campo(campos, posiciones[AUTOR]),
+                    campo(campos, posiciones[EDITORIAL]), anioEdicion, ficha);
+            libroService.prepararParaInsercion(libro);
+            return new Fila(registro, linea, texto, libro, null);
+        } catch (Exception e) {
+            return new Fila(registro, linea, texto, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Escribe un lote validado en una transacción que también registra el avance.
+     * Los libros, ya validados en convertir, se insertan sin volver a validarlos
+     * con LibroService.insertarLibrosPreparadosTolerante: un registro que la base
+     * de datos no acepta (por ejemplo, ISBN ya existente o repetido en el lote)
+     * se revierte con un savepoint y se rechaza, sin perder el resto del lote.
+     *
+     * @param lote lote validado
+     * @param importacion estado de la importación
+     * @throws Exception si hay un error que no se debe a los datos
+     */
+    private void escribirLote(Lote lote, Importacion importacion) throws Exception {
+        List<Fila> aceptadas = new ArrayList<>(lote.filas.size());
+        List<Libro> libros = new ArrayList<>(lote.filas.size());
+        for (Fila fila : lote.filas) {
+            if (fila.libro != null) {
+                aceptadas.add(fila);
+                libros.add(fila.libro);
+            }
+        }
+
+        // Si la transacción aborta por deadlock o espera de lock, el lote se repite completo
+        retryPolicy.run("importarLote", () -> {
+            try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
+                tm.startTransaction();
+                for (Libro libro : libros) {
+                    // Descartar los IDs de un intento anterior revertido
+                    libro.setId(0);
+                    if (libro.getFichaBibliografica() != null) {
+                        libro.getFichaBibliografica().setId(0);
+                    }
+                }
+                Map<Integer, Exception> errores = libroService.insertarLibrosPreparadosTolerante(libros, tm);
+
+                Map<Fila, String> rechazosBase = new IdentityHashMap<>();
+                errores.forEach((i, e) -> rechazosBase.put(aceptadas.get(i), e.getMessage()));
+                int rechazadas = 0;
+                for (Fila fila : lote.filas) {
+                    if (fila.motivo != null || rechazosBase.containsKey(fila)) {
+                        rechazadas++;
+                    }
+                }
+                int importadas = libros.size() - errores.size();
+                checkpointDAO.guardar(importacion.clave, importacion.archivo, new Checkpoint(lote.ultimoRegistro,
+                        importacion.importados + importadas, importacion.rechazados + rechazadas, false),
+                        tm.getConnection());
+
+                // Los rechazos se escriben recién confirmado el lote: si la transacción
+                // falla (o se repite), el archivo no queda con líneas de un lote revertido
+                StringBuilder lineasRechazo = new StringBuilder();
+                for (Fila fila : lote.filas) {
+                    String motivo = fila.motivo != null ? fila.motivo : rechazosBase.get(fila);
+                    if (motivo != null) {
+                        rechazar(fila, motivo, lineasRechazo);
+                    }
+                }
+                tm.commit();
+
+                importacion.salidaRechazos.append(lineasRechazo);
+                importacion.salidaRechazos.flush();
+                importacion.importados += importadas;
+                importacion.rechazados += rechazadas;
+            }
+        });
+        importacion.registrosProcesados = lote.ultimoRegistro;
+        importacion.informarProgreso();
+    }
+
+    /**
+     * Registra el avance actual en una transacción propia.
+     *
+     * @param importacion estado de la importación
+     * @param completada true si se procesó el archivo completo
+     * @throws Exception si hay error al guardar
+     */
+    private void guardarAvance(Importacion importacion, boolean completada) throws Exception {
+        retryPolicy.run("importarAvance", () -> {
+            try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
+                tm.startTransaction();
+                checkpointDAO.guardar(importacion.clave, importacion.archivo, new Checkpoint(importacion.registrosProcesados,
+                        importacion.importados, importacion.rechazados, completada), tm.getConnection());
+                tm.commit();
+            }
+        });
+    }
+
+    /**
+     * Agrega un registro rechazado, con el formato del archivo de rechazos.
+     *
+     * @param fila registro rechazado
+     * @param motivo motivo del rechazo
+     * @param out destino de la línea
+     * @throws IOException si hay error de escritura
+     */
+    private void rechazar(Fila fila, String motivo, StringBuilder out) throws IOException {
+        out.append(fila.linea).append(',');
+        CsvUtils.escribirCampo(out, motivo, ',');
+        out.append(',');
+        CsvUtils.escribirCampo(out, fila.texto, ',');
+        out.append(System.lineSeparator());
+    }
+
+    /**
+     * Abre el archivo de rechazos para agregar registros, escribiendo su
+     * encabezado si es nuevo (al reanudar se conservan los rechazos anteriores).
+     *
+     * @param rechazos ruta del archivo de rechazos
+     * @return escritor abierto
+     * @throws IOException si el archivo no puede abrirse
+     */
+    private BufferedWriter abrirRechazos(Path rechazos) throws IOException {
+        boolean nuevo = !Files.exists(rechazos) || Files.size(rechazos) == 0;
+        BufferedWriter out = Files.newBufferedWriter(rechazos, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (nuevo) {
+            out.write("linea,motivo,registro");
+            out.newLine();
+        }
+        return out;
+    }
+
+    /**
+     * Obtiene la posición de cada columna reconocida en el encabezado.
+     *
+     * @param encabezado nombres de las columnas del archivo
+     * @return posición de cada columna de COLUMNAS (-1 si no está)
+     * @throws IllegalArgumentException si faltan las columnas titulo o autor
+     */
+    private static int[] mapearColumnas(List<String> encabezado) {
+        int[] posiciones = new int[COLUMNAS.length];
+        Arrays.fill(posiciones, -1);
+        for (int i = 0; i < encabezado.size(); i++) {
+            String nombre = encabezado.get(i).trim().toLowerCase();
+            for (int c = 0; c < COLUMNAS.length; c++) {
+                if (COLUMNAS[c].equals(nombre) && posiciones[c] < 0) {
+                    posiciones[c] = i;
+                }
+            }
+        }
+        if (posiciones[TITULO] < 0 || posiciones[AUTOR] < 0) {
+            throw new IllegalArgumentException("El encabezado debe incluir las columnas titulo y autor. Columnas reconocidas: "
+                    + String.join(", ", COLUMNAS));
+        }
+        return posiciones;
+    }
+
+    /**
+     * Obtiene el valor de una columna, o null si no está o está vacío.
+     *
+     * @param campos campos del registro
+     * @param posicion posición de la columna (-1 si el archivo no la tiene)
+     * @return valor sin espacios al inicio y al final, o null
+     */
+    private static String campo(List<String> campos, int posicion) {
+        if (posicion < 0 || posicion >= campos.size()) {
+            return null;
+        }
+        String valor = campos.get(posicion).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    /**
+     * Calcula la clave de un archivo: SHA-256 de su nombre, tamaño y primeros 64 KB.
+     * No lee el archivo completo, y distingue archivos distintos con el mismo nombre.
+     *
+     * @param archivo archivo CSV
+     * @return clave de 64 caracteres hexadecimales
+     * @throws IOException si el archivo no puede leerse
+     */
+    private static String calcularClave(Path archivo) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((archivo.getFileName() + "|" + Files.size(archivo) + "|").getBytes(StandardCharsets.UTF_8));
+            try (InputStream in = Files.newInputStream(archivo)) {
+                digest.update(in.readNBytes(BYTES_CLAVE));
+            }
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest.digest()) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+
+    // ========================== Clases auxiliares ==========================
+
+    /** Registro del archivo convertido: aceptado (libro), rechazado (motivo) o vacío (ambos null). */
+    private static final class Fila {
+
+        private final long registro;
+        private final long linea;
+        private final String texto;
+        private final Libro libro;
+        private final String motivo;
+
+        private Fila(long registro, long linea, String texto, Libro libro, String motivo) {
+            this.registro = registro;
+            this.linea = linea;
+            this.texto = texto;
+            this.libro = libro;
+            this.motivo = motivo;
+        }
+    }
+
+    /** Lote de registros consecutivos ya convertidos y validados. */
+    private static final class Lote {
+
+        private final List<Fila> filas;
+        /** Número del último registro de datos del lote. */
+        private final long ultimoRegistro;
+
+        private Lote(List<Fila> filas, long ultimoRegistro) {
+            this.filas = filas;
+            this.ultimoRegistro = ultimoRegistro;
+        }
+    }
+
+    /** Estado de una importación en curso (solo lo usa el hilo que importa). */
+    private static final class Importacion {
+
+        private final String clave;
+        private final String archivo;
+        private final long inicio = System.currentTimeMillis();
+        private final long registrosIniciales;
+        private long registrosProcesados;
+        private long importados;
+        private long rechazados;
+        private long ultimoInforme = inicio;
+        private BufferedWriter salidaRechazos;
+
+        private Importacion(String clave, String archivo, Checkpoint avance) {
+            this.clave = clave;
+            this.archivo = archivo;
+            if (avance != null) {
+                registrosProcesados = avance.getRegistrosProcesados();
+                importados = avance.getImportados();
+                rechazados = avance.getRechazados();
+            }
+            registrosIniciales = registrosProcesados;
+        }
+
+        /** Muestra el avance y el rendimiento si pasó el intervalo de informe. */
+        private void informarProgreso() {
+            long ahora = System.currentTimeMillis();
+            if (ahora - ultimoInforme < INTERVALO_PROGRESO_MS) {
+                return;
+            }
+            ultimoInforme = ahora;
+            System.out.printf("  %,d registros procesados (%,d importados, %,d rechazados) - %,.0f registros/s%n",
+                    registrosProcesados, importados, rechazados, registrosPorSegundo(ahora));
+        }
+
+        private double registrosPorSegundo(long ahora) {
+            long ms = Math.max(1, ahora - inicio);
+            return (registrosProcesados - registrosIniciales) * 1000.0 / ms;
+        }
+
+        private Resultado resultado(Path rechazos) {
+            long ahora = System.currentTimeMillis();
+            return new Resultado(archivo, registrosProcesados, importados, rechazados, registrosIniciales > 0,
+                    ahora - inicio, registrosPorSegundo(ahora), rechazados > 0 ? rechazos : null);
+        }
+    }
+
+    /**
+     * Resultado de una importación (acumulado, incluye las ejecuciones anteriores si se reanudó).
+     */
+    public static final class Resultado {
+
+        private final String archivo;
+        private final long registros;
+        private final long importados;
+        private final long rechazados;
+        private final boolean reanudada;
+        private final long duracionMs;
+        private final double registrosPorSegundo;
+        private final Path archivoRechazos;
+
+        private Resultado(String archivo, long registros, long importados, long rechazados, boolean reanudada,
+                          long duracionMs, double registrosPorSegundo, Path archivoRechazos) {
+            this.archivo = archivo;
+            this.registros = registros;
+            this.importados = importados;
+            this.rechazados = rechazados;
+            this.reanudada = reanudada;
+            this.duracionMs = duracionMs;
+            this.registrosPorSegundo = registrosPorSegundo;
+            this.archivoRechazos = archivoRechazos;
+        }
+
+        /** @return libros importados */
+        public long getImportados() {
+            return importados;
+        }
+
+        /** @return registros rechazados */
+        public long getRechazados() {
+            return rechazados;
+        }
+
+        /** @return archivo con los registros rechazados, o null si no hubo rechazos */
+        public Path getArchivoRechazos() {
+            return archivoRechazos;
+        }
+
+        /**
+         * Representación en texto del resultado.
+         *
+         * @return String con las cantidades, la duración y el rendimiento
+         */
+        @Override
+        public String toString() {
+            return String.format("Importacion de %s%s: %,d registros, %,d libros importados, %,d rechazados "
+                    + "(%,d ms, %,.0f registros/s)%s",
+                    archivo, reanudada ? " (reanudada)" : "", registros, importados, rechazados,
+                    duracionMs, registrosPorSegundo,
+                    archivoRechazos != null ? "\nRechazados en: " + archivoRechazos : "");
+        }
+    }
+
+}
@@ -1,16 +1,33 @@
 package progra2.Service;
 
 import java.sql.Connection;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 import progra2.Config.DatabaseConnection;
+import progra2.Config.EntityCache;
+import progra2.Config.RetryPolicy;
 import progra2.Config.TransactionManager;
 import progra2.DAO.LibroDAO;
+import progra2.DAO.LibroSearchCriteria;
+import progra2.DAO.ModoBusqueda;
+import progra2.DAO.PlanCarga;
 import progra2.Models.FichaBibliografica;
 import progra2.Models.Libro;
 
 /**
  * Servicio de negocio para la gestión de libros.
  * Encapsula validaciones de reglas de negocio antes de delegar al DAO.
+ * Las lecturas por ID pasan por una caché en memoria que se invalida
+ * en cada modificación del libro o de su ficha bibliográfica.
+ * Los listados y búsquedas corren en transacciones de solo lectura READ COMMITTED,
+ * en una réplica de lectura si hay réplicas configuradas.
  */
 public class LibroService implements GenericService<Libro> {
     
@@ -18,6 +35,16 @@ public class LibroService implements GenericService<Libro> {
     private final LibroDAO libroDAO;
     /** Servicio para gestionar fichas bibliográficas asociadas. */
     private final FichaBibliograficaService fichaBibliograficaService;
+    /** Tamaño máximo de página admitido en las consultas paginadas. */
+    private static final int MAX_PAGE_SIZE = 500;
+    /** Libros por savepoint en la carga tolerante a errores (insertarLibrosConFichasTolerante). */
+    private static final int SUB_LOTE_SIZE = 100;
+    /** Caché de lectura de libros por ID (cada entrada incluye su ficha). */
+    private final EntityCache<Long, Libro> cache = new EntityCache<>("libros", Libro::new);
+    /** Política de reintento de las transacciones ante deadlocks y esperas de lock agotadas. */
+    private final RetryPolicy retryPolicy = RetryPolicy.getDefault();
+    /** Aislamiento de las transacciones de solo lectura de listados y búsquedas. */
+    private static final TransactionManager.Isolation AISLAMIENTO_LECTURA = TransactionManager.Isolation.READ_COMMITTED;
     
     /**
      * Constructor básico que solo recibe el DAO de libros.
@@ -45,6 +72,10 @@ public class LibroService implements GenericService<Libro> {
         }
         this.libroDAO = libroDAO;
         this.fichaBibliograficaService = fichaBibliograficaService;
+        
+        // Los libros cacheados incluyen su ficha: si la ficha cambia, invalidarlos
+        fichaBibliograficaService.agregarListenerModificacion(fichaId -> cache.invalidateIf(
+                libro -> libro.getFichaId() == fichaId));
     }
     
     // ======================= Métodos sin transsacion =======================
@@ -74,7 +105,11 @@ public class LibroService implements GenericService<Libro> {
     public void actualizar(Libro libro) throws Exception {
         validarLibroParaActualizacion(libro);
         normalizarLibro(libro);
-        libroDAO.actualizar(libro);
+        try {
+            libroDAO.actualizar(libro);
+        } finally {
+            cache.invalidate(libro.getId());
+        }
     }
     
     /**
@@ -84,26 +119,45 @@ public class LibroService implements GenericService<Libro> {
      * @throws Exception si el ID es inválido o hay error en la eliminación
      */
     @Override
-    public void eliminar(int id) throws Exception {
+    public void eliminar(long id) throws Exception {
         if (id <= 0) {
             throw new IllegalArgumentException("El ID debe ser un numero positivo mayor a cero");
         }
-        libroDAO.eliminar(id);
+        try {
+            libroDAO.eliminar(id);
+        } finally {
+            cache.invalidate(id);
+        }
     }
     
     /**
      * Obtiene un libro por su ID.
+     * Se resuelve desde la caché si el libro fue leído recientemente.
      * 
      * @param id identificador del libro
      * @return el libro encontrado o null si no existe
      * @throws Exception si el ID es inválido o hay error en la consulta
      */
     @Override
-    public Libro getById(int id) throws Exception {
+    public Libro getById(long id) throws Exception {
         if (id <= 0) {
             throw new IllegalArgumentException("El ID debe ser un numero positivo mayor a cero");
         }
-        return libroDAO.getById(id);
+        return cache.get(id, libroDAO::getById);
+    }
+    
+    /**
+     * Obtiene varios libros por sus IDs.
+     * Los libros cacheados se resuelven en memoria y los restantes se leen
+     * todos juntos con consultas IN (...) por bloques, evitando una consulta por libro.
+     * 
+     * @param ids identificadores de los libros (los repetidos se ignoran)
+     * @return libros encontrados indexados por ID, en el orden solicitado (los inexistentes se omiten)
+     * @throws Exception si algún ID es inválido o hay error en la consulta
+     */
+    public Map<Long, Libro> getByIds(Collection<Long> ids) throws Exception {
+        FichaBibliograficaService.validarIds(ids);
+        return cache.getAll(ids, libroDAO::getByIds);
     }
     
     /**
@@ -114,52 +168,216 @@ public class LibroService implements GenericService<Libro> {
      */
     @Override
     public List<Libro> getAll() throws Exception {
-        return libroDAO.getAll();
+        return enLectura(() -> libroDAO.getAll());
+    }
+    
+    /**
+     * Obtiene todos los libros no eliminados con el plan de carga indicado.
+     * Con SIN_FICHA, las fichas se cargan juntas en el primer acceso a cualquiera de ellas.
+     * 
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargarla bajo demanda
+     * @return lista de todos los libros
+     * @throws Exception si hay error en la consulta
+     */
+    public List<Libro> getAll(PlanCarga plan) throws Exception {
+        validarPlan(plan);
+        return conCargaDiferida(enLectura(() -> libroDAO.getAll(plan)));
+    }
+    
+    
+    /**
+     * Obtiene una página de libros no eliminados ordenados por ID.
+     * Para recorrer el catálogo, pasar 0 en la primera llamada y luego
+     * el ID del último libro de la página anterior.
+     * 
+     * @param afterId último ID de la página anterior (0 para la primera página)
+     * @param pageSize cantidad de libros por página (entre 1 y 500)
+     * @return página de libros (vacía si no hay más)
+     * @throws Exception si los parámetros son inválidos o hay error en la consulta
+     */
+    public List<Libro> getPage(long afterId, int pageSize) throws Exception {
+        validarPagina(afterId, pageSize);
+        return enLectura(() -> libroDAO.getPage(afterId, pageSize));
+    }
+    
+    /**
+     * Obtiene una página de libros con el plan de carga indicado.
+     * Con SIN_FICHA, las fichas de la página se cargan juntas en el primer acceso a cualquiera de ellas.
+     * 
+     * @param afterId último ID de la página anterior (0 para la primera página)
+     * @param pageSize cantidad de libros por página (entre 1 y 500)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargarla bajo demanda
+     * @return página de libros (vacía si no hay más)
+     * @throws Exception si los parámetros son inválidos o hay error en la consulta
+     */
+    public List<Libro> getPage(long afterId, int pageSize, PlanCarga plan) throws Exception {
+        validarPagina(afterId, pageSize);
+        validarPlan(plan);
+        return conCargaDiferida(enLectura(() -> libroDAO.getPage(afterId, pageSize, plan)));
+    }
+    
+    /**
+     * Recorre todo el catálogo de libros no eliminados sin cargarlo en memoria.
+     * Pensado para exportaciones y procesos batch. El Stream mantiene abierta
+     * una conexión hasta que se cierra, por lo que debe usarse con try-with-resources.
+     * 
+     * @param fetchSize filas a traer por viaje al servidor (0 para streaming fila por fila)
+     * @return Stream perezoso de libros ordenados por ID
+     * @throws Exception si hay error al abrir el cursor
+     */
+    public Stream<Libro> streamAll(int fetchSize) throws Exception {
+        return libroDAO.stream(fetchSize);
     }
     
     
     // ========================= Métodos de busqueda =========================
     
     /**
-     * Busca libros cuyo título contenga el texto especificado.
+     * Busca libros cuyo título contenga el texto especificado (case-insensitive).
+     * Búsqueda por subcadena con LIKE, como LibroDAO; para buscar por relevancia
+     * con el índice FULLTEXT, indicar {@link ModoBusqueda#FULLTEXT}.
      * 
-     * @param titulo texto a buscar (búsqueda parcial, case-insensitive)
+     * @param titulo texto a buscar
      * @return lista de libros que coinciden
      * @throws Exception si el título está vacío o hay error en la consulta
      */
     public List<Libro> buscarPorTitulo(String titulo) throws Exception {
+        return buscarPorTitulo(titulo, ModoBusqueda.LIKE);
+    }
+    
+    /**
+     * Busca libros por título con el modo de búsqueda indicado.
+     * 
+     * @param titulo texto a buscar (case-insensitive)
+     * @param modo FULLTEXT (por relevancia) o LIKE (subcadena)
+     * @return lista de libros que coinciden
+     * @throws Exception si el título está vacío o hay error en la consulta
+     */
+    public List<Libro> buscarPorTitulo(String titulo, ModoBusqueda modo) throws Exception {
+        if (titulo == null || titulo.trim().isEmpty()) {
+            throw new IllegalArgumentException("El titulo de busqueda no puede estar vacio");
+        }
+        return enLectura(() -> libroDAO.getByTitulo(titulo, modo));
+    }
+    
+    /**
+     * Busca libros por título con el modo de búsqueda y el plan de carga indicados.
+     * 
+     * @param titulo texto a buscar (case-insensitive)
+     * @param modo FULLTEXT (por relevancia) o LIKE (subcadena)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargarla bajo demanda
+     * @return lista de libros que coinciden
+     * @throws Exception si el título está vacío o hay error en la consulta
+     */
+    public List<Libro> buscarPorTitulo(String titulo, ModoBusqueda modo, PlanCarga plan) throws Exception {
         if (titulo == null || titulo.trim().isEmpty()) {
             throw new IllegalArgumentException("El titulo de busqueda no puede estar vacio");
         }
-        return libroDAO.getByTitulo(titulo);
+        validarPlan(plan);
+        return conCargaDiferida(enLectura(() -> libroDAO.getByTitulo(titulo, modo, plan)));
     }
     
     /**
-     * Busca libros cuyo autor contenga el texto especificado.
+     * Busca libros cuyo autor contenga el texto especificado (case-insensitive).
+     * Búsqueda por subcadena con LIKE, como LibroDAO; para buscar por relevancia
+     * con el índice FULLTEXT, indicar {@link ModoBusqueda#FULLTEXT}.
      * 
-     * @param autor texto a buscar (búsqueda parcial, case-insensitive)
+     * @param autor texto a buscar
      * @return lista de libros que coinciden
      * @throws Exception si el autor está vacío o hay error en la consulta
      */
     public List<Libro> buscarPorAutor(String autor) throws Exception {
+        return buscarPorAutor(autor, ModoBusqueda.LIKE);
+    }
+    
+    /**
+     * Busca libros por autor con el modo de búsqueda indicado.
+     * 
+     * @param autor texto a buscar (case-insensitive)
+     * @param modo FULLTEXT (por relevancia) o LIKE (subcadena)
+     * @return lista de libros que coinciden
+     * @throws Exception si el autor está vacío o hay error en la consulta
+     */
+    public List<Libro> buscarPorAutor(String autor, ModoBusqueda modo) throws Exception {
+        if (autor == null || autor.trim().isEmpty()) {
+            throw new IllegalArgumentException("El autor de busqueda no puede estar vacio");
+        }
+        return enLectura(() -> libroDAO.getByAutor(autor, modo));
+    }
+    
+    /**
+     * Busca libros por autor con el modo de búsqueda y el plan de carga indicados.
+     * 
+     * @param autor texto a buscar (case-insensitive)
+     * @param modo FULLTEXT (por relevancia) o LIKE (subcadena)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargarla bajo demanda
+     * @return lista de libros que coinciden
+     * @throws Exception si el autor está vacío o hay error en la consulta
+     */
+    public List<Libro> buscarPorAutor(String autor, ModoBusqueda modo, PlanCarga plan) throws Exception {
         if (autor == null || autor.trim().isEmpty()) {
             throw new IllegalArgumentException("El autor de busqueda no puede estar vacio");
         }
-        return libroDAO.getByAutor(autor);
+        validarPlan(plan);
+        return conCargaDiferida(enLectura(() -> libroDAO.getByAutor(autor, modo, plan)));
     }
     
     /**
-     * Busca libros cuya editorial contenga el texto especificado.
+     * Busca libros cuya editorial contenga el texto especificado (case-insensitive).
+     * Búsqueda por subcadena con LIKE, como LibroDAO; para buscar por relevancia
+     * con el índice FULLTEXT, indicar {@link ModoBusqueda#FULLTEXT}.
      * 
-     * @param editorial texto a buscar (búsqueda parcial, case-insensitive)
+     * @param editorial texto a buscar
      * @return lista de libros que coinciden
      * @throws Exception si la editorial está vacía o hay error en la consulta
      */
     public List<Libro> buscarPorEditorial(String editorial) throws Exception {
+        return buscarPorEditorial(editorial, ModoBusqueda.LIKE);
+    }
+    
+    /**
+     * Busca libros por editorial con el modo de búsqueda indicado.
+     * 
+     * @param editorial texto a buscar (case-insensitive)
+     * @param modo FULLTEXT (por relevancia) o LIKE (subcadena)
+     * @return lista de libros que coinciden
+     * @throws Exception si la editorial está vacía o hay error en la consulta
+     */
+    public List<Libro> buscarPorEditorial(String editorial, ModoBusqueda modo) throws Exception {
+        if (editorial == null || editorial.trim().isEmpty()) {
+            throw new IllegalArgumentException("La editorial de busqueda no puede estar vacia");
+        }
+        return enLectura(() -> libroDAO.getByEditorial(editorial, modo));
+    }
+    
+    /**
+     * Busca libros por editorial con el modo de búsqueda y el plan de carga indicados.
+     * 
+     * @param editorial texto a buscar (case-insensitive)
+     * @param modo FULLTEXT (por relevancia) o LIKE (subcadena)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargarla bajo demanda
+     * @return lista de libros que coinciden
+     * @throws Exception si la editorial está vacía o hay error en la consulta
+     */
+    public List<Libro> buscarPorEditorial(String editorial, ModoBusqueda modo, PlanCarga plan) throws Exception {
         if (editorial == null || editorial.trim().isEmpty()) {
             throw new IllegalArgumentException("La editorial de busqueda no puede estar vacia");
         }
-        return libroDAO.getByEditorial(editorial);
+        validarPlan(plan);
+        return conCargaDiferida(enLectura(() -> libroDAO.getByEditorial(editorial, modo, plan)));
+    }
+    
+    /**
+     * Busca el libro cuya ficha bibliográfica tiene el ISBN indicado.
+     * Usa el índice del ISBN canónico: admite ISBN-10 o ISBN-13, con o sin guiones.
+     * 
+     * @param isbn ISBN a buscar (por ejemplo, leído con un lector de código de barras)
+     * @return el libro encontrado o null si no existe
+     * @throws Exception si el ISBN es inválido o hay error en la consulta
+     */
+    public Libro getByIsbn(String isbn) throws Exception {
+        long canonico = FichaBibliograficaService.parseISBNBusqueda(isbn);
+        return enLectura(() -> libroDAO.getByIsbn(canonico));
     }
     
     /**
@@ -174,7 +392,24 @@ public class LibroService implements GenericService<Libro> {
         if (anio < 1000 || anio > anioActual) {
             throw new IllegalArgumentException("El anio debe estar entre 1000 y " + anioActual);
         }
-        return libroDAO.getByAnioEdicion(anio);
+        return enLectura(() -> libroDAO.getByAnioEdicion(anio));
+    }
+    
+    /**
+     * Busca libros publicados en un año específico con el plan de carga indicado.
+     * 
+     * @param anio año de publicación (debe estar entre 1000 y año actual)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargarla bajo demanda
+     * @return lista de libros publicados en ese año
+     * @throws Exception si el año es inválido o hay error en la consulta
+     */
+    public List<Libro> buscarPorAnioPublicacion(int anio, PlanCarga plan) throws Exception {
+        int anioActual = java.time.Year.now().getValue();
+        if (anio < 1000 || anio > anioActual) {
+            throw new IllegalArgumentException("El anio debe estar entre 1000 y " + anioActual);
+        }
+        validarPlan(plan);
+        return conCargaDiferida(enLectura(() -> libroDAO.getByAnioEdicion(anio, plan)));
     }
     
     /**
@@ -188,7 +423,53 @@ public class LibroService implements GenericService<Libro> {
         if (idioma == null || idioma.trim().isEmpty()) {
             throw new IllegalArgumentException("El idioma de busqueda no puede estar vacio");
         }
-        return libroDAO.getByIdioma(idioma);
+        return enLectura(() -> libroDAO.getByIdioma(idioma));
+    }
+    
+    /**
+     * Busca libros por idioma con el plan de carga indicado.
+     * 
+     * @param idioma idioma a buscar (comparación exacta, case-insensitive)
+     * @param plan CON_FICHA para incluir la ficha, SIN_FICHA para cargarla bajo demanda
+     * @return lista de libros en ese idioma
+     * @throws Exception si el idioma está vacío o hay error en la consulta
+     */
+    public List<Libro> buscarPorIdioma(String idioma, PlanCarga plan) throws Exception {
+        if (idioma == null || idioma.trim().isEmpty()) {
+            throw new IllegalArgumentException("El idioma de busqueda no puede estar vacio");
+        }
+        validarPlan(plan);
+        return conCargaDiferida(enLectura(() -> libroDAO.getByIdioma(idioma, plan)));
+    }
+    
+    /**
+     * Busca libros que cumplan todos los criterios indicados en una única consulta.
+     * Reemplaza ejecutar varias búsquedas por campo e intersectar los resultados.
+     * 
+     * @param criterios criterios de búsqueda, orden y límite
+     * @return lista de libros que cumplen los criterios
+     * @throws Exception si los criterios son inválidos o hay error en la consulta
+     */
+    public List<Libro> buscar(LibroSearchCriteria criterios) throws Exception {
+        if (criterios == null) {
+            throw new IllegalArgumentException("Los criterios de busqueda no pueden ser null");
+        }
+        int anioActual = java.time.Year.now().getValue();
+        if (criterios.getAnioDesde() != null && (criterios.getAnioDesde() < 1000 || criterios.getAnioDesde() > anioActual)) {
+            throw new IllegalArgumentException("El anio desde debe estar entre 1000 y " + anioActual);
+        }
+        if (criterios.getAnioHasta() != null && (criterios.getAnioHasta() < 1000 || criterios.getAnioHasta() > anioActual)) {
+            throw new IllegalArgumentException("El anio hasta debe estar entre 1000 y " + anioActual);
+        }
+        if (criterios.getAnioDesde() != null && criterios.getAnioHasta() != null
+                && criterios.getAnioDesde() > criterios.getAnioHasta()) {
+            throw new IllegalArgumentException("El anio desde no puede ser posterior al anio hasta");
+        }
+        if (criterios.getLimite() != null && criterios.getLimite() <= 0) {
+            throw new IllegalArgumentException("El limite de resultados debe ser mayor a cero");
+        }
+        validarPlan(criterios.getPlanCarga());
+        return conCargaDiferida(enLectura(() -> libroDAO.buscar(criterios)));
     }
     
     
@@ -197,80 +478,446 @@ public class LibroService implements GenericService<Libro> {
     /**
      * Inserta un libro con su ficha bibliográfica en una TRANSACCIÓN ATÓMICA.
      * Usa TransactionManager para manejar commit/rollback automáticamente.
-     * Si algo falla, se hace rollback de TODO.
+     * Si algo falla, se hace rollback de TODO. Si la transacción aborta por
+     * deadlock o espera de lock agotada, se repite (ver RetryPolicy).
      * 
      * @param libro el libro a insertar
      * @param ficha la ficha bibliográfica (puede ser null si no tiene)
      * @throws Exception si hay error en validación o inserción
      */
     public void insertarLibroConFicha(Libro libro, FichaBibliografica ficha) throws Exception {
-        // Try-with-resources: TransactionManager cierra automáticamente
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            
-            // 1. Iniciar transacción
-            tm.startTransaction();
-            Connection conn = tm.getConnection();
-            
-            // 2. Si hay ficha, insertarla primero
-            if (ficha != null) {
-                fichaBibliograficaService.insertar(ficha, conn);
-                libro.setFichaBibliografica(ficha);
-                System.out.println("Ficha creada con ID: " + ficha.getId());
+        // Si la transacción aborta por deadlock o espera de lock, se repite completa
+        retryPolicy.run("insertarLibroConFicha", () -> {
+            // Try-with-resources: TransactionManager cierra automáticamente
+            try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
+                
+                // 1. Iniciar transacción
+                tm.startTransaction();
+                Connection conn = tm.getConnection();
+                
+                // 2. Si hay ficha, insertarla primero
+                if (ficha != null) {
+                    fichaBibliograficaService.insertar(ficha, conn);
+                    libro.setFichaBibliografica(ficha);
+                    System.out.println("Ficha creada con ID: " + ficha.getId());
+                }
+                
+                // 3. Validar e insertar el libro
+                validarLibroParaInsercion(libro);
+                normalizarLibro(libro);
+                libroDAO.insertar(libro, conn);
+                System.out.println("Libro creado con ID: " + libro.getId());
+                
+                // 4. Confirmar transacción
+                tm.commit();
+                System.out.println("Transaccion completada exitosamente");
+                
+            } catch (Exception e) {
+                // 5. El rollback lo hace automáticamente TransactionManager en close()
+                // Descartar los IDs asignados por la transacción revertida
+                if (ficha != null) {
+                    ficha.setId(0);
+                }
+                if (libro != null) {
+                    libro.setId(0);
+                }
+                System.err.println("Error: Se revirtieron todos los cambios (rollback)");
+                throw new Exception("Error al crear libro con ficha: " + e.getMessage(), e);
             }
-            
-            // 3. Validar e insertar el libro
-            validarLibroParaInsercion(libro);
-            normalizarLibro(libro);
-            libroDAO.insertar(libro, conn);
-            System.out.println("Libro creado con ID: " + libro.getId());
-            
-            // 4. Confirmar transacción
-            tm.commit();
-            System.out.println("Transaccion completada exitosamente");
-            
-        } catch (Exception e) {
-            // 5. El rollback lo hace automáticamente TransactionManager en close()
-            System.err.println("Error: Se revirtieron todos los cambios (rollback)");
-            throw new Exception("Error al crear libro con ficha: " + e.getMessage(), e);
+        });
+    }
+    
+    /**
+     * Inserta muchos libros con sus fichas bibliográficas en una única TRANSACCIÓN.
+     * Pensado para cargas masivas de catálogo: en lugar de una transacción y dos
+     * INSERTs por libro, inserta todas las fichas en un lote JDBC, asigna los IDs
+     * generados a las fichas (que los libros referencian), inserta todos los libros
+     * en un segundo lote y confirma una sola vez.
+     * Si algo falla, se hace rollback de TODO. Si la transacción aborta por
+     * deadlock o espera de lock agotada, se repite (ver RetryPolicy).
+     * 
+     * @param libros los libros a insertar; cada uno puede tener su ficha asociada o no
+     * @throws Exception si hay error en validación o inserción
+     */
+    public void insertarLibrosConFichas(List<Libro> libros) throws Exception {
+        if (libros == null) {
+            throw new IllegalArgumentException("La lista de libros no puede ser null");
+        }
+        
+        // 1. Validar y normalizar todos los libros antes de abrir la transacción
+        for (Libro libro : libros) {
+            prepararParaInsercion(libro);
+        }
+        
+        // Si la transacción aborta por deadlock o espera de lock, se repite completa
+        retryPolicy.run("insertarLibrosConFichas", () -> {
+            try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
+                
+                // 2. Iniciar transacción
+                tm.startTransaction();
+                
+                // 3. Insertar fichas y libros en lotes
+                int fichas = insertarLotes(libros, tm.getConnection());
+                
+                // 4. Confirmar una sola vez
+                tm.commit();
+                System.out.println("Carga por lotes completada: " + libros.size() + " libros, " + fichas + " fichas");
+                
+            } catch (Exception e) {
+                // El rollback lo hace automáticamente TransactionManager en close()
+                // Descartar los IDs asignados por la transacción revertida
+                for (Libro libro : libros) {
+                    libro.setId(0);
+                    if (libro.getFichaBibliografica() != null) {
+                        libro.getFichaBibliografica().setId(0);
+                    }
+                }
+                System.err.println("Error: Se revirtieron todos los cambios (rollback)");
+                throw new Exception("Error en la carga por lotes de libros: " + e.getMessage(), e);
+            }
+        });
+    }
+    
+    /**
+     * Inserta muchos libros con sus fichas bibliográficas por lotes dentro de una
+     * transacción existente (por ejemplo, la de un lote de importación que además
+     * registra su avance). Valida y normaliza cada libro antes de insertar.
+     * No cierra la conexión ni confirma (debe hacerlo el llamador).
+     * 
+     * @param libros los libros a insertar; cada uno puede tener su ficha asociada o no
+     * @param conn la conexión con transacción activa
+     * @throws Exception si hay error en validación o inserción
+     */
+    public void insertarLibrosConFichas(List<Libro> libros, Connection conn) throws Exception {
+        if (libros == null) {
+            throw new IllegalArgumentException("La lista de libros no puede ser null");
+        }
+        for (Libro libro : libros) {
+            prepararParaInsercion(libro);
+        }
+        insertarLotes(libros, conn);
+    }
+    
+    /**
+     * Inserta muchos libros con sus fichas bibliográficas dentro de una transacción
+     * existente, rechazando solo los registros inválidos en lugar de revertir todo.
+     * 
+     * Los libros se insertan por sublotes de hasta 100, cada uno dentro de un
+     * savepoint. Si un sublote falla por los datos de algún libro (validación,
+     * ISBN duplicado, valor fuera de rango) se revierte solo ese sublote y se
+     * divide a la mitad, hasta aislar los libros que fallan. Con pocos registros
+     * inválidos, casi todo el trabajo se hace en lotes JDBC completos.
+     * Un error que no se debe a los datos (por ejemplo, se pierde la conexión) se propaga.
+     * No cierra la conexión ni confirma (debe hacerlo el llamador).
+     * 
+     * @param libros los libros a insertar; cada uno puede tener su ficha asociada o no
+     * @param tm la transacción activa
+     * @return error de cada libro rechazado, por su posición en la lista (vacío si se insertaron todos)
+     * @throws Exception si hay un error que no se debe a los datos de un libro
+     */
+    public Map<Integer, Exception> insertarLibrosConFichasTolerante(List<Libro> libros, TransactionManager tm)
+            throws Exception {
+        if (libros == null) {
+            throw new IllegalArgumentException("La lista de libros no puede ser null");
+        }
+        if (tm == null || !tm.isTransactionActive()) {
+            throw new IllegalArgumentException("Se requiere una transaccion activa");
+        }
+        
+        // 1. Validar y normalizar: los inválidos se rechazan sin llegar a la base de datos
+        Map<Integer, Exception> rechazos = new TreeMap<>();
+        int[] validos = new int[libros.size()];
+        int cantidad = 0;
+        for (int i = 0; i < libros.size(); i++) {
+            try {
+                prepararParaInsercion(libros.get(i));
+                validos[cantidad++] = i;
+            } catch (Exception e) {
+                rechazos.put(i, e);
+            }
+        }
+        
+        // 2. Insertar por sublotes, cada uno en su savepoint
+        insertarPorSublotes(libros, validos, cantidad, tm, rechazos);
+        return rechazos;
+    }
+    
+    /**
+     * Como insertarLibrosConFichasTolerante, para libros ya validados y normalizados
+     * con prepararParaInsercion (ImportacionService los prepara en sus hilos de
+     * validación): no los vuelve a validar. Solo se verifica en la inserción que no
+     * haya ISBN repetidos dentro de cada sublote, además de las restricciones de la
+     * base de datos.
+     * No cierra la conexión ni confirma (debe hacerlo el llamador).
+     * 
+     * @param libros los libros a insertar, ya preparados
+     * @param tm la transacción activa
+     * @return error de cada libro rechazado, por su posición en la lista (vacío si se insertaron todos)
+     * @throws Exception si hay un error que no se debe a los datos de un libro
+     */
+    Map<Integer, Exception> insertarLibrosPreparadosTolerante(List<Libro> libros, TransactionManager tm)
+            throws Exception {
+        if (tm == null || !tm.isTransactionActive()) {
+            throw new IllegalArgumentException("Se requiere una transaccion activa");
+        }
+        int[] todos = new int[libros.size()];
+        for (int i = 0; i < todos.length; i++) {
+            todos[i] = i;
+        }
+        Map<Integer, Exception> rechazos = new TreeMap<>();
+        insertarPorSublotes(libros, todos, todos.length, tm, rechazos);
+        return rechazos;
+    }
+    
+    /**
+     * Inserta los libros indicados por sublotes de hasta SUB_LOTE_SIZE, cada uno
+     * en su savepoint (ver insertarConSavepoint).
+     * 
+     * @param libros todos los libros de la carga
+     * @param indices posiciones en libros de los libros a insertar
+     * @param cantidad cantidad de posiciones usadas de indices
+     * @param tm la transacción activa
+     * @param rechazos error de cada libro rechazado, por su posición en libros
+     * @throws Exception si hay un error que no se debe a los datos de un libro
+     */
+    private void insertarPorSublotes(List<Libro> libros, int[] indices, int cantidad,
+                                     TransactionManager tm, Map<Integer, Exception> rechazos) throws Exception {
+        for (int desde = 0; desde < cantidad; desde += SUB_LOTE_SIZE) {
+            insertarConSavepoint(libros, indices, desde, Math.min(desde + SUB_LOTE_SIZE, cantidad), tm, rechazos);
+        }
+    }
+    
+    /**
+     * Valida y normaliza un libro nuevo, y su ficha si la tiene, sin consultar la
+     * base de datos. No modifica estado compartido: puede invocarse desde varios
+     * hilos sobre libros distintos (ver ImportacionService).
+     * 
+     * @param libro el libro a validar
+     * @throws IllegalArgumentException si alguna validación falla
+     * @throws Exception si hay error en la validación
+     */
+    public void prepararParaInsercion(Libro libro) throws Exception {
+        validarLibroParaInsercion(libro);
+        normalizarLibro(libro);
+        if (libro.getFichaBibliografica() != null) {
+            if (fichaBibliograficaService == null) {
+                throw new IllegalStateException("Este servicio no admite libros con ficha bibliografica");
+            }
+            fichaBibliograficaService.prepararParaInsercion(libro.getFichaBibliografica());
         }
     }
     
     /**
      * Actualiza un libro y su ficha bibliográfica en una TRANSACCIÓN ATÓMICA.
      * Usa TransactionManager para manejar commit/rollback automáticamente.
+     * Si la transacción aborta por deadlock o espera de lock agotada, se repite
+     * (ver RetryPolicy).
      * 
      * @param libro el libro con los datos actualizados
      * @param actualizarFicha true si también se debe actualizar la ficha
      * @throws Exception si hay error
      */
     public void actualizarLibroConFicha(Libro libro, boolean actualizarFicha) throws Exception {
-        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
-            
-            // 1. Iniciar transacción
-            tm.startTransaction();
-            Connection conn = tm.getConnection();
-            
-            // 2. Actualizar ficha si es necesario
-            if (actualizarFicha && libro.getFichaBibliografica() != null) {
-                fichaBibliograficaService.actualizar(libro.getFichaBibliografica(), conn);
-                System.out.println("Ficha actualizada");
+        // Versiones leídas, para restaurarlas si la transacción se revierte
+        int versionLibro = libro != null ? libro.getVersion() : 0;
+        FichaBibliografica fichaOriginal = libro != null ? libro.getFichaBibliografica() : null;
+        int versionFicha = fichaOriginal != null ? fichaOriginal.getVersion() : 0;
+        
+        // Si la transacción aborta por deadlock o espera de lock, se repite completa
+        retryPolicy.run("actualizarLibroConFicha", () -> {
+            try (TransactionManager tm = new TransactionManager(DatabaseConnection.getConnection())) {
+                
+                // 1. Iniciar transacción
+                tm.startTransaction();
+                Connection conn = tm.getConnection();
+                
+                // 2. Actualizar ficha si es necesario
+                if (actualizarFicha && libro.getFichaBibliografica() != null) {
+                    fichaBibliograficaService.actualizar(libro.getFichaBibliografica(), conn);
+                    System.out.println("Ficha actualizada");
+                }
+                
+                // 3. Actualizar libro
+                validarLibroParaActualizacion(libro);
+                normalizarLibro(libro);
+                libroDAO.actualizar(libro, conn);
+                System.out.println("Libro actualizado");
+                
+                // 4. Confirmar
+                tm.commit();
+                System.out.println("Transaccion completada exitosamente");
+                
+            } catch (Exception e) {
+                // El rollback lo hace automáticamente TransactionManager en close()
+                if (libro != null) {
+                    libro.setVersion(versionLibro);
+                }
+                if (fichaOriginal != null) {
+                    fichaOriginal.setVersion(versionFicha);
+                }
+                System.err.println("Error: Se revirtieron todos los cambios (rollback)");
+                throw new Exception("Error al actualizar libro: " + e.getMessage(), e);
+            } finally {
+                // Invalidar luego del commit/rollback para no conservar versiones leídas durante la transacción
+                if (libro != null) {
+                    cache.invalidate(libro.getId());
+                    if (actualizarFicha && libro.getFichaBibliografica() != null) {
+                        fichaBibliograficaService.invalidarCache(libro.getFichaBibliografica().getId());
+                    }
+                }
             }
-            
-            // 3. Actualizar libro
-            validarLibroParaActualizacion(libro);
-            normalizarLibro(libro);
-            libroDAO.actualizar(libro, conn);
-            System.out.println("Libro actualizado");
-            
-            // 4. Confirmar
+        });
+    }
+    
+    
+    // ============================ Caché por ID ============================
+    
+    /**
+     * Obtiene las estadísticas de la caché de libros.
+     * 
+     * @return aciertos, fallos, desalojos y tiempo de carga acumulados
+     */
+    public EntityCache.Stats getCacheStats() {
+        return cache.getStats();
+    }
+    
+    /**
+     * Obtiene los contadores de reintentos de las operaciones transaccionales.
+     * 
+     * @return contadores por nombre de operación
+     */
+    public Map<String, RetryPolicy.Stats> getRetryStats() {
+        return retryPolicy.getAllStats();
+    }
+    
+    // ===================== Métodos auxiliares privados =====================
+    
+    /**
+     * Consulta que se ejecuta dentro de una transacción de solo lectura.
+     * 
+     * @param <T> tipo del resultado
+     */
+    @FunctionalInterface
+    private interface Consulta<T> {
+        T ejecutar() throws Exception;
+    }
+    
+    /**
+     * Ejecuta una consulta en una transacción de solo lectura READ COMMITTED,
+     * sobre una conexión de lectura (ver DatabaseConnection.getReadConnection()).
+     * Los DAOs toman la conexión de la transacción ambiente, así que todas las
+     * sentencias de la consulta usan la misma conexión. Si ya hay una transacción
+     * activa en el hilo, la consulta participa de ella (y ve sus cambios).
+     * Las fichas de carga diferida se leen después, fuera de esta transacción.
+     * 
+     * @param <T> tipo del resultado
+     * @param consulta consulta a ejecutar
+     * @return resultado de la consulta
+     * @throws Exception si hay error en la consulta
+     */
+    private <T> T enLectura(Consulta<T> consulta) throws Exception {
+        try (TransactionManager tm = new TransactionManager(DatabaseConnection.getReadConnection())) {
+            tm.startReadOnlyTransaction(AISLAMIENTO_LECTURA);
+            T resultado = consulta.ejecutar();
             tm.commit();
-            System.out.println("Transaccion completada exitosamente");
-            
+            return resultado;
+        }
+    }
+    
+    /**
+     * Inserta las fichas de los libros en un lote JDBC (asignando los IDs generados,
+     * que los libros referencian) y luego los libros en un segundo lote.
+     * 
+     * @param libros libros ya validados y normalizados
+     * @param conn la conexión con transacción activa
+     * @return cantidad de fichas insertadas
+     * @throws Exception si hay error en la inserción
+     */
+    private int insertarLotes(List<Libro> libros, Connection conn) throws Exception {
+        List<FichaBibliografica> fichas = new ArrayList<>();
+        for (Libro libro : libros) {
+            if (libro.getFichaBibliografica() != null) {
+                fichas.add(libro.getFichaBibliografica());
+            }
+        }
+        
+        // Insertar todas las fichas en lote (asigna los IDs generados a cada ficha);
+        // ya fueron validadas con prepararParaInsercion
+        fichaBibliograficaService.insertarBatchPreparadas(fichas, conn);
+        
+        // Insertar todos los libros en lote, ya vinculados a los IDs de sus fichas
+        libroDAO.insertarBatch(libros, conn);
+        return fichas.size();
+    }
+    
+    /**
+     * Inserta un rango de libros dentro de un savepoint. Si falla por los datos,
+     * revierte el rango y lo divide a la mitad hasta aislar los libros que fallan.
+     * 
+     * @param libros todos los libros de la carga
+     * @param indices posiciones en libros de los libros válidos
+     * @param desde primera posición de indices del rango (inclusive)
+     * @param hasta última posición de indices del rango (exclusive)
+     * @param tm la transacción activa
+     * @param rechazos error de cada libro rechazado, por su posición en libros
+     * @throws Exception si hay un error que no se debe a los datos de un libro
+     */
+    private void insertarConSavepoint(List<Libro> libros, int[] indices, int desde, int hasta,
+                                      TransactionManager tm, Map<Integer, Exception> rechazos) throws Exception {
+        List<Libro> rango = new ArrayList<>(hasta - desde);
+        for (int i = desde; i < hasta; i++) {
+            rango.add(libros.get(indices[i]));
+        }
+        
+        try (TransactionManager.SavepointScope sp = tm.savepoint()) {
+            insertarLotes(rango, tm.getConnection());
+            sp.release();
+            return;
         } catch (Exception e) {
-            // El rollback lo hace automáticamente TransactionManager en close()
-            System.err.println("Error: Se revirtieron todos los cambios (rollback)");
-            throw new Exception("Error al actualizar libro: " + e.getMessage(), e);
+            // Al cerrarse el ámbito se revirtió el rango completo
+            if (!esErrorDeDatos(e)) {
+                throw e;
+            }
+            for (Libro libro : rango) {
+                libro.setId(0);
+                if (libro.getFichaBibliografica() != null) {
+                    libro.getFichaBibliografica().setId(0);
+                }
+            }
+            if (rango.size() == 1) {
+                rechazos.put(indices[desde], e);
+                return;
+            }
+        }
+        
+        int mitad = (desde + hasta) >>> 1;
+        insertarConSavepoint(libros, indices, desde, mitad, tm, rechazos);
+        insertarConSavepoint(libros, indices, mitad, hasta, tm, rechazos);
+    }
+    
+    /**
+     * Indica si un error se debe a los datos de un libro (y no a la base de
+     * datos o a la conexión), de modo que alcanza con rechazar ese libro.
+     * 
+     * @param e error de la inserción
+     * @return true para errores de validación, restricciones o datos inválidos
+     */
+    private static boolean esErrorDeDatos(Exception e) {
+        if (e instanceof IllegalArgumentException) {
+            return true;
+        }
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SQLIntegrityConstraintViolationException || t instanceof SQLDataException) {
+                return true;
+            }
+            if (t instanceof SQLException) {
+                String estado = ((SQLException) t).getSQLState();
+                if (estado != null && (estado.startsWith("22") || estado.startsWith("23"))) {
+                    return true;
+                }
+            }
         }
+        return false;
     }
     
     // ==================== Métodos de Validación Privados ====================
@@ -294,6 +941,57 @@ public class LibroService implements GenericService<Libro> {
         }
     }
     
+    /**
+     * Valida el plan de carga de una consulta.
+     * SIN_FICHA requiere el servicio de fichas, con el que se cargan bajo demanda.
+     * 
+     * @param plan plan de carga
+     * @return el mismo plan
+     * @throws IllegalArgumentException si el plan es null
+     * @throws IllegalStateException si el plan es SIN_FICHA y no hay servicio de fichas
+     */
+    private PlanCarga validarPlan(PlanCarga plan) {
+        if (plan == null) {
+            throw new IllegalArgumentException("El plan de carga no puede ser null");
+        }
+        if (plan == PlanCarga.SIN_FICHA && fichaBibliograficaService == null) {
+            throw new IllegalStateException("Este servicio no admite la carga diferida de fichas bibliograficas");
+        }
+        return plan;
+    }
+    
+    /**
+     * Asocia a los libros leídos sin ficha un cargador común, de modo que el
+     * primer acceso a una ficha cargue las de toda la lista en una sola consulta.
+     * Sin servicio de fichas (constructor básico) no asocia nada: solo puede
+     * quedar sin ficha un libro cuya ficha fue eliminada, y su ficha es null.
+     * 
+     * @param libros resultado de una consulta de libros
+     * @return la misma lista
+     */
+    private List<Libro> conCargaDiferida(List<Libro> libros) {
+        if (fichaBibliograficaService == null) {
+            return libros;
+        }
+        return CargaDiferidaFichas.asociar(libros, fichaBibliograficaService);
+    }
+    
+    /**
+     * Valida los parámetros de una consulta paginada.
+     * 
+     * @param afterId último ID de la página anterior (no negativo)
+     * @param pageSize tamaño de página (entre 1 y MAX_PAGE_SIZE)
+     * @throws IllegalArgumentException si algún parámetro es inválido
+     */
+    private void validarPagina(long afterId, int pageSize) {
+        if (afterId < 0) {
+            throw new IllegalArgumentException("El ID de inicio de pagina no puede ser negativo");
+        }
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("El tamanio de pagina debe estar entre 1 y " + MAX_PAGE_SIZE);
+        }
+    }
+    
     /**
      * Valida todas las reglas de negocio para insertar un libro nuevo.
      * 
@@ -348,11 +1046,12 @@ public class LibroService implements GenericService<Libro> {
     
     /**
      * Valida todas las reglas de negocio para actualizar un libro existente.
-     * Primero verifica que el libro exista en la base de datos,
-     * luego aplica las mismas validaciones que para inserción.
+     * Verifica el ID y aplica las mismas validaciones que para inserción.
+     * La existencia del libro no se consulta aquí: la verifica el propio UPDATE
+     * junto con la versión (ver LibroDAO.actualizar).
      * 
      * @param libro el libro a validar
-     * @throws IllegalArgumentException si el ID es inválido o no existe
+     * @throws IllegalArgumentException si el ID es inválido
      * @throws Exception si alguna validación falla
      */
     private void validarLibroParaActualizacion(Libro libro) throws Exception {
@@ -365,12 +1064,6 @@ public class LibroService implements GenericService<Libro> {
             throw new IllegalArgumentException("El ID del libro debe ser un numero positivo mayor a cero");
         }
         
-        // Verificar que el libro existe
-        Libro libroExistente = libroDAO.getById(libro.getId());
-        if (libroExistente == null) {
-            throw new IllegalArgumentException("No existe un libro con ID: " + libro.getId());
-        }
-        
         // Aplicar las mismas validaciones que en inserción
         validarLibroParaInsercion(libro);
     }